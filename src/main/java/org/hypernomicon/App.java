@@ -25,6 +25,7 @@ import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 import static org.hypernomicon.util.Util.*;
 
 import org.hypernomicon.bib.BibManager;
+import org.hypernomicon.bib.data.PDFBibData;
 import org.hypernomicon.dialogs.NewVersionDlgCtrlr;
 import org.hypernomicon.fileManager.FileManager;
 import org.hypernomicon.model.Exceptions.*;
@@ -147,6 +148,10 @@ public final class App extends Application
       if (prefs == null) throw new HDB_InternalError(37546);
 
       HyperDB.create(folderTreeWatcher);
+
+      db.addCloseDBHandler(MediaUtil::saveMediaTypeCache);
+      db.addCloseDBHandler(PDFBibData::saveMetadataCache);
+      db.addCloseDBHandler(JsonHttpClient::saveResponseCache);
     }
     catch (HDB_InternalError e)
     {
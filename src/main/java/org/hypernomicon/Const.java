@@ -67,6 +67,8 @@ public final class Const
     PREF_KEY_PDF_READER = "pdfReader",
     PREF_KEY_PDF_READER_COMMANDS = "pdfReaderCommands",
     PREF_KEY_PDF_READER_COMMAND_TYPE = "pdfReaderCommandType",
+    PREF_KEY_BIB_LOOKUP_CONCURRENCY = "bibLookupConcurrency",
+    PREF_KEY_BIB_LOOKUPS_PER_SECOND = "bibLookupsPerSecond",
 
     PREF_KEY_XML_FOLDER_ID = "xmlFolderID",
     PREF_KEY_PICTURES_FOLDER_ID = "picturesFolderID",
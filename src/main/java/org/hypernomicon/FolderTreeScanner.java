@@ -0,0 +1,319 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static org.hypernomicon.util.DesktopUtil.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Registers every directory in a folder tree with a {@link WatchService}, working on several
+ * subtrees in parallel.
+ * <p>
+ * A manifest of each directory's modification time, file key, and subdirectory names is kept
+ * in memory and in the per-user cache folder. When a directory's modification time and file key
+ * are unchanged since the manifest was written, the subdirectory names recorded in the manifest are
+ * used instead of listing the directory again. Each directory is registered before it is checked,
+ * so that a change made while the scan is running either shows up in the modification time or
+ * produces a watch event.
+ */
+final class FolderTreeScanner
+{
+
+//---------------------------------------------------------------------------
+
+  static final class Registration
+  {
+    final Path dir;
+    final WatchKey watchKey;
+
+    private Registration(Path dir, WatchKey watchKey) { this.dir = dir; this.watchKey = watchKey; }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final class ManifestEntry
+  {
+    private final long modTime;
+    private final String fileKey;
+    private final List<String> subdirNames;
+
+    private ManifestEntry(long modTime, String fileKey, List<String> subdirNames)
+    {
+      this.modTime = modTime;
+      this.fileKey = fileKey;
+      this.subdirNames = subdirNames;
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int MANIFEST_VERSION = 1;
+
+  private final Path rootDir;
+  private Map<String, ManifestEntry> manifest = null;
+  private boolean manifestLoaded = false;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  FolderTreeScanner(FilePath rootFilePath)
+  {
+    rootDir = rootFilePath.toPath();
+  }
+
+  boolean isForRoot(FilePath rootFilePath) { return rootDir.equals(rootFilePath.toPath()); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private final class RegisterTask extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final Path dir;
+    private final transient WatchService watcher;
+    private final transient Map<String, ManifestEntry> oldManifest, newManifest;
+    private final transient Queue<Registration> registrations;
+
+    private RegisterTask(Path dir, WatchService watcher, Map<String, ManifestEntry> oldManifest, Map<String, ManifestEntry> newManifest, Queue<Registration> registrations)
+    {
+      this.dir = dir;
+      this.watcher = watcher;
+      this.oldManifest = oldManifest;
+      this.newManifest = newManifest;
+      this.registrations = registrations;
+    }
+
+    @Override protected void compute()
+    {
+      List<String> subdirNames;
+
+      try
+      {
+        WatchKey watchKey = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        registrations.add(new Registration(dir, watchKey));
+
+        BasicFileAttributes attrs = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+        String relKey = rootDir.relativize(dir).toString(),
+               fileKey = String.valueOf(attrs.fileKey());
+        long modTime = attrs.lastModifiedTime().toMillis();
+
+        ManifestEntry entry = oldManifest.get(relKey);
+
+        if ((entry != null) && (entry.modTime == modTime) && entry.fileKey.equals(fileKey))
+          subdirNames = entry.subdirNames;
+        else
+        {
+          subdirNames = listSubdirNames(dir);
+          entry = new ManifestEntry(modTime, fileKey, subdirNames);
+        }
+
+        newManifest.put(relKey, entry);
+      }
+      catch (NoSuchFileException e)
+      {
+        return; // If the folder doesn't exist just keep going
+      }
+      catch (IOException e)
+      {
+        if (Files.exists(dir) == false) return;
+
+        throw new UncheckedIOException(e);
+      }
+
+      invokeAll(subdirNames.stream().map(name -> new RegisterTask(dir.resolve(name), watcher, oldManifest, newManifest, registrations))
+                                    .collect(Collectors.toList()));
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static List<String> listSubdirNames(Path dir) throws IOException
+  {
+    List<String> names = new ArrayList<>();
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, path -> Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)))
+    {
+      stream.forEach(path -> names.add(path.getFileName().toString()));
+    }
+
+    return List.copyOf(names);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Registers {@code dir} and every directory under it with {@code watcher}.
+   * @param dir The directory to start from; must be the root directory or under it
+   * @return The registered directories, with every directory appearing after its parent
+   * @throws IOException if a directory that exists could not be registered or listed
+   */
+  List<Registration> register(FilePath dir, WatchService watcher) throws IOException
+  {
+    Path startDir = dir.toPath();
+    boolean isRoot = startDir.equals(rootDir);
+
+    if (manifestLoaded == false)
+    {
+      manifest = loadManifest();
+      manifestLoaded = true;
+    }
+
+    Map<String, ManifestEntry> newManifest = isRoot ? new ConcurrentHashMap<>() : manifest;
+    Queue<Registration> registrations = new ConcurrentLinkedQueue<>();
+
+    ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    try
+    {
+      pool.invoke(new RegisterTask(startDir, watcher, manifest, newManifest, registrations));
+    }
+    catch (UncheckedIOException e)
+    {
+      throw e.getCause();
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+
+    if (isRoot)
+    {
+      manifest = newManifest;
+      saveManifest();
+    }
+
+    List<Registration> list = new ArrayList<>(registrations);
+    list.sort(Comparator.comparingInt(registration -> registration.dir.getNameCount()));
+    return list;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private FilePath manifestFilePath() throws IOException
+  {
+    return cacheDir().resolve("folders-" + Integer.toHexString(rootDir.toString().hashCode()) + ".dat");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private Map<String, ManifestEntry> loadManifest()
+  {
+    Map<String, ManifestEntry> map = new ConcurrentHashMap<>();
+
+    try
+    {
+      FilePath filePath = manifestFilePath();
+      if (filePath.exists() == false) return map;
+
+      try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(filePath.toPath()))))
+      {
+        if ((dis.readInt() != MANIFEST_VERSION) || (dis.readUTF().equals(rootDir.toString()) == false))
+          return map;
+
+        for (int entryNdx = dis.readInt(); entryNdx > 0; entryNdx--)
+        {
+          String relKey = dis.readUTF(), fileKey;
+          long modTime = dis.readLong();
+          fileKey = dis.readUTF();
+
+          List<String> subdirNames = new ArrayList<>();
+          for (int subdirNdx = dis.readInt(); subdirNdx > 0; subdirNdx--)
+            subdirNames.add(dis.readUTF());
+
+          map.put(relKey, new ManifestEntry(modTime, fileKey, List.copyOf(subdirNames)));
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      map.clear(); // The manifest is only an optimization; start over if it can't be read
+    }
+
+    return map;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void saveManifest()
+  {
+    try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(manifestFilePath().toPath()))))
+    {
+      dos.writeInt(MANIFEST_VERSION);
+      dos.writeUTF(rootDir.toString());
+      List<Map.Entry<String, ManifestEntry>> mapEntries = new ArrayList<>(manifest.entrySet());
+      dos.writeInt(mapEntries.size());
+
+      for (Map.Entry<String, ManifestEntry> mapEntry : mapEntries)
+      {
+        ManifestEntry entry = mapEntry.getValue();
+
+        dos.writeUTF(mapEntry.getKey());
+        dos.writeLong(entry.modTime);
+        dos.writeUTF(entry.fileKey);
+        dos.writeInt(entry.subdirNames.size());
+
+        for (String name : entry.subdirNames)
+          dos.writeUTF(name);
+      }
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
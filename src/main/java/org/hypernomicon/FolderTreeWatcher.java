@@ -32,22 +32,30 @@ import static org.hypernomicon.model.records.RecordType.*;
 
 import java.io.IOException;
 import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
+import org.hypernomicon.FolderTreeScanner.Registration;
 import org.hypernomicon.HyperTask.HyperThread;
 import org.hypernomicon.model.items.HyperPath;
 import org.hypernomicon.PathInfo.FileKind;
@@ -55,7 +63,6 @@ import org.hypernomicon.model.records.*;
 import org.hypernomicon.model.records.SimpleRecordTypes.HDT_RecordWithPath;
 import org.hypernomicon.util.DesktopUtil;
 import org.hypernomicon.util.filePath.FilePath;
-import org.hypernomicon.util.filePath.FilePathSet;
 
 import javafx.application.Platform;
 import javafx.stage.Modality;
@@ -84,6 +91,18 @@ public class FolderTreeWatcher
     }
   }
 
+//---------------------------------------------------------------------------
+
+  /**
+   * A PDF that appeared in the Unentered folder and will be imported once its size stops changing
+   */
+  private static final class PendingImport
+  {
+    private long lastSize = -1L;
+    private int checks = 0;
+    private volatile boolean changed = false;
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -91,6 +110,8 @@ public class FolderTreeWatcher
   {
     private boolean done = false;
     private boolean sentResponse = false;
+    private boolean messageCheckNeeded = true;
+    private long lastMessageCheckTime = 0L;
     private HDB_MessageType requestType;
 
   //---------------------------------------------------------------------------
@@ -130,8 +151,6 @@ public class FolderTreeWatcher
       if (app.debugging)
         System.out.println("Watcher start");
 
-      clearKeyQueue();
-
       while (done == false)
       {
         if (stopRequested)
@@ -143,11 +162,12 @@ public class FolderTreeWatcher
         List<WatcherEvent> eventList = null;
         WatchKey watchKey = null;
 
-        if (handleInterComputerMessage() == false)
-        {
-          try { watchKey = watcher.poll(FOLDER_TREE_WATCHER_POLL_TIME_MS, TimeUnit.MILLISECONDS); }
-          catch (InterruptedException e1) { return; }
-        }
+        checkInterComputerMessages();
+
+        try { watchKey = watcher.poll(FOLDER_TREE_WATCHER_POLL_TIME_MS, TimeUnit.MILLISECONDS); }
+        catch (InterruptedException e1) { return; }
+
+        long batchStartTime = System.currentTimeMillis();
 
         if (watchKey != null)
           eventList = new ArrayList<>();
@@ -169,6 +189,10 @@ public class FolderTreeWatcher
             if (folder.getID() > 0)
             {
               FilePath filePath = folder.filePath().resolve(new FilePath(watchEvent.context())); // This is what actually changed
+
+              if (filePath.equals(db.getRequestMessageFilePath(false)) || filePath.equals(db.getResponseMessageFilePath(false)))
+                messageCheckNeeded = true;
+
               PathInfo newPathInfo = new PathInfo(filePath);
               WatcherEvent watcherEvent = null;
 
@@ -208,14 +232,24 @@ public class FolderTreeWatcher
 
           watchKey.reset();
 
+          checkInterComputerMessages(); // Don't wait for the rest of the batch
+
           watchKey = watcher.poll();
+
+          // Keep collecting events until there is a pause, so that a burst of changes is handled as one batch
+
+          if ((watchKey == null) && ((System.currentTimeMillis() - batchStartTime) < MAX_EVENT_BATCH_MS))
+          {
+            try { watchKey = watcher.poll(EVENT_DEBOUNCE_MS, TimeUnit.MILLISECONDS); }
+            catch (InterruptedException e) { return; }
+          }
         }
 
         if (eventList != null)
         {
           try
           {
-            processEventList(eventList);
+            processEventList(coalesce(eventList));
           }
           catch (IOException e)
           {
@@ -228,33 +262,6 @@ public class FolderTreeWatcher
   //---------------------------------------------------------------------------
   //---------------------------------------------------------------------------
 
-    private void doImport(FilePath filePath)
-    {
-      if (alreadyImporting || (ui.windows.getOutermostModality() != Modality.NONE)) return;
-
-      Platform.runLater(() ->
-      {
-        ui.importWorkFile(null, filePath, true);
-        downloading.remove(filePath);
-        alreadyImporting = false;
-      });
-
-      alreadyImporting = true;
-    }
-
-    //---------------------------------------------------------------------------
-    //---------------------------------------------------------------------------
-
-    private String deletedMsg(FilePath filePath)
-    {
-      return "A file that is in use by the database, \"" + filePath.getNameOnly() +
-             "\", has been deleted or moved from outside the program. This may or may not cause a data integrity problem. " +
-             "Changes to database files should be made using the " + appTitle + " File Manager instead.";
-    }
-
-    //---------------------------------------------------------------------------
-    //---------------------------------------------------------------------------
-
     private String changedFolderMsg()
     {
       return "There has been a change to a folder that is in use by the database. " +
@@ -290,32 +297,17 @@ public class FolderTreeWatcher
                      (newPathInfo.getParentFolder() == db.getUnenteredFolder()) &&
                      "pdf".equalsIgnoreCase(newPath.getExtensionOnly()))
             {
-              downloading.add(newPath);
-
-              runOutsideFXThread(() -> { for (int ndx = 0; ndx <= 10; ndx++)
-              {
-                long size = 0L;
-
-                try { size = newPath.size(); }
-                catch (NoSuchFileException e) { noOp(); }
-                catch (IOException e)         { return; }
-
-                if (size > 0L)
-                {
-                  doImport(newPath);
-                  return;
-                }
-
-                sleepForMillis(500); // Sometimes the file is created empty and immediately filled with data
-              }});
+              queueImport(newPath);
             }
 
-            Platform.runLater(fileManagerDlg::refresh);
+            requestRefresh(false);
 
             break;
 
           case wekDelete:
 
+            dequeueImport(oldPathInfo.getFilePath());
+
             HyperPath hyperPath = oldPathInfo.getHyperPath();
 
             if (hyperPath != null)
@@ -325,32 +317,19 @@ public class FolderTreeWatcher
                 if (watcherEvent.isDirectory())
                   messageDialog(changedFolderMsg(), mtWarning);
                 else
-                {
-                  FilePath oldPath = oldPathInfo.getFilePath();
-
-                  Platform.runLater(() ->
-                  {
-                    sleepForMillis(2000);
-
-                    if (oldPath.exists() == false)
-                      messageDialog(deletedMsg(oldPath), mtWarning);
-                  });
-                }
+                  noteDeletedFile(oldPathInfo.getFilePath());
               }
               else if (watcherEvent.isDirectory())
                 HDT_Folder.deleteFolderRecordTree((HDT_Folder) hyperPath.getRecord());
             }
 
-            Platform.runLater(fileManagerDlg::pruneAndRefresh);
+            requestRefresh(true);
 
             break;
 
           case wekModify:
 
-            if (app.prefs.getBoolean(PREF_KEY_AUTO_IMPORT, true) && downloading.contains(newPath))
-            {
-              doImport(newPath);
-            }
+            nullSwitch(pendingImports.get(newPath), pendingImport -> pendingImport.changed = true);
 
             break;
 
@@ -367,60 +346,15 @@ public class FolderTreeWatcher
                   ("pdf".equalsIgnoreCase(oldPathInfo.getFilePath().getExtensionOnly()) == false) &&
                   "pdf".equalsIgnoreCase(newPath.getExtensionOnly()))
               {
-                doImport(newPath);
+                queueImport(newPath);
               }
             }
             else if ((hyperPath != null) && (hyperPath.getRecordsString().length() > 0))
             {
               if (watcherEvent.isDirectory())
                 messageDialog(changedFolderMsg(), mtWarning);
-              else
-              {
-                Platform.runLater(() ->
-                {
-                  sleepForMillis(2000);
-
-                  if ((newPath.exists() == false) || oldPathInfo.getFilePath().equals(newPath)) return;
-
-                  if (!confirmDialog("A file that is in use by the database has been renamed from outside the program." + System.lineSeparator() +
-                                     "This may or may not cause a data integrity problem." + System.lineSeparator() +
-                                     "Should the record be reassigned to \"" + newPath.getNameOnly() + "\"?"))
-                    return;
-
-                  if (newPath.exists() == false)
-                  {
-                    messageDialog("The file \"" + newPath.getNameOnly() + "\" no longer exists. Record was not changed.", mtWarning);
-                    return;
-                  }
-
-                  hyperPath.assign(hyperPath.parentFolder(), newPath.getNameOnly());
-
-                  HDT_RecordWithPath record = hyperPath.getRecord();
-
-                  if (record == null)
-                    return;
-
-                  if ((record.getType() == hdtWorkFile) && (ui.activeTabEnum() == workTabEnum))
-                  {
-                    HDT_WorkFile workFile = (HDT_WorkFile) record;
-
-                    if (workFile.works.contains(ui.activeRecord()))
-                    {
-                      if      (ui.workHyperTab().wdc != null) ui.workHyperTab().wdc.btnCancel.fire();
-                      else if (ui.workHyperTab().fdc != null) ui.workHyperTab().fdc.btnCancel.fire();
-
-                      ui.workHyperTab().refreshFiles();
-                    }
-                  }
-                  else if ((record.getType() == hdtMiscFile) && (ui.activeTabEnum() == fileTabEnum))
-                  {
-                    if (ui.fileHyperTab().fdc != null)
-                      ui.fileHyperTab().fdc.btnCancel.fire();
-
-                    ui.fileHyperTab().refreshFile();
-                  }
-                });
-              }
+              else if (oldPathInfo.getFilePath().equals(newPath) == false)
+                noteRenamedFile(hyperPath, newPath);
             }
 
             if ((hyperPath != null) && watcherEvent.isDirectory())
@@ -429,7 +363,7 @@ public class FolderTreeWatcher
               registerTree(newPath);
             }
 
-            Platform.runLater(fileManagerDlg::refresh);
+            requestRefresh(false);
 
             break;
 
@@ -457,76 +391,113 @@ public class FolderTreeWatcher
   //---------------------------------------------------------------------------
   //---------------------------------------------------------------------------
 
-    private void registerTree(FilePath rootFilePath) throws IOException
+    /**
+     * Collapses events for the same path within a batch. Repeated modify events are reduced to one,
+     * modify events for a path created in the same batch are dropped, and a path that is created
+     * and then deleted again within the batch (e.g., a temporary file) is ignored altogether.
+     */
+    private List<WatcherEvent> coalesce(List<WatcherEvent> eventList)
     {
-      Files.walkFileTree(rootFilePath.toPath(), new FileVisitor<>()
+      List<WatcherEvent> result = new ArrayList<>(eventList.size());
+      Map<FilePath, WatcherEvent> created = new HashMap<>();
+      Set<FilePath> modified = new HashSet<>();
+
+      for (WatcherEvent watcherEvent : eventList)
       {
-        /**
-         * Invoked for a directory before entries in the directory are visited.
-         */
-        @Override public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException
+        switch (watcherEvent.kind)
         {
-          Objects.requireNonNull(path);
-          Objects.requireNonNull(attrs);
+          case wekCreate:
 
-          if (new FilePath(path).exists() == false) return FileVisitResult.SKIP_SUBTREE;
+            created.put(watcherEvent.newPathInfo.getFilePath(), watcherEvent);
+            result.add(watcherEvent);
+            break;
 
-          HDT_Folder folder = HyperPath.getFolderFromFilePath(new FilePath(path), true);
+          case wekModify:
 
-          if (folder == null)
-            throw new IOException(new HDB_InternalError(92733));
+            FilePath filePath = watcherEvent.newPathInfo.getFilePath();
 
-          watchKeyToDir.put(path.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), folder);
+            if ((created.containsKey(filePath) == false) && modified.add(filePath))
+              result.add(watcherEvent);
 
-          return FileVisitResult.CONTINUE;
-        }
+            break;
 
-        /**
-         * Invoked for a file in a directory.
-         */
-        @Override public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
-        {
-          Objects.requireNonNull(path);
-          Objects.requireNonNull(attrs);
-          return FileVisitResult.CONTINUE;
-        }
+          case wekDelete:
 
-        /**
-         * Invoked for a file that could not be visited.
-         */
-        @Override public FileVisitResult visitFileFailed(Path path, IOException exc) throws IOException
-        {
-          Objects.requireNonNull(path);
+            filePath = watcherEvent.oldPathInfo.getFilePath();
+            WatcherEvent createEvent = created.remove(filePath);
 
-          if (new FilePath(path).exists() == false) return FileVisitResult.CONTINUE; // If folder doesn't exist just keep going
+            if (modified.remove(filePath))
+              result.removeIf(event -> (event.kind == wekModify) && event.newPathInfo.getFilePath().equals(filePath));
 
-          throw exc;
-        }
+            if (createEvent != null)
+              result.remove(createEvent);
+            else
+              result.add(watcherEvent);
 
-        /**
-         * Invoked for a directory after entries in the directory, and all of their
-         * descendants, have been visited.
-         */
-        @Override public FileVisitResult postVisitDirectory(Path path, IOException exc) throws IOException
-        {
-          Objects.requireNonNull(path);
+            break;
 
-          if (exc != null) throw exc;
+          default:
 
-          return FileVisitResult.CONTINUE;
+            modified.remove(watcherEvent.newPathInfo.getFilePath());
+            result.add(watcherEvent);
+            break;
         }
-      });
+      }
+
+      return result;
     }
 
   //---------------------------------------------------------------------------
   //---------------------------------------------------------------------------
 
-    private boolean handleInterComputerMessage()
+    private void registerTree(FilePath rootFilePath) throws IOException
+    {
+      if ((scanner == null) || (scanner.isForRoot(db.getRootPath()) == false))
+        scanner = new FolderTreeScanner(db.getRootPath());
+
+      // Directories are registered in parallel, but folder records have to be created on this thread, parents first
+
+      for (Registration registration : scanner.register(rootFilePath, watcher))
+      {
+        HDT_Folder folder = HyperPath.getFolderFromFilePath(new FilePath(registration.dir), true);
+
+        if (folder == null)
+          throw new IOException(new HDB_InternalError(92733));
+
+        watchKeyToDir.put(registration.watchKey, folder);
+      }
+    }
+
+  //---------------------------------------------------------------------------
+  //---------------------------------------------------------------------------
+
+    /**
+     * Handles inter-computer messages if a message file was created, changed, or deleted, or if
+     * the fallback interval has elapsed. The fallback is needed because network file systems
+     * do not always deliver watch events for changes made from another computer.
+     */
+    private void checkInterComputerMessages()
+    {
+      long now = System.currentTimeMillis();
+
+      if ((messageCheckNeeded == false) && ((now - lastMessageCheckTime) < INTER_COMPUTER_MSG_FALLBACK_POLL_MS))
+        return;
+
+      messageCheckNeeded = false;
+      lastMessageCheckTime = now;
+
+      handleInterComputerMessage();
+    }
+
+  //---------------------------------------------------------------------------
+  //---------------------------------------------------------------------------
+
+    private void handleInterComputerMessage()
     {
       if (sentResponse)
       {
         if (db.getRequestMessageFilePath(false).exists())
-          return false;
+          return;
 
         sentResponse = false;
 
@@ -539,11 +510,11 @@ public class FolderTreeWatcher
           Platform.runLater(() -> ui.shutDown(true, true, false));
         }
 
-        return true;
+        return;
       }
 
       if (db.getRequestMessageFilePath(false).exists() == false)
-        return false;
+        return;
 
       InterComputerMsg receivedMsg = InterComputerMsg.checkForMessage(db.getRequestMessageFilePath(false));
       requestType = hmtNone;
@@ -560,32 +531,52 @@ public class FolderTreeWatcher
 
             new InterComputerMsg(compName, receivedMsg.getSource(), hmtEchoReply).writeToDisk(false);
             sentResponse = true;
-            return true;
+            break;
 
           case hmtUnlockRequest :
 
             new InterComputerMsg(compName, receivedMsg.getSource(), hmtUnlockComplete).writeToDisk(false);
             sentResponse = true;
-            return true;
+            break;
 
           default :
-            return true;
+            break;
         }
       }
       catch (IOException e)
       {
         e.printStackTrace();
-        return true;
       }
     }
   }
 
   private WatchService watcher;
   private WatcherThread watcherThread;
-  private final FilePathSet downloading = new FilePathSet();
+  private ScheduledExecutorService scheduler;
+  private FolderTreeScanner scanner;
+  private final Map<FilePath, PendingImport> pendingImports = new ConcurrentHashMap<>();
+  private final Set<FilePath> waitingImports = new LinkedHashSet<>();            // Guarded by itself; queued once pendingImports has room
   private final Map<WatchKey, HDT_Folder> watchKeyToDir = new HashMap<>();
-  public static final int FOLDER_TREE_WATCHER_POLL_TIME_MS = 100;
-  private static boolean alreadyImporting = false;
+  private final Map<FilePath, Long> deletedFiles = new LinkedHashMap<>();       // Guarded by itself; values are when each deletion was noticed
+  private final Map<HyperPath, FilePath> renamedFiles = new LinkedHashMap<>();  // Guarded by itself
+  private final Map<HyperPath, Long> renameTimes = new HashMap<>();             // Guarded by renamedFiles
+  private final AtomicBoolean refreshScheduled             = new AtomicBoolean(false),
+                              pruneRequested               = new AtomicBoolean(false),
+                              externalChangeCheckScheduled = new AtomicBoolean(false);
+
+  public static final int FOLDER_TREE_WATCHER_POLL_TIME_MS = 100,
+                          INTER_COMPUTER_MSG_FALLBACK_POLL_MS = 1000;
+
+  private static final int EVENT_DEBOUNCE_MS        = 250,   // How long to wait for more events before processing a batch
+                           MAX_EVENT_BATCH_MS       = 2000,  // Process a batch after this long even if events keep arriving
+                           REFRESH_DEBOUNCE_MS      = 500,   // File manager is refreshed at most once per this interval
+                           IMPORT_CHECK_INTERVAL_MS = 500,
+                           MAX_IMPORT_CHECKS        = 120,   // Give up on a pending import if its size is still changing after this many checks
+                           MAX_PENDING_IMPORTS      = 1000,
+                           EXTERNAL_CHANGE_DELAY_MS = 2000,  // Wait this long before reporting that a tracked file was deleted or renamed
+                           MAX_LISTED_FILES         = 20;
+
+  private static volatile boolean alreadyImporting = false;
   private volatile boolean stopRequested = false,
                            stopped = true,
                            disabled = false;
@@ -595,6 +586,303 @@ public class FolderTreeWatcher
   public boolean isDisabled() { return disabled; }
   public boolean isRunning()  { return (stopped == false) && HyperThread.isRunning(watcherThread); }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * @return False if the import could not be started because another import is in progress or a modal window is open
+   */
+  private static boolean doImport(FilePath filePath)
+  {
+    if (alreadyImporting || (ui.windows.getOutermostModality() != Modality.NONE)) return false;
+
+    alreadyImporting = true;
+
+    Platform.runLater(() ->
+    {
+      ui.importWorkFile(null, filePath, true);
+      alreadyImporting = false;
+    });
+
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * At most MAX_PENDING_IMPORTS files have their size checked at a time; the rest wait their turn in the order they appeared.
+   */
+  private void queueImport(FilePath filePath)
+  {
+    if (pendingImports.containsKey(filePath)) return;
+
+    synchronized (waitingImports)
+    {
+      if ((pendingImports.size() < MAX_PENDING_IMPORTS) && waitingImports.isEmpty())
+        pendingImports.put(filePath, new PendingImport());
+      else
+        waitingImports.add(filePath);
+    }
+  }
+
+  private void dequeueImport(FilePath filePath)
+  {
+    pendingImports.remove(filePath);
+    synchronized (waitingImports) { waitingImports.remove(filePath); }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Runs periodically on the scheduler thread. A pending PDF is imported once it is non-empty and
+   * its size has not changed since the previous check, because files are sometimes created empty
+   * and then filled with data, or are still being downloaded.
+   */
+  private void checkPendingImports()
+  {
+    pendingImports.entrySet().removeIf(entry ->
+    {
+      FilePath filePath = entry.getKey();
+      PendingImport pendingImport = entry.getValue();
+      long size;
+
+      try { size = filePath.size(); }
+      catch (NoSuchFileException e) { size = 0L; }
+      catch (IOException e)         { return true; }
+
+      boolean changed = pendingImport.changed;
+      pendingImport.changed = false;
+
+      if ((size > 0L) && (size == pendingImport.lastSize) && (changed == false))
+        return doImport(filePath); // If another import is in progress, try again at the next check
+
+      pendingImport.lastSize = size;
+      return ++pendingImport.checks > MAX_IMPORT_CHECKS;
+    });
+
+    synchronized (waitingImports)
+    {
+      Iterator<FilePath> it = waitingImports.iterator();
+
+      while (it.hasNext() && (pendingImports.size() < MAX_PENDING_IMPORTS))
+      {
+        pendingImports.putIfAbsent(it.next(), new PendingImport());
+        it.remove();
+      }
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void requestRefresh(boolean prune)
+  {
+    if (prune)
+      pruneRequested.set(true);
+
+    if (refreshScheduled.compareAndSet(false, true))
+      scheduler.schedule(() ->
+      {
+        refreshScheduled.set(false);
+        Platform.runLater(pruneRequested.getAndSet(false) ? fileManagerDlg::pruneAndRefresh : fileManagerDlg::refresh);
+      }, REFRESH_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void noteDeletedFile(FilePath filePath)
+  {
+    synchronized (deletedFiles) { deletedFiles.put(filePath, System.currentTimeMillis()); }
+    scheduleExternalChangeCheck(EXTERNAL_CHANGE_DELAY_MS);
+  }
+
+  private void noteRenamedFile(HyperPath hyperPath, FilePath newPath)
+  {
+    synchronized (renamedFiles)
+    {
+      renamedFiles.put(hyperPath, newPath);
+      renameTimes.put(hyperPath, System.currentTimeMillis());
+    }
+
+    scheduleExternalChangeCheck(EXTERNAL_CHANGE_DELAY_MS);
+  }
+
+  private void scheduleExternalChangeCheck(long delayMS)
+  {
+    if (externalChangeCheckScheduled.compareAndSet(false, true))
+      scheduler.schedule(this::checkExternalChanges, delayMS, TimeUnit.MILLISECONDS);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Runs on the scheduler thread after tracked files were deleted or renamed from outside the program.
+   * Each change is only reported once it was noticed at least EXTERNAL_CHANGE_DELAY_MS ago, so that
+   * files that were only being replaced are not reported. The changes that are due are reported together,
+   * and the check is scheduled again for the ones that are not due yet.
+   */
+  private void checkExternalChanges()
+  {
+    externalChangeCheckScheduled.set(false);
+
+    long now = System.currentTimeMillis(), nextDue;
+    List<FilePath> deleted = new ArrayList<>();
+    List<HyperPath> renamedKeys = new ArrayList<>();
+    Map<HyperPath, FilePath> renamed = new LinkedHashMap<>();
+
+    synchronized (deletedFiles) { nextDue = removeDue(deletedFiles, deleted, now); }
+
+    synchronized (renamedFiles)
+    {
+      nextDue = Math.min(nextDue, removeDue(renameTimes, renamedKeys, now));
+      renamedKeys.forEach(hyperPath -> renamed.put(hyperPath, renamedFiles.remove(hyperPath)));
+    }
+
+    deleted.removeIf(FilePath::exists);
+    renamed.values().removeIf(newPath -> newPath.exists() == false);
+
+    if (deleted.isEmpty() == false)
+      messageDialog(deletedMsg(deleted), mtWarning);
+
+    if (renamed.isEmpty() == false)
+      Platform.runLater(() -> reassignRenamedFiles(renamed));
+
+    if ((nextDue < Long.MAX_VALUE) && (scheduler != null))
+      scheduleExternalChangeCheck(nextDue - now);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Moves the keys that were noted at least EXTERNAL_CHANGE_DELAY_MS before {@code now} from {@code notedTimes} to {@code due}.
+   * @return When the earliest of the remaining keys will be due, or Long.MAX_VALUE if none remain
+   */
+  private static <K> long removeDue(Map<K, Long> notedTimes, Collection<K> due, long now)
+  {
+    long nextDue = Long.MAX_VALUE;
+    Iterator<Map.Entry<K, Long>> it = notedTimes.entrySet().iterator();
+
+    while (it.hasNext())
+    {
+      Map.Entry<K, Long> entry = it.next();
+      long dueTime = entry.getValue() + EXTERNAL_CHANGE_DELAY_MS;
+
+      if (dueTime <= now)
+      {
+        due.add(entry.getKey());
+        it.remove();
+      }
+      else
+        nextDue = Math.min(nextDue, dueTime);
+    }
+
+    return nextDue;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static String deletedMsg(List<FilePath> filePaths)
+  {
+    return (filePaths.size() == 1 ?
+      "A file that is in use by the database, \"" + filePaths.get(0).getNameOnly() + "\", has been deleted or moved from outside the program. "
+    :
+      "The following files that are in use by the database have been deleted or moved from outside the program:" + System.lineSeparator() +
+      fileList(filePaths, filePath -> filePath.getNameOnly().toString()) + System.lineSeparator()) +
+
+      "This may or may not cause a data integrity problem. Changes to database files should be made using the " + appTitle + " File Manager instead.";
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static <T> String fileList(Collection<T> items, Function<T, String> toStr)
+  {
+    StringBuilder sb = new StringBuilder();
+
+    items.stream().limit(MAX_LISTED_FILES).forEach(item -> sb.append("    ").append(toStr.apply(item)).append(System.lineSeparator()));
+
+    if (items.size() > MAX_LISTED_FILES)
+      sb.append("    ...and ").append(items.size() - MAX_LISTED_FILES).append(" more").append(System.lineSeparator());
+
+    return sb.toString();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void reassignRenamedFiles(Map<HyperPath, FilePath> renamed)
+  {
+    String msg = renamed.size() == 1 ?
+      "A file that is in use by the database has been renamed from outside the program." + System.lineSeparator() +
+      "This may or may not cause a data integrity problem." + System.lineSeparator() +
+      "Should the record be reassigned to \"" + renamed.values().iterator().next().getNameOnly() + "\"?"
+    :
+      "The following files that are in use by the database have been renamed from outside the program:" + System.lineSeparator() +
+      fileList(renamed.entrySet(), entry -> entry.getKey().getNameStr() + " -> " + entry.getValue().getNameOnly()) + System.lineSeparator() +
+      "This may or may not cause a data integrity problem." + System.lineSeparator() +
+      "Should the records be reassigned to the new file names?";
+
+    if (confirmDialog(msg) == false) return;
+
+    List<FilePath> missing = new ArrayList<>();
+    boolean refreshWorkTab = false, refreshFileTab = false;
+
+    for (Map.Entry<HyperPath, FilePath> entry : renamed.entrySet())
+    {
+      HyperPath hyperPath = entry.getKey();
+      FilePath newPath = entry.getValue();
+
+      if (newPath.exists() == false)
+      {
+        missing.add(newPath);
+        continue;
+      }
+
+      hyperPath.assign(hyperPath.parentFolder(), newPath.getNameOnly());
+
+      HDT_RecordWithPath record = hyperPath.getRecord();
+
+      if (record == null)
+        continue;
+
+      if ((record.getType() == hdtWorkFile) && (ui.activeTabEnum() == workTabEnum))
+      {
+        if (((HDT_WorkFile) record).works.contains(ui.activeRecord()))
+          refreshWorkTab = true;
+      }
+      else if ((record.getType() == hdtMiscFile) && (ui.activeTabEnum() == fileTabEnum))
+        refreshFileTab = true;
+    }
+
+    if (missing.size() == 1)
+      messageDialog("The file \"" + missing.get(0).getNameOnly() + "\" no longer exists. Record was not changed.", mtWarning);
+    else if (missing.size() > 1)
+      messageDialog("The following files no longer exist, so their records were not changed:" + System.lineSeparator() +
+                    fileList(missing, filePath -> filePath.getNameOnly().toString()), mtWarning);
+
+    if (refreshWorkTab)
+    {
+      if      (ui.workHyperTab().wdc != null) ui.workHyperTab().wdc.btnCancel.fire();
+      else if (ui.workHyperTab().fdc != null) ui.workHyperTab().fdc.btnCancel.fire();
+
+      ui.workHyperTab().refreshFiles();
+    }
+
+    if (refreshFileTab)
+    {
+      if (ui.fileHyperTab().fdc != null)
+        ui.fileHyperTab().fdc.btnCancel.fire();
+
+      ui.fileHyperTab().refreshFile();
+    }
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -631,6 +919,25 @@ public class FolderTreeWatcher
       stop();
     }
 
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+      HyperThread thread = new HyperThread(runnable, "FolderTreeWatcherScheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    scheduler.scheduleWithFixedDelay(this::checkPendingImports, IMPORT_CHECK_INTERVAL_MS, IMPORT_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+    // Deletions and renames noticed before the watcher was last stopped are still waiting to be checked
+
+    boolean changesQueued;
+
+    synchronized (deletedFiles) { changesQueued = deletedFiles.isEmpty() == false; }
+    synchronized (renamedFiles) { changesQueued = changesQueued || (renamedFiles.isEmpty() == false); }
+
+    if (changesQueued)
+      scheduleExternalChangeCheck(EXTERNAL_CHANGE_DELAY_MS);
+
     (watcherThread = new WatcherThread()).start();
     stopped = false;
   }
@@ -664,11 +971,37 @@ public class FolderTreeWatcher
       }
     }
 
+    if (scheduler != null)
+    {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+
+    // Pending imports and queued deletions and renames are kept so that they are picked up again
+    // when the watcher restarts; stopping only for an internal file operation shouldn't lose them.
+
     watcherThread = null;
     watchKeyToDir.clear();
+    externalChangeCheckScheduled.set(false);
+    refreshScheduled.set(false);
+    pruneRequested.set(false);
     return wasRunning;
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Forgets pending imports and queued deletions and renames. Called when the database is closed.
+   */
+  public void clearQueuedChanges()
+  {
+    pendingImports.clear();
+    synchronized (waitingImports) { waitingImports.clear(); }
+    synchronized (deletedFiles) { deletedFiles.clear(); }
+    synchronized (renamedFiles) { renamedFiles.clear(); renameTimes.clear(); }
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -122,6 +122,8 @@ public abstract class BibEntry<BibEntry_T extends BibEntry<BibEntry_T, BibCollec
       return;
     }
 
+    db.bumpModGeneration();
+
     JsonObj jBackupObj;
 
     if (jObj.containsKey("backupItem"))
@@ -17,7 +17,22 @@
 
 package org.hypernomicon.bib;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -26,11 +41,13 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import org.apache.http.client.methods.HttpUriRequest;
+import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
 
 import com.google.common.collect.EnumHashBiMap;
@@ -43,7 +60,9 @@ import org.hypernomicon.util.JsonHttpClient;
 import org.hypernomicon.util.filePath.FilePath;
 import org.hypernomicon.util.json.JsonArray;
 import org.hypernomicon.util.json.JsonObj;
+import org.hypernomicon.util.json.JsonStreamReader;
 
+import static java.nio.charset.StandardCharsets.*;
 import static org.hypernomicon.bib.data.EntryType.etOther;
 import static org.hypernomicon.model.HyperDB.*;
 import static org.hypernomicon.util.UIUtil.*;
@@ -89,8 +108,10 @@ public abstract class LibraryWrapper<BibEntry_T extends BibEntry<BibEntry_T, Bib
   protected final JsonHttpClient jsonClient = new JsonHttpClient();
   protected SyncTask syncTask = null;
   protected HttpUriRequest request = null;
+  protected final Set<HttpUriRequest> concurrentRequests = ConcurrentHashMap.newKeySet(); // Requests running alongside request, on other threads
   private BiConsumer<String, String> keyChangeHndlr;
-  private String userName = "";
+  private String userName = "", savedDigest = ""; // savedDigest is the digest of the library file as of the last load or save
+  private long savedFileSize = -1L, savedFileModTime = -1L; // Attributes of the library file as of the last load or save
 
   protected boolean didMergeDuringSync = false;
 
@@ -128,6 +149,9 @@ public abstract class LibraryWrapper<BibEntry_T extends BibEntry<BibEntry_T, Bib
     keyList        .clear();
 
     userName = "";
+    savedDigest = "";
+    savedFileSize = -1L;
+    savedFileModTime = -1L;
   }
 
   //---------------------------------------------------------------------------
@@ -140,6 +164,8 @@ public abstract class LibraryWrapper<BibEntry_T extends BibEntry<BibEntry_T, Bib
 
     if (request != null)
       request.abort();
+
+    concurrentRequests.forEach(HttpUriRequest::abort);
   }
 
   //---------------------------------------------------------------------------
@@ -158,7 +184,8 @@ public abstract class LibraryWrapper<BibEntry_T extends BibEntry<BibEntry_T, Bib
 
     nullSwitch(db.getWorkByBibEntryKey(oldKey), work -> work.setBibEntryKey(newKey));
 
-    keyChangeHndlr.accept(oldKey, newKey);
+    if (keyChangeHndlr != null) // Not set yet if this is happening while the library is being loaded
+      keyChangeHndlr.accept(oldKey, newKey);
   }
 
   //---------------------------------------------------------------------------
@@ -242,11 +269,67 @@ public abstract class LibraryWrapper<BibEntry_T extends BibEntry<BibEntry_T, Bib
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  protected void loadFromJSON(JsonObj jObj)
+  /**
+   * Loads the entries and collections from the library file, building each one as soon as it has been read
+   * instead of parsing the whole file first.
+   * @return False if the file does not exist
+   */
+  protected final boolean loadFromFile(FilePath filePath) throws IOException, ParseException
   {
-    jObj.getArray(entryFileNode()).getObjs().forEach(itemJsonObj ->
+    MessageDigest md = newMessageDigest();
+    BasicFileAttributes attrs;
+
+    try
+    {
+      attrs = Files.readAttributes(filePath.toPath(), BasicFileAttributes.class); // Read first so that a change made while loading is noticed when saving
+    }
+    catch (NoSuchFileException e)
+    {
+      return false;
+    }
+
+    try (Reader reader = new BufferedReader(new InputStreamReader(new DigestInputStream(Files.newInputStream(filePath.toPath()), md), UTF_8)))
+    {
+      JsonStreamReader.readArrayElements(reader, this::loadFromJSON);
+    }
+    catch (FileNotFoundException | NoSuchFileException e)
     {
-      BibEntry_T entry = BibEntry.create(this, itemJsonObj, false);
+      return false;
+    }
+
+    savedDigest = digestHexStr(md);
+    savedFileSize = attrs.size();
+    savedFileModTime = attrs.lastModifiedTime().toMillis();
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * @return True if the library file's size and modification time are the same as when it was last loaded or saved
+   */
+  private boolean fileUnchangedSinceLoadOrSave(FilePath filePath)
+  {
+    try
+    {
+      BasicFileAttributes attrs = Files.readAttributes(filePath.toPath(), BasicFileAttributes.class);
+      return (attrs.size() == savedFileSize) && (attrs.lastModifiedTime().toMillis() == savedFileModTime);
+    }
+    catch (IOException e)
+    {
+      return false;
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void loadFromJSON(String nodeName, JsonObj jObj)
+  {
+    if (nodeName.equals(entryFileNode()))
+    {
+      BibEntry_T entry = BibEntry.create(this, jObj, false);
 
       if (entry != null)
       {
@@ -254,75 +337,116 @@ public abstract class LibraryWrapper<BibEntry_T extends BibEntry<BibEntry_T, Bib
         if (userName.isBlank())
           userName = entry.getUserName();
       }
-    });
-
-    nullSwitch(jObj.getArray("trash"), jArr -> jArr.getObjs().forEach(itemJsonObj ->
+    }
+    else if (nodeName.equals("trash"))
     {
-      BibEntry_T entry = BibEntry.create(this, itemJsonObj, false);
+      BibEntry_T entry = BibEntry.create(this, jObj, false);
 
       if (entry == null) return;
 
       keyToAllEntry.put(entry.getKey(), entry);
       keyToTrashEntry.put(entry.getKey(), entry);
-    }));
-
-    nullSwitch(jObj.getArray(collectionFileNode()), jArr -> jArr.getObjs().forEach(collJsonObj ->
+    }
+    else if (nodeName.equals(collectionFileNode()))
     {
-      BibCollection_T coll = BibCollection.create(type(), collJsonObj);
+      BibCollection_T coll = BibCollection.create(type(), jObj);
 
       if (coll != null)
         keyToColl.put(coll.getKey(), coll);
-    }));
+    }
   }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  public void saveToDisk()
+  /**
+   * Writes the library file one entry at a time to a temporary file, which then replaces the library file.
+   * If what was written is the same as what was last loaded or saved, and the library file has not been changed
+   * on disk since then, the library file is left alone.
+   * @return False if the library could not be saved
+   */
+  public boolean saveToDisk()
   {
-    StringBuilder json = null;
+    FilePath filePath = db.xmlPath(BIB_FILE_NAME), tempFilePath = db.xmlPath(BIB_FILE_NAME + ".tmp");
+    MessageDigest md = newMessageDigest();
 
     try
     {
-      JsonObj jMainObj = new JsonObj();
-      JsonArray jArr = new JsonArray();
-
-      for (BibEntry_T entry : (Iterable<BibEntry_T>)getNonTrashEntries()::iterator)
-        entry.saveToDisk(jArr);
-
-      jMainObj.put(entryFileNode(), jArr);
-
-      jArr = new JsonArray();
-
-      for (BibEntry_T entry : keyToTrashEntry.values())
-        entry.saveToDisk(jArr);
-
-      jMainObj.put("trash", jArr);
-
-      jArr = new JsonArray();
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(new DigestOutputStream(Files.newOutputStream(tempFilePath.toPath()), md), UTF_8)))
+      {
+        writer.write('{');
+        writeArray(writer, entryFileNode(), (Iterable<BibEntry_T>)getNonTrashEntries()::iterator);
+        writer.write(',');
+        writeArray(writer, "trash", keyToTrashEntry.values());
+        writer.write(',');
+        writeArray(writer, collectionFileNode(), keyToColl.values());
+        writer.write('}');
+      }
 
-      for (BibCollection_T coll : keyToColl.values())
-        coll.saveToDisk(jArr);
+      String digest = digestHexStr(md);
 
-      jMainObj.put(collectionFileNode(), jArr);
+      if (digest.equals(savedDigest) && fileUnchangedSinceLoadOrSave(filePath))
+        tempFilePath.delete(true);
+      else
+      {
+        try
+        {
+          Files.move(tempFilePath.toPath(), filePath.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+          Files.move(tempFilePath.toPath(), filePath.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        BasicFileAttributes attrs = Files.readAttributes(filePath.toPath(), BasicFileAttributes.class);
+
+        savedDigest = digest;
+        savedFileSize = attrs.size();
+        savedFileModTime = attrs.lastModifiedTime().toMillis();
+      }
 
-      json = new StringBuilder(jMainObj.toString());
+      safePrefs();
+    }
+    catch (IOException e)
+    {
+      tempFilePath.deleteReturnsBoolean(true);
+      messageDialog("An error occurred while saving bibliographic data to disk.", mtError);
+      return false;
     }
     catch (Throwable e)
     {
+      tempFilePath.deleteReturnsBoolean(true);
       showStackTrace(e);
-      return;
+      return false;
     }
 
-    try
-    {
-      saveStringBuilderToFile(json, db.xmlPath(BIB_FILE_NAME));
-      safePrefs();
-    }
-    catch (IOException e)
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void writeArray(Writer writer, String nodeName, Iterable<? extends BibEntity> entities) throws IOException
+  {
+    JsonArray jArr = new JsonArray();
+    boolean first = true;
+
+    writer.write('"' + JSONObject.escape(nodeName) + "\":[");
+
+    for (BibEntity entity : entities)
     {
-      messageDialog("An error occurred while saving bibliographic data to disk.", mtError);
+      jArr.clear();
+      entity.saveToDisk(jArr);
+
+      for (JsonObj jObj : jArr.getObjs())
+      {
+        if (first == false) writer.write(',');
+        writer.write(jObj.toString());
+        first = false;
+      }
     }
+
+    writer.write(']');
   }
 
 //---------------------------------------------------------------------------
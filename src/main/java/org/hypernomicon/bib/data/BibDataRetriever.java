@@ -25,6 +25,7 @@ import static org.hypernomicon.util.Util.*;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -52,38 +53,66 @@ public class BibDataRetriever
   private final WorkTypeEnum workTypeEnum;
   private final List<FilePath> pdfFiles;
   private final RetrieveHandler doneHndlr;
-  private final boolean queryCrossref, queryGoogle;
+  private final boolean queryCrossref, queryGoogle, showMessages;
   private final Set<String> alreadyCheckedIDs = new HashSet<>();
+  private final List<Lookup> lookups = new ArrayList<>();
+  private Exception lookupError = null;
 
   @FunctionalInterface
   public interface RetrieveHandler { void handle(PDFBibData pdfBD, BibDataStandalone queryBD, boolean messageShown); }
 
+  @FunctionalInterface
+  private interface LookupStarter { void start(AsyncHttpClient client, Consumer<BibDataStandalone> successHndlr, Consumer<Exception> failHndlr); }
+
+//---------------------------------------------------------------------------
+
+  /**
+   * One of the stages when they are all run at once. Each stage needs its own client
+   * because starting a request on a client stops whatever request it was already running.
+   */
+  private static final class Lookup
+  {
+    private final AsyncHttpClient client;
+    private final LookupStarter starter;
+    private boolean done = false;
+    private BibDataStandalone result = null;
+
+    private Lookup(AsyncHttpClient client, LookupStarter starter) { this.client = client; this.starter = starter; }
+
+    private void cancel() { done = true; result = null; client.stop(); }
+  }
+
+//---------------------------------------------------------------------------
+
   public BibDataRetriever(AsyncHttpClient httpClient, BibData workBD, List<FilePath> pdfFiles, RetrieveHandler doneHndlr)
   {
-    this(httpClient, workBD, pdfFiles, true, true, doneHndlr);
+    this(httpClient, workBD, pdfFiles, true, true, true, doneHndlr);
   }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
   private BibDataRetriever(AsyncHttpClient httpClient, BibData workBD, List<FilePath> pdfFiles,
-                           boolean queryCrossref, boolean queryGoogle, RetrieveHandler doneHndlr)
+                           boolean queryCrossref, boolean queryGoogle, boolean speculative, RetrieveHandler doneHndlr)
+  {
+    this(httpClient, workBD, extractFromFiles(pdfFiles), pdfFiles, queryCrossref, queryGoogle, true, speculative, doneHndlr);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private BibDataRetriever(AsyncHttpClient httpClient, BibData workBD, PDFBibData pdfBD, List<FilePath> pdfFiles,
+                           boolean queryCrossref, boolean queryGoogle, boolean showMessages, boolean speculative, RetrieveHandler doneHndlr)
   {
     this.pdfFiles = pdfFiles;
 
-    if (collEmpty(pdfFiles) == false) try
+    if (BibData.isEmpty(pdfBD) == false)
     {
-      pdfBD = PDFBibData.createFromFiles(pdfFiles);
+      this.pdfBD = pdfBD;
 
-      if (BibData.isEmpty(pdfBD))
-        pdfBD = null;
-      else if ((workBD == null) || (((workBD instanceof WorkBibData) == false) && BibData.isEmpty(workBD)))
+      if ((workBD == null) || (((workBD instanceof WorkBibData) == false) && BibData.isEmpty(workBD)))
         workBD = pdfBD;
     }
-    catch (IOException e)
-    {
-      messageDialog("An error occurred while extracting metadata: " + e.getMessage(), mtError);
-    }
 
     this.workBD = workBD;
 
@@ -93,8 +122,45 @@ public class BibDataRetriever
     this.doneHndlr = doneHndlr;
     this.queryCrossref = queryCrossref;
     this.queryGoogle = queryGoogle;
+    this.showMessages = showMessages;
 
-    doStage(1);
+    if (speculative)
+      startAllStages();
+    else
+      doStage(1);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static PDFBibData extractFromFiles(List<FilePath> pdfFiles)
+  {
+    if (collEmpty(pdfFiles)) return null;
+
+    try
+    {
+      return PDFBibData.createFromFiles(pdfFiles);
+    }
+    catch (IOException e)
+    {
+      messageDialog("An error occurred while extracting metadata: " + e.getMessage(), mtError);
+      return null;
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Looks up bibliographic information online for metadata that has already been extracted from
+   * a work file, without showing any messages; errors are treated the same as finding nothing.
+   * <p>
+   * The stages are run one at a time here because the caller already runs several of these at once
+   * and limits how often lookups are started.
+   */
+  public static BibDataRetriever forExtractedPDF(AsyncHttpClient httpClient, PDFBibData pdfBD, FilePath pdfFile, RetrieveHandler doneHndlr)
+  {
+    return new BibDataRetriever(httpClient, null, pdfBD, safeListOf(pdfFile), true, true, false, false, doneHndlr);
   }
 
 //---------------------------------------------------------------------------
@@ -102,7 +168,7 @@ public class BibDataRetriever
 
   public static BibDataRetriever forCrossref(AsyncHttpClient httpClient, BibData workBD, Consumer<BibDataStandalone> doneHndlr)
   {
-    return new BibDataRetriever(httpClient, workBD, null, true, false, (pdfBD, queryBD, ms) -> doneHndlr.accept(queryBD));
+    return new BibDataRetriever(httpClient, workBD, null, true, false, true, (pdfBD, queryBD, ms) -> doneHndlr.accept(queryBD));
   }
 
 //---------------------------------------------------------------------------
@@ -110,7 +176,7 @@ public class BibDataRetriever
 
   public static BibDataRetriever forGoogleBooks(AsyncHttpClient httpClient, BibData workBD, Consumer<BibDataStandalone> doneHndlr)
   {
-    return new BibDataRetriever(httpClient, workBD, null, false, true, (pdfBD, queryBD, ms) -> doneHndlr.accept(queryBD));
+    return new BibDataRetriever(httpClient, workBD, null, false, true, true, (pdfBD, queryBD, ms) -> doneHndlr.accept(queryBD));
   }
 
 //---------------------------------------------------------------------------
@@ -119,6 +185,7 @@ public class BibDataRetriever
   public void stop()
   {
     httpClient.stop();
+    lookups.forEach(lookup -> lookup.client.stop());
     stopped = true;
   }
 
@@ -134,14 +201,14 @@ public class BibDataRetriever
 
     if (e != null)
     {
-      if (e instanceof ParseException)
-        noOp();
-      else if (e instanceof CancelledTaskException)
+      if (e instanceof CancelledTaskException)
       {
         pdfBD = null;
         queryBD = null;
         messageShown = true;
       }
+      else if ((e instanceof ParseException) || (showMessages == false))
+        noOp();
       else if (e instanceof UnknownHostException)
       {
         messageDialog("Unable to connect to host: " + e.getMessage(), mtError);
@@ -159,7 +226,7 @@ public class BibDataRetriever
       }
     }
 
-    if ((queryBD == null) && (pdfBD == null) && (messageShown == false) && queryCrossref && queryGoogle)
+    if ((queryBD == null) && (pdfBD == null) && (messageShown == false) && queryCrossref && queryGoogle && showMessages)
     {
       falseWithWarningMessage("Unable to find bibliographic information in " +
                               (collEmpty(pdfFiles) ? "" : "work file(s) or ") +
@@ -171,6 +238,131 @@ public class BibDataRetriever
     doneHndlr.handle(pdfBD, queryBD, messageShown);
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Starts every stage that applies at the same time instead of waiting for each one to come back empty
+   * before starting the next. The result of the highest-priority stage that finds something is used, in the
+   * same order as {@link #doStage(int)}; once a stage finds something, the lower-priority ones are stopped.
+   */
+  private void startAllStages()
+  {
+    String title = workBD == null ? "" : ultraTrim(workBD.getStr(bfTitle));
+    if (title.isBlank())
+      title = pdfBD == null ? "" : ultraTrim(pdfBD.getStr(bfTitle));
+
+    String finalTitle = title, yearStr = workBD == null ? "" : workBD.getStr(bfYear);
+    BibAuthors authors = workBD == null ? null : workBD.getAuthors();
+    boolean searchingCrossref = false, googleApplies = queryGoogle && ((workTypeEnum == wtNone) || (workTypeEnum == wtBook));
+
+    if (queryCrossref)
+    {
+      String doi = workBD == null ? "" : workBD.getStr(bfDOI);
+      if (doi.length() > 0)
+        addLookup((client, successHndlr, failHndlr) -> CrossrefBibData.doHttpRequest(client, doi, alreadyCheckedIDs, successHndlr::accept, failHndlr));
+
+      String pdfDoi = pdfBD == null ? "" : pdfBD.getStr(bfDOI);
+      if (pdfDoi.length() > 0)
+        addLookup((client, successHndlr, failHndlr) -> CrossrefBibData.doHttpRequest(client, pdfDoi, alreadyCheckedIDs, bd ->
+          successHndlr.accept((HDT_WorkType.getEnumVal(bd == null ? null : bd.getWorkType()) != wtBook) || ((workTypeEnum != wtChapter) && (workTypeEnum != wtPaper)) ? bd : null),
+          failHndlr));
+
+      if ((yearStr.length() > 0) && StringUtils.isNumeric(yearStr) && (title.length() > 0) && ((workTypeEnum != wtBook) || (parseInt(yearStr, -1) >= 1995)))
+      {
+        searchingCrossref = true;
+
+        addLookup((client, successHndlr, failHndlr) -> CrossrefBibData.doHttpRequest(client, finalTitle, yearStr, workTypeEnum == wtPaper, authors, "", alreadyCheckedIDs, successHndlr::accept, e ->
+        {
+          if ((e instanceof HttpResponseException) && (((HttpResponseException) e).getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE) && showMessages)
+            messageDialog(e.getMessage(), mtError);
+
+          successHndlr.accept(null);
+        }));
+      }
+    }
+
+    if (googleApplies)
+    {
+      List<String> isbns = workBD == null ? null : workBD.getMultiStr(bfISBNs);
+      if (collEmpty(isbns) == false)
+        addLookup((client, successHndlr, failHndlr) -> GoogleBibData.doHttpRequest(client, isbns.iterator(), alreadyCheckedIDs, successHndlr::accept, failHndlr));
+
+      List<String> pdfIsbns = pdfBD == null ? null : pdfBD.getMultiStr(bfISBNs);
+      if (collEmpty(pdfIsbns) == false)
+        addLookup((client, successHndlr, failHndlr) -> GoogleBibData.doHttpRequest(client, pdfIsbns.iterator(), alreadyCheckedIDs, successHndlr::accept, failHndlr));
+    }
+
+    if (title.isBlank() == false)
+    {
+      if (googleApplies)
+        addLookup((client, successHndlr, failHndlr) -> GoogleBibData.doHttpRequest(client, finalTitle, authors, null, alreadyCheckedIDs, successHndlr::accept, failHndlr));
+
+      if (queryCrossref && (searchingCrossref == false))
+      {
+        String workTitle = workBD == null ? "" : ultraTrim(workBD.getStr(bfTitle));
+
+        addLookup((client, successHndlr, failHndlr) -> CrossrefBibData.doHttpRequest(client, workTitle, yearStr, workTypeEnum == wtPaper, authors, "", alreadyCheckedIDs, successHndlr::accept, failHndlr));
+      }
+    }
+
+    if (lookups.isEmpty())
+    {
+      finish(null);
+      return;
+    }
+
+    // All of the lookups have to be in the list before any of them starts, because one can
+    // finish right away (e.g. if the ID was already checked or the response was cached)
+
+    for (Lookup lookup : List.copyOf(lookups))
+    {
+      if (stopped) return;
+      if (lookup.done) continue;
+
+      lookup.starter.start(lookup.client, bd -> lookupDone(lookup, bd, null), e -> lookupDone(lookup, null, e));
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void addLookup(LookupStarter starter)
+  {
+    lookups.add(new Lookup(lookups.isEmpty() ? httpClient : new AsyncHttpClient(), starter));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void lookupDone(Lookup lookup, BibDataStandalone bd, Exception e)
+  {
+    if (stopped || lookup.done) return;
+
+    lookup.done = true;
+    lookup.result = bd;
+
+    if ((e != null) && (lookupError == null))
+      lookupError = e;
+
+    if (bd != null)
+      lookups.subList(lookups.indexOf(lookup) + 1, lookups.size()).forEach(Lookup::cancel);
+
+    for (Lookup cur : lookups)
+    {
+      if (cur.done == false) return;   // A higher-priority stage might still find something
+
+      if (cur.result != null)
+      {
+        queryBD = cur.result;
+        finish(null);
+        return;
+      }
+    }
+
+    finish(lookupError);
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -264,7 +456,7 @@ public class BibDataRetriever
             if ((e instanceof HttpResponseException) && (((HttpResponseException) e).getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE))
             {
               searchedCrossref = true;
-              messageDialog(e.getMessage(), mtError);
+              if (showMessages) messageDialog(e.getMessage(), mtError);
               doStage(4);
             }
             else
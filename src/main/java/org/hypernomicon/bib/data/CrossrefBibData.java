@@ -53,6 +53,10 @@ public final class CrossrefBibData extends BibDataStandalone
   // CrossRef API documentation: https://api.crossref.org/swagger-ui/index.html
   //                    Old URL: https://github.com/CrossRef/rest-api-doc
 
+  // The API location can be overridden so that lookups can be run against a local server for testing
+
+  private static final String API_URL = System.getProperty("hypernomicon.crossrefApiUrl", "https://api.crossref.org/");
+
   private static CrossrefBibData createFromJSON(JsonObj jsonObj, String title, String yearStr, boolean isPaper, String queryDoi)
   {
     JsonArray jsonArray;
@@ -268,7 +272,7 @@ public final class CrossrefBibData extends BibDataStandalone
 
   private static String getQueryUrl(String title, String yearStr, Iterable<BibAuthor> authors, boolean engCharForAuthors, String doi)
   {
-    String url = "https://api.crossref.org/works", auths = "", eds = "";
+    String url = API_URL + "works", auths = "", eds = "";
 
     if (doi.length() > 0)
       return url + '/' + doi;
@@ -352,7 +356,7 @@ public final class CrossrefBibData extends BibDataStandalone
 
     alreadyCheckedIDs.add(doi.toLowerCase());
 
-    JsonHttpClient.getObjAsync(getQueryUrl(title, yearStr, authors, engCharForAuthors, doi), httpClient, jsonObj ->
+    JsonHttpClient.getObjAsyncCached(getQueryUrl(title, yearStr, authors, engCharForAuthors, doi), httpClient, jsonObj ->
     {
       CrossrefBibData bd = createFromJSON(jsonObj, title, yearStr, isPaper, doi);
 
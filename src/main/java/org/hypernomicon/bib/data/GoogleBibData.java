@@ -44,6 +44,8 @@ public final class GoogleBibData extends BibDataStandalone
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
+  private static final String API_URL = System.getProperty("hypernomicon.googleBooksApiUrl", "https://www.googleapis.com/books/v1/");
+
   private final String queryIsbn;
 
   public String getQueryIsbn() { return safeStr(queryIsbn); }
@@ -144,7 +146,7 @@ public final class GoogleBibData extends BibDataStandalone
 
   private static String getQueryUrl(String title, BibAuthors authors, String isbn)
   {
-    String url = "https://www.googleapis.com/books/v1/volumes?q=";
+    String url = API_URL + "volumes?q=";
 
     if (isbn.length() > 0)
       return url + "isbn:" + isbn;
@@ -218,7 +220,7 @@ public final class GoogleBibData extends BibDataStandalone
     alreadyCheckedIDs.add(isbn.toLowerCase());
     String finalIsbn = isbn;
 
-    JsonHttpClient.getObjAsync(getQueryUrl(title, authors, isbn), httpClient, jsonObj ->
+    JsonHttpClient.getObjAsyncCached(getQueryUrl(title, authors, isbn), httpClient, jsonObj ->
     {
       GoogleBibData bd = createFromJSON(jsonObj, title, finalIsbn);
 
@@ -26,19 +26,30 @@ import static org.hypernomicon.util.UIUtil.*;
 import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Predicate;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.pdmodel.common.PDMetadata;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.hypernomicon.HyperTask.HyperThread;
 import org.hypernomicon.bib.authors.BibAuthor.AuthorType;
 import org.hypernomicon.model.items.PersonName;
 import org.hypernomicon.util.filePath.FilePath;
@@ -373,6 +384,13 @@ public class PDFBibData extends BibDataStandalone
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
+  private static final int MAX_EXTRACTION_THREADS = 3;
+  private static final int MAX_CACHED_FIELD_LENGTH = 10000;
+  private static final Set<String> POPULATED_DOC_INFO_KEYS = Set.of("Author", "Title", "Subject"); // Read by populateFromFile, so cached at any length
+  private static final long MAX_MAIN_MEMORY_BYTES = 16L * 1024L * 1024L; // Beyond this, PDFBox buffers the document in temporary files
+
+  private static final PDFMetadataCache metadataCache = new PDFMetadataCache();
+
   private PDDocumentInformation docInfo = null;
   private XMPNode xmpRoot = null;
 
@@ -381,54 +399,160 @@ public class PDFBibData extends BibDataStandalone
 
   public PDFBibData(FilePath filePath) throws IOException
   {
-    try (PDDocument pdfDoc = PDDocument.load(filePath.toFile()))
+    this(filePath, () -> false, true);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * @param stopRequested Checked between extraction steps; if it returns true, the text of the
+   * document is not searched any further and the object will be incomplete
+   * @param showMessages If false, XMP data that can't be parsed is ignored without telling the user
+   */
+  private PDFBibData(FilePath filePath, BooleanSupplier stopRequested, boolean showMessages) throws IOException
+  {
+    BasicFileAttributes attrs = Files.readAttributes(filePath.toPath(), BasicFileAttributes.class);
+
+    PDFMetadataCache.Entry entry = metadataCache.get(filePath, attrs);
+
+    if (entry != null)
+    {
+      loadFromCacheEntry(entry);
+      return;
+    }
+
+    byte[] xmpData = null;
+
+    try (PDDocument pdfDoc = PDDocument.load(filePath.toFile(), MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES)))
     {
       setDocInfo(pdfDoc.getDocumentInformation());
       PDMetadata metadata = pdfDoc.getDocumentCatalog().getMetadata();
 
       if (metadata != null)
       {
-        try { setXmpRoot(metadata.toByteArray()); }
+        xmpData = metadata.toByteArray();
+
+        try { setXmpRoot(xmpData); }
         catch (XMPException e)
         {
-          messageDialog("An error occurred while parsing XMP data from PDF file: " +
-                        nullSwitch(e.getCause(), e.getMessage(), Throwable::getMessage), mtError);
+          if (showMessages)
+            messageDialog("An error occurred while parsing XMP data from PDF file: " +
+                          nullSwitch(e.getCause(), e.getMessage(), Throwable::getMessage), mtError);
 
           xmpRoot = null;
         }
       }
 
-      if (getStr(bfDOI).length() > 0) return;
+      if (extractIDsFromText(pdfDoc, stopRequested) == false)
+        return; // Incomplete, so don't cache it
+    }
+
+    metadataCache.put(filePath, attrs, new PDFMetadataCache.Entry(getStr(bfDOI), getMultiStr(bfISBNs), getMultiStr(bfISSNs), docInfoFields(), xmpData));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Searches the text of the first pages, and then the last pages, for a DOI and ISBNs.
+   * @return False if {@code stopRequested} returned true before the search was finished
+   */
+  private boolean extractIDsFromText(PDDocument pdfDoc, BooleanSupplier stopRequested) throws IOException
+  {
+    if (getStr(bfDOI).length() > 0) return true;
+    if (stopRequested.getAsBoolean()) return false;
 
-      PDFTextStripper pdfStripper = new PDFTextStripper();
+    PDFTextStripper pdfStripper = new PDFTextStripper();
 
-      int numPages = pdfDoc.getNumberOfPages();
+    int numPages = pdfDoc.getNumberOfPages();
 
-      parseAndExtractIDs(pdfDoc, pdfStripper, 1, numPages > 60 ? 11 : Math.max(numPages, 11));
+    if (parseAndExtractIDs(pdfDoc, pdfStripper, 1, numPages > 60 ? 11 : Math.max(numPages, 11), stopRequested) == false)
+      return false;
 
-      if (getStr(bfDOI).length() > 0) return;
+    if (getStr(bfDOI).length() > 0) return true;
 
-      if (numPages > 11)
-        parseAndExtractIDs(pdfDoc, pdfStripper, numPages - 3, numPages);
+    if (numPages > 11)
+      return parseAndExtractIDs(pdfDoc, pdfStripper, numPages - 3, numPages, stopRequested);
+
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void loadFromCacheEntry(PDFMetadataCache.Entry entry)
+  {
+    PDDocumentInformation cachedDocInfo = new PDDocumentInformation();
+    entry.docInfo.forEach(cachedDocInfo::setCustomMetadataValue);
+    setDocInfo(cachedDocInfo);
+
+    if (entry.xmpData != null)
+    {
+      try { setXmpRoot(entry.xmpData); }
+      catch (XMPException e) { xmpRoot = null; } // The error was already reported when the file was first read
     }
+
+    setStr(bfDOI, entry.doi);
+    setMultiStr(bfISBNs, entry.isbns);
+    setMultiStr(bfISSNs, entry.issns);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private Map<String, String> docInfoFields()
+  {
+    Map<String, String> fields = new LinkedHashMap<>();
+    if (docInfo == null) return fields;
+
+    docInfo.getMetadataKeys().forEach(key ->
+    {
+      String value = docInfo.getCustomMetadataValue(key);
+
+      if ((value != null) && ((value.length() <= MAX_CACHED_FIELD_LENGTH) || POPULATED_DOC_INFO_KEYS.contains(key)))
+        fields.put(key, value);
+    });
+
+    return fields;
   }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  private void parseAndExtractIDs(PDDocument pdfDoc, PDFTextStripper pdfStripper, int startPage, int endPage) throws IOException
+  public static void saveMetadataCache() { metadataCache.saveAndReset(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Pages are read one at a time so that reading stops soon after {@code stopRequested} returns true,
+   * for example because a DOI was found in another file.
+   * @return False if {@code stopRequested} returned true before all of the pages were read
+   */
+  private boolean parseAndExtractIDs(PDDocument pdfDoc, PDFTextStripper pdfStripper, int startPage, int endPage, BooleanSupplier stopRequested) throws IOException
   {
     if (startPage < 1) startPage = 1;
+    endPage = Math.min(endPage, pdfDoc.getNumberOfPages());
+
+    StringBuilder parsedText = new StringBuilder();
 
-    pdfStripper.setStartPage(startPage);
-    pdfStripper.setEndPage(endPage);
+    for (int page = startPage; page <= endPage; page++)
+    {
+      if (stopRequested.getAsBoolean()) return false;
+
+      pdfStripper.setStartPage(page);
+      pdfStripper.setEndPage(page);
 
-    String parsedText = pdfStripper.getText(pdfDoc);
+      parsedText.append(pdfStripper.getText(pdfDoc));
+    }
 
-    extractDOIandISBNs(parsedText);
+    extractDOIandISBNs(parsedText.toString());
 
     if (getStr(bfDOI).isEmpty())
-      extractDOIandISBNs(parsedText.replaceAll("\\h+", ""));  // remove horizontal whitespaces and check again
+      extractDOIandISBNs(parsedText.toString().replaceAll("\\h+", ""));  // remove horizontal whitespaces and check again
+
+    return true;
   }
 
 //---------------------------------------------------------------------------
@@ -509,6 +633,14 @@ public class PDFBibData extends BibDataStandalone
   //---------------------------------------------------------------------------
 
   public static PDFBibData createFromFiles(List<FilePath> filePaths) throws IOException
+  {
+    return createFromFiles(filePaths, true);
+  }
+
+  /**
+   * @param showMessages If false, no error messages are shown; used when many files are read in the background
+   */
+  public static PDFBibData createFromFiles(List<FilePath> filePaths, boolean showMessages) throws IOException
   {
     List<FilePath> pdfFilePaths = new ArrayList<>(filePaths);
 
@@ -522,9 +654,9 @@ public class PDFBibData extends BibDataStandalone
     List<String> isbns = new ArrayList<>();
     String doi = "";
 
-    for (FilePath pdfFilePath : pdfFilePaths)
+    for (PDFBibData pdfBD : extractFromFiles(pdfFilePaths, showMessages))
     {
-      lastPdfBD = new PDFBibData(pdfFilePath);
+      lastPdfBD = pdfBD;
       if (firstPdfBD == null)
         firstPdfBD = lastPdfBD;
 
@@ -545,6 +677,9 @@ public class PDFBibData extends BibDataStandalone
 
         curIsbns.stream().filter(Predicate.not(isbns::contains)).forEachOrdered(isbns::add);
       }
+
+      if (doi.length() > 0)
+        break; // Files after this one may not have been fully searched
     }
 
     if (goodPdfBD == null)
@@ -574,4 +709,85 @@ public class PDFBibData extends BibDataStandalone
   //---------------------------------------------------------------------------
   //---------------------------------------------------------------------------
 
+  /**
+   * Reads the PDF files in parallel on a small pool of threads. Once a DOI has been found in one
+   * of the files, the files after it in the list are skipped or searched no further, since the
+   * DOI of an earlier file takes precedence and later files are not otherwise needed.
+   * @return Results in the same order as {@code pdfFilePaths}. Entries after the first one containing
+   * a DOI may be null or incomplete.
+   */
+  private static List<PDFBibData> extractFromFiles(List<FilePath> pdfFilePaths, boolean showMessages) throws IOException
+  {
+    int fileCount = pdfFilePaths.size();
+
+    if (fileCount == 1)
+      return List.of(new PDFBibData(pdfFilePaths.get(0), () -> false, showMessages));
+
+    AtomicInteger firstDoiNdx = new AtomicInteger(fileCount);
+
+    // More threads than processors would only make the file with the DOI take longer to finish
+
+    int threadCount = Math.min(Math.min(MAX_EXTRACTION_THREADS, fileCount), Runtime.getRuntime().availableProcessors());
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount, runnable ->
+    {
+      HyperThread thread = new HyperThread(runnable, "PDFBibData");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    List<Future<PDFBibData>> futures = new ArrayList<>();
+
+    try
+    {
+      for (int ndx = 0; ndx < fileCount; ndx++)
+      {
+        int fileNdx = ndx;
+        BooleanSupplier notNeeded = () -> fileNdx > firstDoiNdx.get();
+
+        futures.add(executor.submit(() ->
+        {
+          if (notNeeded.getAsBoolean()) return null;
+
+          PDFBibData pdfBD = new PDFBibData(pdfFilePaths.get(fileNdx), notNeeded, showMessages);
+
+          if (pdfBD.getStr(bfDOI).length() > 0)
+            firstDoiNdx.accumulateAndGet(fileNdx, Math::min);
+
+          return pdfBD;
+        }));
+      }
+
+      List<PDFBibData> pdfBDs = new ArrayList<>();
+
+      for (Future<PDFBibData> future : futures)
+        pdfBDs.add(future.get());
+
+      return pdfBDs;
+    }
+    catch (ExecutionException e)
+    {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+
+      throw new IOException(e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    finally
+    {
+      futures.forEach(future -> future.cancel(false));
+      executor.shutdown();
+    }
+  }
+
+  //---------------------------------------------------------------------------
+  //---------------------------------------------------------------------------
+
 }
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.bib.data;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hypernomicon.model.HyperDB.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Remembers what was extracted from each PDF file (identifiers, document information fields, and the raw
+ * XMP packet) so that a file that has not changed does not have to be loaded by PDFBox again.
+ * <p>
+ * An entry is only used if the file's size, modification time, and file key are the same as when it was
+ * extracted; replacing the file changes at least one of those. Files under the database root folder are
+ * keyed by their path relative to the root, other files by their absolute path, and the cache is saved in the
+ * database's XML folder.
+ */
+final class PDFMetadataCache
+{
+
+//---------------------------------------------------------------------------
+
+  static final class Entry
+  {
+    private final long size, modTime;
+    private final String fileKey;
+
+    final String doi;
+    final List<String> isbns, issns;
+    final Map<String, String> docInfo;
+    final byte[] xmpData;
+
+    Entry(String doi, List<String> isbns, List<String> issns, Map<String, String> docInfo, byte[] xmpData)
+    {
+      this(0L, 0L, "", doi, isbns, issns, docInfo, xmpData);
+    }
+
+    private Entry(long size, long modTime, String fileKey, String doi, List<String> isbns, List<String> issns, Map<String, String> docInfo, byte[] xmpData)
+    {
+      this.size = size;
+      this.modTime = modTime;
+      this.fileKey = fileKey;
+      this.doi = doi;
+      this.isbns = List.copyOf(isbns);
+      this.issns = List.copyOf(issns);
+      this.docInfo = docInfo;
+      this.xmpData = xmpData;
+    }
+
+    private Entry withAttributes(BasicFileAttributes attrs)
+    {
+      return new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), String.valueOf(attrs.fileKey()), doi, isbns, issns, docInfo, xmpData);
+    }
+
+    private boolean matches(BasicFileAttributes attrs)
+    {
+      return (size == attrs.size()) && (modTime == attrs.lastModifiedTime().toMillis()) && fileKey.equals(String.valueOf(attrs.fileKey()));
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int MAX_ENTRIES = 10000, FILE_VERSION = 3;
+  private static final String ABSOLUTE_KEY_PREFIX = "abs:";
+  private static final String FILE_NAME = "PDFMetadata.dat";
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true)
+  {
+    @Override protected boolean removeEldestEntry(Map.Entry<String, PDFMetadataCache.Entry> eldest) { return size() > MAX_ENTRIES; }
+  };
+
+  private FilePath rootFilePath = null, storeFilePath = null;
+  private boolean dirty = false;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  synchronized Entry get(FilePath filePath, BasicFileAttributes attrs)
+  {
+    if (loadIfNeeded() == false) return null;
+
+    Entry entry = entries.get(key(filePath));
+    return (entry != null) && entry.matches(attrs) ? entry : null;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  synchronized void put(FilePath filePath, BasicFileAttributes attrs, Entry entry)
+  {
+    if (loadIfNeeded() == false) return;
+
+    entries.put(key(filePath), entry.withAttributes(attrs));
+    dirty = true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private String key(FilePath filePath)
+  {
+    List<String> segments = rootFilePath.getSubpathSegments(filePath);
+
+    return segments == null ?
+      (ABSOLUTE_KEY_PREFIX + filePath)  // Keeps a Unix absolute path from matching a relative key that starts with '/'
+    :
+      ('/' + String.join("/", segments));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Loads the cache for the current database if it hasn't been loaded yet.
+   * @return False if no database is loaded
+   */
+  private boolean loadIfNeeded()
+  {
+    if (storeFilePath != null) return true;
+    if ((db == null) || (db.isLoaded() == false)) return false;
+
+    rootFilePath = db.getRootPath();
+    storeFilePath = db.xmlPath(FILE_NAME);
+
+    if (storeFilePath.exists() == false) return true;
+
+    try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(storeFilePath.toPath()))))
+    {
+      if (dis.readInt() != FILE_VERSION) return true;
+
+      long fileSize = storeFilePath.size();
+
+      for (int entryNdx = dis.readInt(); entryNdx > 0; entryNdx--)
+      {
+        String key = readStr(dis, fileSize), fileKey, doi;
+        long size = dis.readLong(), modTime = dis.readLong();
+        fileKey = readStr(dis, fileSize);
+        doi = readStr(dis, fileSize);
+
+        List<String> isbns = readStrList(dis, fileSize), issns = readStrList(dis, fileSize);
+
+        Map<String, String> docInfo = new LinkedHashMap<>();
+        for (int fieldNdx = dis.readInt(); fieldNdx > 0; fieldNdx--)
+          docInfo.put(readStr(dis, fileSize), readStr(dis, fileSize));
+
+        byte[] xmpData = null;
+        int xmpLength = dis.readInt();
+
+        if (xmpLength >= 0)
+          xmpData = readBytes(dis, xmpLength, fileSize);
+
+        entries.put(key, new Entry(size, modTime, fileKey, doi, isbns, issns, docInfo, xmpData));
+      }
+    }
+    catch (IOException e)
+    {
+      entries.clear(); // The cache is only an optimization; start over if it can't be read
+    }
+
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Strings are written as a length followed by UTF-8 bytes, since document information fields
+   * can be longer than {@link DataOutputStream#writeUTF writeUTF} allows.
+   */
+  private static String readStr(DataInputStream dis, long fileSize) throws IOException
+  {
+    return new String(readBytes(dis, dis.readInt(), fileSize), UTF_8);
+  }
+
+  private static byte[] readBytes(DataInputStream dis, int length, long fileSize) throws IOException
+  {
+    if ((length < 0) || (length > fileSize))
+      throw new IOException("PDF metadata cache file is corrupt");
+
+    byte[] bytes = new byte[length];
+    dis.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeStr(DataOutputStream dos, String str) throws IOException
+  {
+    byte[] bytes = str.getBytes(UTF_8);
+
+    dos.writeInt(bytes.length);
+    dos.write(bytes);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static List<String> readStrList(DataInputStream dis, long fileSize) throws IOException
+  {
+    List<String> list = new ArrayList<>();
+
+    for (int ndx = dis.readInt(); ndx > 0; ndx--)
+      list.add(readStr(dis, fileSize));
+
+    return list;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void writeStrList(DataOutputStream dos, List<String> list) throws IOException
+  {
+    dos.writeInt(list.size());
+
+    for (String str : list)
+      writeStr(dos, str);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Saves the cache if anything was added, then forgets it so that the next lookup loads
+   * the cache for whichever database is loaded at that point. The cache is written to a temporary
+   * file which then replaces the cache file, so a save that is cut short doesn't leave a partly written cache behind.
+   */
+  synchronized void saveAndReset()
+  {
+    if (dirty && (storeFilePath != null) && storeFilePath.getDirOnly().exists())
+    {
+      FilePath tempFilePath = storeFilePath.getDirOnly().resolve(FILE_NAME + ".tmp");
+
+      try
+      {
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFilePath.toPath()))))
+        {
+          dos.writeInt(FILE_VERSION);
+          dos.writeInt(entries.size());
+
+          for (Map.Entry<String, Entry> mapEntry : entries.entrySet())
+          {
+            Entry entry = mapEntry.getValue();
+
+            writeStr(dos, mapEntry.getKey());
+            dos.writeLong(entry.size);
+            dos.writeLong(entry.modTime);
+            writeStr(dos, entry.fileKey);
+            writeStr(dos, entry.doi);
+            writeStrList(dos, entry.isbns);
+            writeStrList(dos, entry.issns);
+
+            dos.writeInt(entry.docInfo.size());
+            for (Map.Entry<String, String> field : entry.docInfo.entrySet())
+            {
+              writeStr(dos, field.getKey());
+              writeStr(dos, field.getValue());
+            }
+
+            if (entry.xmpData == null)
+              dos.writeInt(-1);
+            else
+            {
+              dos.writeInt(entry.xmpData.length);
+              dos.write(entry.xmpData);
+            }
+          }
+        }
+
+        try
+        {
+          Files.move(tempFilePath.toPath(), storeFilePath.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+          Files.move(tempFilePath.toPath(), storeFilePath.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+      catch (IOException e)
+      {
+        tempFilePath.deleteReturnsBoolean(true);
+        e.printStackTrace();
+      }
+    }
+
+    entries.clear();
+    rootFilePath = null;
+    storeFilePath = null;
+    dirty = false;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -42,6 +42,7 @@ import org.hypernomicon.util.json.JsonObj;
 
 import static org.hypernomicon.Const.*;
 import static org.hypernomicon.bib.data.BibField.BibFieldEnum.*;
+import static org.hypernomicon.model.HyperDB.db;
 import static org.hypernomicon.util.UIUtil.*;
 import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 import static org.hypernomicon.util.Util.*;
@@ -89,6 +90,8 @@ public class MendeleyDocument extends BibEntry<MendeleyDocument, MendeleyFolder>
 
   @Override public void setStr(BibFieldEnum bibFieldEnum, String newStr)
   {
+    db.bumpModGeneration();
+
     if (linkedToWork())
     {
       switch (bibFieldEnum)
@@ -271,6 +274,8 @@ public class MendeleyDocument extends BibEntry<MendeleyDocument, MendeleyFolder>
 
   @Override public void setMultiStr(BibFieldEnum bibFieldEnum, List<String> list)
   {
+    db.bumpModGeneration();
+
     if (linkedToWork())
     {
       switch (bibFieldEnum)
@@ -25,8 +25,12 @@ public class MendeleyOAuthApi extends DefaultApi20
 {
   private static OAuth20Service service = null;
 
-  @Override public String getAccessTokenEndpoint()        { return "https://api.mendeley.com/oauth/token"; }
-  @Override protected String getAuthorizationBaseUrl()    { return "https://api.mendeley.com/oauth/authorize"; }
+  // Can be overridden along with the API location so that authorization can also be run against a local server for testing
+
+  private static final String OAUTH_URL = System.getProperty("hypernomicon.mendeleyOAuthUrl", "https://api.mendeley.com/oauth/");
+
+  @Override public String getAccessTokenEndpoint()        { return OAUTH_URL + "token"; }
+  @Override protected String getAuthorizationBaseUrl()    { return OAUTH_URL + "authorize"; }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
@@ -23,16 +23,10 @@ import static org.hypernomicon.bib.data.EntryType.*;
 import static org.hypernomicon.util.UIUtil.*;
 import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 import static org.hypernomicon.util.Util.*;
-import static org.hypernomicon.util.json.JsonObj.*;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.SocketException;
 import java.net.UnknownHostException;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -84,6 +78,10 @@ public class MendeleyWrapper extends LibraryWrapper<MendeleyDocument, MendeleyFo
 
   private static final EnumHashBiMap<EntryType, String> entryTypeMap = initTypeMap();
 
+  // The API location can be overridden so that syncing can be run against a local server for testing
+
+  private static final String API_URL = System.getProperty("hypernomicon.mendeleyApiUrl", "https://api.mendeley.com/");
+
   private enum MendeleyCmd
   {
     readFolders,
@@ -510,7 +508,7 @@ public class MendeleyWrapper extends LibraryWrapper<MendeleyDocument, MendeleyFo
 
   private JsonArray doReadCommand(MendeleyCmd command) throws CancelledTaskException, UnsupportedOperationException, IOException, ParseException
   {
-    String url = "https://api.mendeley.com/", mediaType = "";
+    String url = API_URL, mediaType = "";
 
     switch (command)
     {
@@ -567,7 +565,7 @@ public class MendeleyWrapper extends LibraryWrapper<MendeleyDocument, MendeleyFo
 
   private JsonArray createDocumentOnServer(JsonObj jsonObj) throws UnsupportedOperationException, IOException, ParseException, CancelledTaskException
   {
-    String url       = "https://api.mendeley.com/documents",
+    String url       = API_URL + "documents",
            mediaType = "application/vnd.mendeley-document.1+json";
 
     if (jsonObj.getStrSafe("title").isEmpty())
@@ -586,7 +584,7 @@ public class MendeleyWrapper extends LibraryWrapper<MendeleyDocument, MendeleyFo
 
   private JsonArray updateDocumentOnServer(JsonObj jsonObj) throws UnsupportedOperationException, IOException, ParseException, CancelledTaskException
   {
-    String url       = "https://api.mendeley.com/documents/" + jsonObj.getStrSafe("id"),
+    String url       = API_URL + "documents/" + jsonObj.getStrSafe("id"),
            mediaType = "application/vnd.mendeley-document.1+json";
 
     if (jsonObj.getStrSafe("title").isEmpty())
@@ -627,21 +625,12 @@ public class MendeleyWrapper extends LibraryWrapper<MendeleyDocument, MendeleyFo
 
   @Override public void loadFromDisk(FilePath filePath) throws IOException, ParseException
   {
-    JsonObj jMainObj = null;
     clear();
 
-    try (InputStream in = Files.newInputStream(filePath.toPath()))
-    {
-      jMainObj = parseJsonObj(new InputStreamReader(in, UTF_8));
-    }
-    catch (FileNotFoundException | NoSuchFileException e) { noOp(); }
-
-    if (jMainObj == null) return;
+    if (loadFromFile(filePath) == false) return;
 
     String lastSyncTimeStr = db.prefs.get(PREF_KEY_BIB_LAST_SYNC_TIME, "");
     lastSyncTime = lastSyncTimeStr.isBlank() ? Instant.EPOCH : parseIso8601(lastSyncTimeStr);
-
-    loadFromJSON(jMainObj);
   }
 
 //---------------------------------------------------------------------------
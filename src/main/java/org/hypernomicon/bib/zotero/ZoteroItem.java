@@ -45,6 +45,7 @@ import com.google.common.collect.ImmutableList;
 
 import static org.hypernomicon.Const.*;
 import static org.hypernomicon.bib.data.BibField.BibFieldEnum.*;
+import static org.hypernomicon.model.HyperDB.db;
 import static org.hypernomicon.util.UIUtil.*;
 import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 import static org.hypernomicon.util.Util.*;
@@ -98,6 +99,8 @@ public class ZoteroItem extends BibEntry<ZoteroItem, ZoteroCollection> implement
 
   @Override public void setStr(BibFieldEnum bibFieldEnum, String newStr)
   {
+    db.bumpModGeneration();
+
     if (linkedToWork())
     {
       switch (bibFieldEnum)
@@ -264,6 +267,8 @@ public class ZoteroItem extends BibEntry<ZoteroItem, ZoteroCollection> implement
 
   @Override public void setMultiStr(BibFieldEnum bibFieldEnum, List<String> list)
   {
+    db.bumpModGeneration();
+
     if (linkedToWork())
     {
       switch (bibFieldEnum)
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.bib.zotero;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hypernomicon.util.json.JsonObj.*;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.json.simple.parser.ParseException;
+
+import org.hypernomicon.util.filePath.FilePath;
+import org.hypernomicon.util.json.JsonObj;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Records each batch of uploaded items as soon as the server confirms it, so that if a sync is interrupted
+ * before the library file is next saved, the items don't have to be uploaded or downloaded again.
+ * <p>
+ * Each line holds the item's JSON as returned by the server and the key the item had before it was uploaded,
+ * since new items get their permanent key from the server. The journal is emptied once the library file has been saved.
+ */
+final class ZoteroSyncJournal
+{
+
+//---------------------------------------------------------------------------
+
+  private final FilePath filePath;
+
+  ZoteroSyncJournal(FilePath filePath) { this.filePath = filePath; }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  static JsonObj record(String oldKey, JsonObj jItem)
+  {
+    JsonObj jRecord = new JsonObj();
+
+    jRecord.put("oldKey", oldKey);
+    jRecord.put("item", jItem);
+
+    return jRecord;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Appends the records and makes sure they have reached the disk before returning.
+   */
+  void append(List<JsonObj> records) throws IOException
+  {
+    if (records.isEmpty()) return;
+
+    StringBuilder sb = new StringBuilder();
+    records.forEach(jRecord -> sb.append(jRecord).append('\n'));
+
+    try (FileOutputStream out = new FileOutputStream(filePath.toFile(), true))
+    {
+      out.write(sb.toString().getBytes(UTF_8));
+      out.getFD().sync();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Passes each record to {@code hndlr} in the order they were written: the key the item had before
+   * it was uploaded, and the item's JSON as returned by the server.
+   */
+  void replay(BiConsumer<String, JsonObj> hndlr) throws IOException
+  {
+    if (filePath.exists() == false) return;
+
+    try (BufferedReader reader = Files.newBufferedReader(filePath.toPath(), UTF_8))
+    {
+      for (String line = reader.readLine(); line != null; line = reader.readLine())
+      {
+        if (line.isBlank()) continue;
+
+        JsonObj jRecord;
+
+        try
+        {
+          jRecord = parseJsonObj(new StringReader(line));
+        }
+        catch (ParseException | ClassCastException e)
+        {
+          break; // The last line was only partly written when the sync was interrupted
+        }
+
+        JsonObj jItem = jRecord.getObj("item");
+
+        if (jItem != null)
+          hndlr.accept(jRecord.getStrSafe("oldKey"), jItem);
+      }
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  void clear() throws IOException
+  {
+    filePath.delete(true);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -27,21 +27,30 @@ import static org.hypernomicon.util.Util.*;
 import static org.hypernomicon.util.json.JsonObj.*;
 import static org.hypernomicon.bib.zotero.ZoteroWrapper.ZoteroHeader.*;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.SocketException;
 import java.net.UnknownHostException;
-import java.nio.file.Files;
-import java.nio.file.NoSuchFileException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.*;
@@ -51,6 +60,7 @@ import org.apache.http.Header;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.entity.StringEntity;
 import org.json.simple.parser.ParseException;
@@ -58,9 +68,11 @@ import org.json.simple.parser.ParseException;
 import com.google.common.collect.EnumHashBiMap;
 import com.google.common.collect.Lists;
 
+import org.hypernomicon.util.JsonHttpClient;
 import org.hypernomicon.util.filePath.FilePath;
 import org.hypernomicon.util.json.JsonArray;
 import org.hypernomicon.util.json.JsonObj;
+import org.hypernomicon.HyperTask.HyperThread;
 import org.hypernomicon.bib.LibraryWrapper;
 import org.hypernomicon.bib.data.EntryType;
 import org.hypernomicon.model.Exceptions.HyperDataException;
@@ -76,11 +88,52 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
   private final String apiKey, userID;
   private long offlineLibVersion = -1, onlineLibVersion = -1;
   private Instant backoffTime = null, retryTime = null;
+  private ZoteroSyncJournal syncJournal = null;
 
   private static final EnumHashBiMap<EntryType, String> entryTypeMap = initTypeMap();
 
   private static EnumMap<EntryType, JsonObj> templates = null;
 
+  // The API location can be overridden so that syncing can be run against a local server for testing
+
+  private static final String API_URL = System.getProperty("hypernomicon.zoteroApiUrl", "https://api.zotero.org/");
+
+  private static final int MAX_BATCH_SIZE = 50, MAX_CONCURRENT_REQUESTS = 4, SC_TOO_MANY_REQUESTS = 429;
+  private static final long DEFAULT_RETRY_AFTER_MS = 5000L;
+
+  private static final ExecutorService syncExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS, runnable ->
+  {
+    HyperThread thread = new HyperThread(runnable, "ZoteroSync");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static final ScheduledExecutorService backoffTimer = Executors.newSingleThreadScheduledExecutor(runnable ->
+  {
+    HyperThread thread = new HyperThread(runnable, "ZoteroBackoff");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Result of downloading one batch of items or collections
+   */
+  private static final class DownloadBatch
+  {
+    private final List<String> keys;
+    private final int statusCode;
+    private final String reasonPhrase;
+    private final JsonArray jsonArray;
+
+    private DownloadBatch(List<String> keys, JsonHttpClient client, JsonArray jsonArray)
+    {
+      this.keys = keys;
+      this.jsonArray = jsonArray;
+      statusCode = client.getStatusCode();
+      reasonPhrase = client.getReasonPhrase();
+    }
+  }
+
   private enum ZoteroCmd
   {
     readItems , readTrash    , readTrashVersions, readChangedItemVersions,
@@ -108,9 +161,9 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  private JsonArray doWriteCommand(ZoteroCmd command, String jsonPostData) throws CancelledTaskException, UnsupportedOperationException, IOException, ParseException
+  private JsonArray doWriteCommand(ZoteroCmd command, String jsonPostData, long libVersion) throws CancelledTaskException, UnsupportedOperationException, IOException, ParseException
   {
-    String url = "https://api.zotero.org/users/" + userID + '/';
+    String url = API_URL + "users/" + userID + '/';
 
     switch (command)
     {
@@ -122,7 +175,7 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
         return null;
     }
 
-    JsonArray jsonArray = doHttpRequest(url, HttpRequestType.post, jsonPostData);
+    JsonArray jsonArray = doHttpRequest(jsonClient, url, HttpRequestType.post, jsonPostData, libVersion);
 
     switch (jsonClient.getStatusCode())
     {
@@ -141,7 +194,29 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
 
   private JsonArray doReadCommand(ZoteroCmd command, String itemKey, String collectionKey) throws CancelledTaskException, UnsupportedOperationException, IOException, ParseException
   {
-    String url = "https://api.zotero.org/users/" + userID + '/';
+    String url = readCommandUrl(command, itemKey, collectionKey);
+    if (url == null) return null;
+
+    JsonArray jsonArray = doHttpRequest(url, HttpRequestType.get, null);
+
+    switch (jsonClient.getStatusCode())
+    {
+      case HttpStatus.SC_OK :
+      case HttpStatus.SC_NOT_MODIFIED :
+      case HttpStatus.SC_PRECONDITION_FAILED :
+
+        return jsonArray;
+    }
+
+    throw new HttpResponseException(jsonClient.getStatusCode(), jsonClient.getReasonPhrase());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private String readCommandUrl(ZoteroCmd command, String itemKey, String collectionKey)
+  {
+    String url = API_URL + "users/" + userID + '/';
 
     switch (command)
     {
@@ -186,18 +261,24 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
         return null;
     }
 
-    JsonArray jsonArray = doHttpRequest(url, HttpRequestType.get, null);
+    return url;
+  }
 
-    switch (jsonClient.getStatusCode())
-    {
-      case HttpStatus.SC_OK :
-      case HttpStatus.SC_NOT_MODIFIED :
-      case HttpStatus.SC_PRECONDITION_FAILED :
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
 
-        return jsonArray;
-    }
+  /**
+   * Downloads one batch of items or collections on a download thread. Unlike {@link #doReadCommand}, this uses
+   * its own client so that several batches can be in flight at once, and it leaves checking the status code to the caller.
+   */
+  private DownloadBatch readBatch(ZoteroCmd readCmd, List<String> keys) throws CancelledTaskException, UnsupportedOperationException, IOException, ParseException
+  {
+    String keysStr = String.join(",", keys),
+           url = readCmd == ZoteroCmd.readCollections ? readCommandUrl(readCmd, "", keysStr) : readCommandUrl(readCmd, keysStr, "");
 
-    throw new HttpResponseException(jsonClient.getStatusCode(), jsonClient.getReasonPhrase());
+    JsonHttpClient client = new JsonHttpClient();
+
+    return new DownloadBatch(keys, client, doHttpRequest(client, url, HttpRequestType.get, null, offlineLibVersion));
   }
 
 //---------------------------------------------------------------------------
@@ -230,26 +311,57 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  private JsonArray doHttpRequest(String url, HttpRequestType requestType, String postJsonData) throws IOException, UnsupportedOperationException, ParseException, CancelledTaskException
+  /**
+   * Waits until any Retry-After or Backoff period requested by the server has passed. The wait is done on a timer
+   * rather than by polling; cancelling the sync interrupts the waiting thread.
+   */
+  private void waitForServer() throws CancelledTaskException
   {
-    if (retryTime != null)
+    long delayMS;
+
+    synchronized (this)
     {
-      while (retryTime.compareTo(Instant.now()) > 0)
-      {
-        sleepForMillis(30);
-        if (syncTaskIsCancelled()) throw new CancelledTaskException();
-      }
+      Instant until = (retryTime == null) || ((backoffTime != null) && backoffTime.isAfter(retryTime)) ? backoffTime : retryTime;
+      delayMS = until == null ? 0L : Duration.between(Instant.now(), until).toMillis();
     }
 
-    if (backoffTime != null)
+    if (delayMS > 0)
     {
-      while (backoffTime.compareTo(Instant.now()) > 0)
+      ScheduledFuture<?> timer = backoffTimer.schedule(() -> {}, delayMS, TimeUnit.MILLISECONDS);
+
+      try
+      {
+        timer.get();
+      }
+      catch (InterruptedException e)
+      {
+        timer.cancel(false);
+        throw new CancelledTaskException();
+      }
+      catch (ExecutionException e)
       {
-        sleepForMillis(30);
-        if (syncTaskIsCancelled()) throw new CancelledTaskException();
+        noOp();
       }
     }
 
+    if (syncTaskIsCancelled()) throw new CancelledTaskException();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private JsonArray doHttpRequest(String url, HttpRequestType requestType, String postJsonData) throws IOException, UnsupportedOperationException, ParseException, CancelledTaskException
+  {
+    return doHttpRequest(jsonClient, url, requestType, postJsonData, offlineLibVersion);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private JsonArray doHttpRequest(JsonHttpClient client, String url, HttpRequestType requestType, String postJsonData, long libVersion) throws IOException, UnsupportedOperationException, ParseException, CancelledTaskException
+  {
+    waitForServer();
+
     RequestBuilder rb;
 
     switch (requestType)
@@ -265,35 +377,45 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
       default : throw new UnsupportedOperationException(requestType.name());
     }
 
-    request = rb
+    HttpUriRequest curRequest = rb
       .setUri(url)
       .setHeader(HttpHeaders.CONTENT_TYPE, "application/json")
       .setHeader(Zotero_API_Version.toString(), "3")
       .setHeader(Zotero_API_Key.toString(), apiKey)
       .setHeader(Zotero_Write_Token.toString(), generateWriteToken())
-      .setHeader(If_Unmodified_Since_Version.toString(), String.valueOf(offlineLibVersion))
+      .setHeader(If_Unmodified_Since_Version.toString(), String.valueOf(libVersion))
       .build();
 
+    if (client == jsonClient)
+      request = curRequest;
+    else
+      concurrentRequests.add(curRequest);
+
     JsonArray jsonArray;
 
     try
     {
-      jsonArray = jsonClient.requestArrayInThisThread(request);
+      jsonArray = client.requestArrayInThisThread(curRequest);
     }
     catch (SocketException e)
     {
-      request = null;
-
       if (syncTaskIsCancelled())
         throw new CancelledTaskException();
 
       throw e;
     }
+    finally
+    {
+      if (client == jsonClient)
+        request = null;
+      else
+        concurrentRequests.remove(curRequest);
+    }
 
     StringBuilder apiVersion = new StringBuilder();
     MutableInt totalResults = new MutableInt(-1);
 
-    nullSwitch(jsonClient.getHeaders(), headers -> headers.forEach(header ->
+    synchronized (this) { nullSwitch(client.getHeaders(), headers -> headers.forEach(header ->
     {
       int sec;
 
@@ -320,9 +442,7 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
 
         default : break;
       }
-    }));
-
-    request = null;
+    })); }
 
     if (syncTaskIsCancelled()) throw new CancelledTaskException();
 
@@ -351,7 +471,7 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
         "interview", "journalArticle", "letter", "magazineArticle", "manuscript", "map", "newspaperArticle", "patent", "podcast",
         "preprint", "presentation", "radioBroadcast", "report", "statute", "tvBroadcast", "thesis", "videoRecording", "webpage"})
       {
-        jObj.put(zType, doHttpRequest("https://api.zotero.org/itemTypeCreatorTypes?itemType=" + zType, HttpRequestType.get, null));
+        jObj.put(zType, doHttpRequest(API_URL + "itemTypeCreatorTypes?itemType=" + zType, HttpRequestType.get, null));
       }
 
       StringBuilder json = new StringBuilder(jObj.toString());
@@ -380,7 +500,7 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
         "interview", "journalArticle", "letter", "magazineArticle", "manuscript", "map", "newspaperArticle", "patent", "podcast",
         "preprint", "presentation", "radioBroadcast", "report", "statute", "tvBroadcast", "thesis", "videoRecording", "webpage"})
       {
-        jArr.add(doHttpRequest("https://api.zotero.org/items/new?itemType=" + zType, HttpRequestType.get, null).getObj(0));
+        jArr.add(doHttpRequest(API_URL + "items/new?itemType=" + zType, HttpRequestType.get, null).getObj(0));
       }
 
       StringBuilder json = new StringBuilder(jArr.toString());
@@ -536,26 +656,43 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
     private boolean syncChangedEntriesToServer() throws CancelledTaskException, UnsupportedOperationException, IOException, ParseException
     {
       List<ZoteroItem> uploadQueue; // implemented as array because indices are returned by server
-      JsonArray jArr = new JsonArray();
 
       uploadQueue = getAllEntries().stream().filter(entry -> entry.isSynced() == false).collect(Collectors.toList());
 
       if (uploadQueue.isEmpty()) return false;
 
+      // The next batch is converted to JSON on another thread while the current one is being uploaded. The batches
+      // themselves are sent one at a time, because each write has to name the library version the previous one produced.
+
+      List<List<ZoteroItem>> batches = Lists.partition(uploadQueue, MAX_BATCH_SIZE);
+      String json = uploadJson(batches.get(0));
+      long libVersion = offlineLibVersion;
       int statusCode = HttpStatus.SC_OK;
 
-      while ((uploadQueue.size() > 0) && (statusCode == HttpStatus.SC_OK) && (syncTaskIsCancelled() == false))
+      for (int batchNdx = 0; (batchNdx < batches.size()) && (statusCode == HttpStatus.SC_OK) && (syncTaskIsCancelled() == false); batchNdx++)
       {
-        jArr.clear();
+        List<ZoteroItem> batch = batches.get(batchNdx),
+                         nextBatch = batchNdx + 1 < batches.size() ? batches.get(batchNdx + 1) : null;
 
-        int uploadCount = Math.min(uploadQueue.size(), 50);
-        for (int ndx = 0; ndx < uploadCount; ndx++)
-          jArr.add(uploadQueue.get(ndx).exportJsonObjForUploadToServer(false));
+        Future<String> nextJson = nextBatch == null ? null : syncExecutor.submit(() -> uploadJson(nextBatch));
+        JsonArray jArr;
 
-        jArr = doWriteCommand(ZoteroCmd.writeItems, jArr.toString());
+        try
+        {
+          jArr = doWriteCommand(ZoteroCmd.writeItems, json, libVersion);
+        }
+        catch (Exception e)
+        {
+          if (nextJson != null) nextJson.cancel(true);
+          throw e;
+        }
 
         statusCode = jsonClient.getStatusCode();
 
+        // Items must not be updated below while the next batch is still being read
+
+        json = nextJson == null ? null : getUploadJson(nextJson);
+
         if (statusCode == HttpStatus.SC_OK)
         {
           JsonObj jSuccess   = jArr.getObj(0).getObj("successful"),
@@ -563,16 +700,20 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
                   jFailed    = jArr.getObj(0).getObj("failed");
 
           if ((jUnchanged.keySet().isEmpty() == false) || (jFailed.keySet().isEmpty() == false))
-            showWriteErrorMessages(jUnchanged, jFailed, uploadQueue);
+            showWriteErrorMessages(jUnchanged, jFailed, batch);
+
+          List<JsonObj> journalRecords = new ArrayList<>();
 
           jSuccess.keySet().forEach(queueNdx ->
           {
             JsonObj jObj = jSuccess.getObj(queueNdx);
-            ZoteroItem item = uploadQueue.get(parseInt(queueNdx, -1)); // here we take advantage of the fact that the upload "queue" is an array
+            ZoteroItem item = batch.get(parseInt(queueNdx, -1)); // here we take advantage of the fact that the upload "queue" is an array
 
             String oldKey = item.getKey();
             boolean newEntry = item.isNewEntry();
 
+            journalRecords.add(ZoteroSyncJournal.record(oldKey, jObj.clone()));
+
             item.update(jObj, false, false);
 
             if (newEntry)
@@ -584,7 +725,10 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
               onlineLibVersion = item.getVersion();
           });
 
-          uploadQueue.subList(0, uploadCount).clear();
+          if (syncJournal != null)
+            syncJournal.append(journalRecords);
+
+          libVersion = onlineLibVersion;
         }
       }
 
@@ -603,7 +747,7 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
         if (onlineLibVersion <= offlineLibVersion)
           return true;
 
-      List<String> downloadQueue = new ArrayList<>();
+      Set<String> downloadQueue = new LinkedHashSet<>();
 
       if (jsonClient.getStatusCode() == HttpStatus.SC_OK)
       {
@@ -626,77 +770,138 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
         if (versionsCmd == ZoteroCmd.readTrashVersions) // This if block is necessary to determine if an item in the trash was remotely restored
           keyToTrashEntry.entrySet().removeIf(entry -> jObj.containsKey(entry.getKey()) == false);
       }
+      else
+        return jsonClient.getStatusCode() == HttpStatus.SC_NOT_MODIFIED;
 
-      while ((downloadQueue.size() > 0) && (jsonClient.getStatusCode() == HttpStatus.SC_OK))
-      {
-        String keys = "";
+      if (downloadQueue.isEmpty()) return true;
 
-        int downloadCount = Math.min(downloadQueue.size(), 50);
-        for (int ndx = 0; ndx < downloadCount; ndx++)
-          keys = keys + (keys.isEmpty() ? downloadQueue.get(ndx) : ',' + downloadQueue.get(ndx));
+      // Several batches are kept in flight at once. The responses are merged here, on the sync thread, in
+      // whatever order they arrive. New batches are not started while the server has asked the client to back off,
+      // and a batch rejected for too many requests is put back at the front of the line.
 
-        jArr = readCmd == ZoteroCmd.readCollections ?
-          doReadCommand(ZoteroCmd.readCollections, "", keys)
-        :
-          doReadCommand(readCmd, keys, "");
+      Deque<List<String>> batches = new ArrayDeque<>(Lists.partition(new ArrayList<>(downloadQueue), MAX_BATCH_SIZE));
+      CompletionService<DownloadBatch> completionService = new ExecutorCompletionService<>(syncExecutor);
+      List<Future<DownloadBatch>> futures = new ArrayList<>();
+      int inFlightCount = 0, statusCode = HttpStatus.SC_OK;
 
-        if (jsonClient.getStatusCode() == HttpStatus.SC_OK)
+      try
+      {
+        while ((batches.isEmpty() == false) || (inFlightCount > 0))
         {
-          jArr.getObjs().forEach(jObj ->
+          while ((statusCode == HttpStatus.SC_OK) && (batches.isEmpty() == false) && (inFlightCount < MAX_CONCURRENT_REQUESTS))
           {
-            String key = jObj.getStrSafe("key");
-            ZEntity entity = keyToEntity.get(key);
+            waitForServer();
 
-            if (entity == null)
-            {
-              entity = (ZEntity) ZoteroEntity.create(ZoteroWrapper.this, jObj);
+            List<String> keys = batches.poll();
+            futures.add(completionService.submit(() -> readBatch(readCmd, keys)));
+            inFlightCount++;
+          }
 
-              if (entity != null)
-                keyToEntity.put(key, entity);
-            }
-            else
-            {
-              boolean okToMerge = true;
+          if (inFlightCount == 0) break;
 
-              if (readCmd == ZoteroCmd.readItems)
+          DownloadBatch batch = completionService.take().get();
+          inFlightCount--;
+
+          switch (batch.statusCode)
+          {
+            case HttpStatus.SC_OK :
+
+              batch.jsonArray.getObjs().forEach(jObj ->
               {
-                ZoteroItem zItem = (ZoteroItem)entity;
-                String entryTypeStr = ZoteroItem.getEntryTypeStrFromSpecifiedJson(jObj.getObj("data"));
+                String key = jObj.getStrSafe("key");
+                ZEntity entity = keyToEntity.get(key);
+
+                if (entity == null)
+                {
+                  entity = (ZEntity) ZoteroEntity.create(ZoteroWrapper.this, jObj);
 
-                if (parseEntryType(entryTypeStr) == etOther)
+                  if (entity != null)
+                    keyToEntity.put(key, entity);
+                }
+                else
                 {
-                  okToMerge = false;
+                  boolean okToMerge = true;
+
+                  if (readCmd == ZoteroCmd.readItems)
+                  {
+                    ZoteroItem zItem = (ZoteroItem)entity;
+                    String entryTypeStr = ZoteroItem.getEntryTypeStrFromSpecifiedJson(jObj.getObj("data"));
+
+                    if (parseEntryType(entryTypeStr) == etOther)
+                    {
+                      okToMerge = false;
+
+                      if (zItem.linkedToWork())
+                      {
+                        int workID = zItem.getWork().getID();
+                        zItem.unassignWork();
+                        messageDialog("Unassigning work record due to unrecognized entry type: \"" + entryTypeStr + "\"\n\nWork ID: " + workID, mtWarning);
+                      }
+                    }
+                  }
 
-                  if (zItem.linkedToWork())
+                  if (entity.isSynced())
                   {
-                    int workID = zItem.getWork().getID();
-                    zItem.unassignWork();
-                    messageDialog("Unassigning work record due to unrecognized entry type: \"" + entryTypeStr + "\"\n\nWork ID: " + workID, mtWarning);
+                    long onlineVersion = jObj.getLong("version", -1);
+                    if (entity.getVersion() < onlineVersion)
+                      entity.update(jObj, true, false);
+                  }
+                  else
+                  {
+                    if (okToMerge && (readCmd == ZoteroCmd.readItems))
+                      doMerge((ZoteroItem)entity, jObj);
+                    else
+                      entity.update(jObj, true, false);     // Conflict resolution is only implemented for items, not collections
                   }
                 }
-              }
+              });
 
-              if (entity.isSynced())
-              {
-                long onlineVersion = jObj.getLong("version", -1);
-                if (entity.getVersion() < onlineVersion)
-                  entity.update(jObj, true, false);
-              }
-              else
+              break;
+
+            case SC_TOO_MANY_REQUESTS :
+
+              synchronized (ZoteroWrapper.this)
               {
-                if (okToMerge && (readCmd == ZoteroCmd.readItems))
-                  doMerge((ZoteroItem)entity, jObj);
-                else
-                  entity.update(jObj, true, false);     // Conflict resolution is only implemented for items, not collections
+                if ((retryTime == null) || retryTime.isBefore(Instant.now()))
+                  retryTime = Instant.now().plusMillis(DEFAULT_RETRY_AFTER_MS);
               }
-            }
 
-            downloadQueue.remove(key);
-          });
+              batches.addFirst(batch.keys);
+              break;
+
+            case HttpStatus.SC_NOT_MODIFIED : case HttpStatus.SC_PRECONDITION_FAILED :
+
+              statusCode = batch.statusCode;
+              break;
+
+            default :
+
+              throw new HttpResponseException(batch.statusCode, batch.reasonPhrase);
+          }
         }
       }
+      catch (InterruptedException e)
+      {
+        throw new CancelledTaskException();
+      }
+      catch (ExecutionException e)
+      {
+        Throwable cause = e.getCause();
+
+        if (cause instanceof CancelledTaskException) throw (CancelledTaskException) cause;
+        if (cause instanceof IOException           ) throw (IOException           ) cause;
+        if (cause instanceof ParseException        ) throw (ParseException        ) cause;
+        if (cause instanceof RuntimeException      ) throw (RuntimeException      ) cause;
 
-      return (jsonClient.getStatusCode() == HttpStatus.SC_OK) || (jsonClient.getStatusCode() == HttpStatus.SC_NOT_MODIFIED);
+        throw new IOException(cause);
+      }
+      finally
+      {
+        futures.forEach(future -> future.cancel(true));
+        concurrentRequests.forEach(HttpUriRequest::abort);
+      }
+
+      return (statusCode == HttpStatus.SC_OK) || (statusCode == HttpStatus.SC_NOT_MODIFIED);
     }
 
   }; }
@@ -726,27 +931,94 @@ public class ZoteroWrapper extends LibraryWrapper<ZoteroItem, ZoteroCollection>
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  @Override public void loadFromDisk(FilePath filePath) throws IOException, ParseException
+  private static String uploadJson(List<ZoteroItem> batch)
   {
-    JsonObj jMainObj = null;
-    clear();
+    JsonArray jArr = new JsonArray();
+
+    batch.forEach(item -> jArr.add(item.exportJsonObjForUploadToServer(false)));
 
-    try (InputStream in = Files.newInputStream(filePath.toPath()))
+    return jArr.toString();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static String getUploadJson(Future<String> future) throws CancelledTaskException
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      future.cancel(true);
+      throw new CancelledTaskException();
+    }
+    catch (ExecutionException e)
     {
-      jMainObj = parseJsonObj(new InputStreamReader(in, UTF_8));
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+
+      throw new AssertionError(e.getCause());
     }
-    catch (FileNotFoundException | NoSuchFileException e) { noOp(); }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
 
-    if (jMainObj != null)
+  @Override public void loadFromDisk(FilePath filePath) throws IOException, ParseException
+  {
+    clear();
+
+    syncJournal = new ZoteroSyncJournal(db.xmlPath(ZOTERO_SYNC_JOURNAL_FILE_NAME));
+
+    if (loadFromFile(filePath))
     {
       offlineLibVersion = db.prefs.getLong(PREF_KEY_BIB_LIBRARY_VERSION, -1);
 
-      loadFromJSON(jMainObj);
+      syncJournal.replay(this::applyJournalRecord);
     }
 
     initTemplates();
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Brings an item up to date with an upload that was confirmed by the server after the library file was last saved.
+   */
+  private void applyJournalRecord(String oldKey, JsonObj jObj)
+  {
+    ZoteroItem item = nullSwitch(keyToAllEntry.get(oldKey), keyToAllEntry.get(jObj.getStrSafe("key")));
+    if ((item == null) || (jObj.getLong("version", -1) <= item.getVersion())) return; // The saved library file already has this version or a later one
+
+    item.update(jObj, false, false);
+
+    if (item.getKey().equals(oldKey) == false)
+      updateKey(oldKey, item.getKey());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @Override public boolean saveToDisk()
+  {
+    if (super.saveToDisk() == false) return false;
+
+    try
+    {
+      if (syncJournal != null)
+        syncJournal.clear();
+    }
+    catch (IOException e)
+    {
+      e.printStackTrace();
+    }
+
+    return true;
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -36,7 +36,14 @@ import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 import static org.hypernomicon.util.Util.*;
 
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
 
 import static org.hypernomicon.FolderTreeWatcher.*;
 
@@ -62,6 +69,7 @@ public class LockedDlgCtrlr extends HyperDlg
     private InterComputerMsg sentMsg;
     private volatile boolean done;
     private boolean gotResponse = false;
+    private final long startTimeMS = System.currentTimeMillis();
 
     private MessageSenderThread(LockedDlgCtrlr dlg, InterComputerMsg sentMsg)
     {
@@ -75,6 +83,21 @@ public class LockedDlgCtrlr extends HyperDlg
 
     @Override public void run()
     {
+      WatchService watchService = null;
+
+      // Check for the response whenever something changes in the database folder, instead of repeatedly polling for it
+
+      try
+      {
+        watchService = FileSystems.getDefault().newWatchService();
+        db.getResponseMessageFilePath(true).getDirOnly().toPath().register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+      }
+      catch (IOException e)
+      {
+        closeWatchService(watchService);
+        watchService = null;
+      }
+
       while (done == false)
       {
         if (gotResponse == false)
@@ -110,7 +133,8 @@ public class LockedDlgCtrlr extends HyperDlg
             else if (sentMsg.getType() == hmtEchoRequest)
             {
               done = true;
-              Platform.runLater(() -> dlg.stopTrying("Ping roundtrip completed in " + (Instant.now().getEpochSecond() - sentMsg.getSentTime()) + " seconds.", false));
+              long roundTripMS = System.currentTimeMillis() - startTimeMS;
+              Platform.runLater(() -> dlg.stopTrying("Ping roundtrip completed in " + roundTripMS + " ms.", false));
             }
           }
         }
@@ -121,11 +145,44 @@ public class LockedDlgCtrlr extends HyperDlg
           dlg.lblSeconds.setText("Elapsed: " + sec + " s");
         });
 
-        sleepForMillis(FOLDER_TREE_WATCHER_POLL_TIME_MS);
+        if (done) break;
+
+        if (watchService == null)
+        {
+          sleepForMillis(FOLDER_TREE_WATCHER_POLL_TIME_MS);
+          continue;
+        }
+
+        try
+        {
+          // Network file systems do not always deliver events for changes made from another computer, so check at least once in a while
+
+          WatchKey watchKey = watchService.poll(INTER_COMPUTER_MSG_FALLBACK_POLL_MS, TimeUnit.MILLISECONDS);
+
+          if (watchKey != null)
+          {
+            watchKey.pollEvents();
+            watchKey.reset();
+          }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+          break;
+        }
       }
 
+      closeWatchService(watchService);
       sentMsg = null;
     }
+
+  //---------------------------------------------------------------------------
+
+    private static void closeWatchService(WatchService watchService)
+    {
+      if (watchService == null) return;
+
+      try { watchService.close(); } catch (IOException e) { noOp(); }
+    }
   }
 
 //---------------------------------------------------------------------------
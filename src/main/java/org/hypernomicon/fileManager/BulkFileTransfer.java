@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.fileManager;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hypernomicon.HyperTask;
+import org.hypernomicon.HyperTask.HyperThread;
+import org.hypernomicon.model.Exceptions.CancelledTaskException;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Moves or copies a set of files as one operation. All of the transfers are planned before any
+ * of them start: a move within the same volume is only a rename, so those are done one after another
+ * on the calling thread, while copies and moves to another volume are run on a small pool of threads
+ * so that several files can be in flight at once without flooding the disk with requests.
+ * <p>
+ * Directories are not handled here; the caller is expected to create destination directories first.
+ */
+final class BulkFileTransfer
+{
+
+//---------------------------------------------------------------------------
+
+  private static final class Transfer
+  {
+    private final FilePath srcFilePath, destFilePath;
+
+    private Transfer(FilePath srcFilePath, FilePath destFilePath) { this.srcFilePath = srcFilePath; this.destFilePath = destFilePath; }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int MAX_CONCURRENT_TRANSFERS = 4;
+
+  private final boolean move;
+  private final List<Transfer> renames = new ArrayList<>(), transfers = new ArrayList<>();
+  private final Map<Path, FileStore> dirToStore = new HashMap<>();
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  BulkFileTransfer(boolean move) { this.move = move; }
+
+  int size() { return renames.size() + transfers.size(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  void add(FilePath srcFilePath, FilePath destFilePath)
+  {
+    Transfer transfer = new Transfer(srcFilePath, destFilePath);
+
+    if (move && sameVolume(srcFilePath.getDirOnly(), destFilePath.getDirOnly()))
+      renames.add(transfer);
+    else
+      transfers.add(transfer);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private boolean sameVolume(FilePath srcDir, FilePath destDir)
+  {
+    FileStore srcStore = fileStore(srcDir), destStore = fileStore(destDir);
+
+    return (srcStore != null) && Objects.equals(srcStore, destStore);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private FileStore fileStore(FilePath dir)
+  {
+    return dirToStore.computeIfAbsent(dir.toPath(), path ->
+    {
+      try { return Files.getFileStore(path); }
+      catch (IOException e) { return null; }
+    });
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Carries out the planned transfers, reporting each completed file to {@code task} as progress.
+   * If the task is cancelled or a transfer fails, transfers that have not started yet are skipped
+   * and this method returns after the ones already in flight have finished.
+   * @param task The task to report progress to and check for cancellation
+   * @param progressBase Progress value to add the number of completed transfers to
+   * @param progressTotal Total progress value for the task
+   */
+  void run(HyperTask task, long progressBase, long progressTotal) throws IOException, CancelledTaskException
+  {
+    AtomicLong doneCount = new AtomicLong(progressBase);
+
+    for (Transfer transfer : renames)
+    {
+      if (task.isCancelled())
+        throw new CancelledTaskException();
+
+      transfer.srcFilePath.moveTo(transfer.destFilePath, false);
+      task.updateProgress(doneCount.incrementAndGet(), progressTotal);
+    }
+
+    if (transfers.isEmpty()) return;
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_CONCURRENT_TRANSFERS, transfers.size()), runnable ->
+    {
+      HyperThread thread = new HyperThread(runnable, "BulkFileTransfer");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    List<Future<Void>> futures = new ArrayList<>();
+
+    try
+    {
+      for (Transfer transfer : transfers)
+      {
+        futures.add(executor.submit(() ->
+        {
+          if (task.isCancelled()) return null;
+
+          if (move)
+            transfer.srcFilePath.moveTo(transfer.destFilePath, false);
+          else
+            transfer.srcFilePath.copyTo(transfer.destFilePath, false);
+
+          task.updateProgress(doneCount.incrementAndGet(), progressTotal);
+          return null;
+        }));
+      }
+
+      for (Future<Void> future : futures)
+        future.get();
+    }
+    catch (ExecutionException e)
+    {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+
+      throw new IOException(e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      throw new CancelledTaskException();
+    }
+    finally
+    {
+      futures.forEach(future -> future.cancel(false));
+      executor.shutdown();
+
+      try { executor.awaitTermination(1, TimeUnit.MINUTES); }
+      catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    if (task.isCancelled())
+      throw new CancelledTaskException();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -34,6 +34,7 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -232,6 +233,16 @@ public class FileManager extends HyperDlg
       refresh();
     });
 
+    fileTable.addContextMenuItem("Import PDF files in this folder as works", FileRow::isDirectory, dirRow ->
+    {
+      if (ui.cantSaveRecord()) return;
+
+      int createdCount = new PDFFolderImporter(dirRow.getFilePath()).run();
+      refresh();
+
+      messageDialog("Work records created: " + createdCount, mtInformation);
+    });
+
     fileTable.addContextMenuItem("Assign to note record", FileRow::isDirectory, dirRow ->
     {
       HDT_Folder folder = dirRow.getRecord();
@@ -767,12 +778,12 @@ public class FileManager extends HyperDlg
       if (copying)
       {
         updateMessage("Copying...");
-        totalTaskCount = srcToDest.size() * 2L;
+        totalTaskCount = srcToDest.size() * 3L;
       }
       else
       {
         updateMessage("Moving...");
-        totalTaskCount = srcToDest.size() * 4L;
+        totalTaskCount = srcToDest.size() * 5L;
       }
 
       updateProgress(0, 1);
@@ -800,51 +811,82 @@ public class FileManager extends HyperDlg
             destFilePath.createDirectories();
         }
 
-      // if copying, copy files
-      // -----------------------------------------------
+      // Plan the transfers, creating folder records for destination folders
+      // ---------------------------------------------------------------------
 
-        if (copying)
+        BulkFileTransfer transfer = new BulkFileTransfer(copying == false);
+        Map<FilePath, Set<HyperPath>> srcToHyperPaths = new LinkedHashMap<>();
+        Map<FilePath, HDT_Folder> srcToDestFolder = new HashMap<>();
+
+        for (Entry<FilePath, FilePath> entry : srcToDest.entrySet())
         {
-          for (Entry<FilePath, FilePath> entry : srcToDest.entrySet())
-          {
-            updateProgress(curTaskCount++, totalTaskCount);
+          updateProgress(curTaskCount++, totalTaskCount);
 
-            if (isCancelled())
-              throw new CancelledTaskException();
+          if (isCancelled())
+            throw new CancelledTaskException();
 
-            FilePath srcFilePath = entry.getKey();
+          FilePath srcFilePath  = entry.getKey(),
+                   destFilePath = entry.getValue();
 
+          if (copying)
+          {
             if (srcFilePath.isDirectory() == false)
-              srcFilePath.copyTo(entry.getValue(), false);
+              transfer.add(srcFilePath, destFilePath);
+
+            continue;
+          }
+
+          HDT_Folder folder = HyperPath.getFolderFromFilePath(destFilePath.getDirOnly(), true);
+
+          Set<HyperPath> set = HyperPath.getHyperPathSetForFilePath(srcFilePath);
+
+          if (set.isEmpty())
+          {
+            if (srcFilePath.isDirectory())
+              srcFilePath.moveTo(destFilePath, false);
+            else
+              transfer.add(srcFilePath, destFilePath);
+          }
+          else if (set.stream().anyMatch(hyperPath -> nullSwitch(hyperPath.getRecord(), hdtNone, HDT_Record::getType) != hdtFolder))
+          {
+            if (srcFilePath.isDirectory())
+              throw new HDB_InternalError(77393);
+
+            transfer.add(srcFilePath, destFilePath);
+            srcToHyperPaths.put(srcFilePath, set);
+            srcToDestFolder.put(srcFilePath, folder);
           }
         }
 
-      // if moving, move files
-      // -----------------------------------------------
+      // Copy or move the files
+      // ----------------------
 
-        else
+        try
         {
-          for (Entry<FilePath, FilePath> entry : srcToDest.entrySet())
+          transfer.run(this, curTaskCount, totalTaskCount);
+        }
+        finally
+        {
+
+      // if moving, point the records at the new locations of the files that were moved
+      // -------------------------------------------------------------------------------
+
+          srcToHyperPaths.forEach((srcFilePath, set) ->
           {
-            updateProgress(curTaskCount++, totalTaskCount);
+            FilePath destFilePath = srcToDest.get(srcFilePath);
+            if (srcFilePath.exists() || (destFilePath.exists() == false)) return;
+
+            db.unmapFilePath(srcFilePath);
 
-            FilePath srcFilePath = entry.getKey(),
-                     destFilePath = entry.getValue();
-            HDT_Folder folder = HyperPath.getFolderFromFilePath(destFilePath.getDirOnly(), true);
+            HDT_Folder folder = srcToDestFolder.get(srcFilePath);
+            set.forEach(hyperPath -> hyperPath.assign(folder, destFilePath.getNameOnly()));
+          });
+        }
 
-            Set<HyperPath> set = HyperPath.getHyperPathSetForFilePath(srcFilePath);
+        curTaskCount += srcToDest.size();
 
-            if (set.isEmpty())
-            {
-              srcFilePath.moveTo(destFilePath, false);
-            }
-            else
-            {
-              for (HyperPath hyperPath : set)
-                if (nullSwitch(hyperPath.getRecord(), hdtNone, HDT_Record::getType) != hdtFolder)
-                  hyperPath.moveToFolder(folder.getID(), false, false, "");
-            }
-          }
+        if (copying == false)
+        {
 
       // if moving, update note records
       // ------------------------------
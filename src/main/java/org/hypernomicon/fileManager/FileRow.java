@@ -18,6 +18,7 @@
 package org.hypernomicon.fileManager;
 
 import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 
 import org.apache.commons.io.FilenameUtils;
@@ -35,6 +36,10 @@ import org.hypernomicon.tree.AbstractTreeRow;
 import org.hypernomicon.tree.TreeModel;
 import org.hypernomicon.util.filePath.FilePath;
 
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
 import javafx.scene.control.TreeItem;
 import javafx.scene.image.ImageView;
 
@@ -44,14 +49,24 @@ import javafx.scene.image.ImageView;
 public class FileRow extends AbstractTreeRow<HDT_RecordWithPath, FileRow>
 {
   private final HyperPath hyperPath;
-  private MediaType mimetype = null;
+  private final BasicFileAttributes attrs;  // Read when the folder was listed; null for folder tree rows
+  private MediaType mimetype = null;        // Guessed from the file name until the contents have been checked
+  private boolean typeDetectionRequested = false;
+  private StringProperty typeStr = null;
+  private ObjectProperty<ImageView> graphicProp = null;
 
 //---------------------------------------------------------------------------
 
   FileRow(HyperPath hyperPath, TreeModel<FileRow> treeModel)
+  {
+    this(hyperPath, treeModel, null);
+  }
+
+  FileRow(HyperPath hyperPath, TreeModel<FileRow> treeModel, BasicFileAttributes attrs)
   {
     super(treeModel);
     this.hyperPath = hyperPath;
+    this.attrs = attrs;
 
     if (treeModel != null)
       treeItem = new TreeItem<>(this);
@@ -59,12 +74,14 @@ public class FileRow extends AbstractTreeRow<HDT_RecordWithPath, FileRow>
 
 //---------------------------------------------------------------------------
 
-  public FilePath getFilePath() { return hyperPath.filePath(); }
-  boolean isDirectory()         { return nullSwitch(hyperPath.filePath(), false, FilePath::isDirectory); }
-  public HDT_Folder getFolder() { return hyperPath.parentFolder(); }
-  String getFileName()          { return hyperPath.getNameStr(); }
-  HyperPath getHyperPath()      { return hyperPath; }
-  private void determineType()  { if (mimetype == null) mimetype = getMediaType(hyperPath.filePath()); }
+  public FilePath getFilePath()     { return hyperPath.filePath(); }
+  boolean isDirectory()             { return attrs == null ? nullSwitch(hyperPath.filePath(), false, FilePath::isDirectory) : attrs.isDirectory(); }
+  public HDT_Folder getFolder()     { return hyperPath.parentFolder(); }
+  String getFileName()              { return hyperPath.getNameStr(); }
+  HyperPath getHyperPath()          { return hyperPath; }
+  private void determineType()      { if (mimetype == null) mimetype = getMediaTypeFromName(hyperPath.filePath()); }
+  boolean needsTypeDetection()      { return (typeDetectionRequested == false) && (isDirectory() == false); }
+  void markTypeDetectionRequested() { typeDetectionRequested = true; }
 
   void setFolderTreeItem(TreeItem<FileRow> treeItem) { this.treeItem  = treeItem; }
 
@@ -78,7 +95,7 @@ public class FileRow extends AbstractTreeRow<HDT_RecordWithPath, FileRow>
 
   FileCellValue<Instant> getModifiedDateCellValue()
   {
-    Instant i = hyperPath.filePath().lastModified();
+    Instant i = attrs == null ? hyperPath.filePath().lastModified() : attrs.lastModifiedTime().toInstant();
 
     return new FileCellValue<>(dateTimeToUserReadableStr(i), i);
   }
@@ -91,24 +108,41 @@ public class FileRow extends AbstractTreeRow<HDT_RecordWithPath, FileRow>
     long size = 0L;
     FilePath filePath = hyperPath.filePath();
 
-    if (FilePath.isEmpty(filePath) == false)
+    if (attrs != null)
+    {
+      if (attrs.isDirectory()) return new FileCellValue<>("", 0L);
+
+      size = attrs.size();
+    }
+    else if (FilePath.isEmpty(filePath) == false)
     {
       if (filePath.isDirectory()) return new FileCellValue<>("", 0L);
 
       try                   { size = filePath.size(); }
       catch (IOException e) { return new FileCellValue<>("", (long) -1); }
-
-      if (size >= 1000L)
-        return new FileCellValue<>(numberFormat.format(size / 1000L) + " KB", size);
     }
 
+    if (size >= 1000L)
+      return new FileCellValue<>(numberFormat.format(size / 1000L) + " KB", size);
+
     return new FileCellValue<>(size + " bytes", size);
   }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  String getTypeString()
+  StringProperty typeProperty()
+  {
+    if (typeStr == null)
+      typeStr = new SimpleStringProperty(getTypeString());
+
+    return typeStr;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private String getTypeString()
   {
     if (isDirectory()) return "File folder";
 
@@ -120,6 +154,39 @@ public class FileRow extends AbstractTreeRow<HDT_RecordWithPath, FileRow>
       mimetype.toString();
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Detects the media type from the file contents. Can be called from any thread.
+   */
+  MediaType detectType()
+  {
+    return getMediaType(hyperPath.filePath());
+  }
+
+  /**
+   * Replaces the media type guessed from the file name with the one detected from the file
+   * contents, updating the type and graphic shown in the file table. Must be called on the FX thread.
+   */
+  void setDetectedType(MediaType newMimetype)
+  {
+    if (newMimetype.equals(mimetype)) return;
+
+    mimetype = newMimetype;
+
+    if (typeStr != null)
+      typeStr.set(getTypeString());
+
+    if (graphic != null)
+    {
+      graphic = imgViewFromFilePath(hyperPath.filePath(), mimetype);
+
+      if (graphicProp != null)
+        graphicProp.set(graphic);
+    }
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -134,6 +201,14 @@ public class FileRow extends AbstractTreeRow<HDT_RecordWithPath, FileRow>
     return graphic = imgViewFromFilePath(hyperPath.filePath(), mimetype);
   }
 
+  ObjectProperty<ImageView> graphicProperty()
+  {
+    if (graphicProp == null)
+      graphicProp = new SimpleObjectProperty<>(getGraphic());
+
+    return graphicProp;
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -146,6 +221,25 @@ public class FileRow extends AbstractTreeRow<HDT_RecordWithPath, FileRow>
     return true;
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * True if {@code other} was created from a listing of the same file, which has the same record and
+   * folder tree item, and whose size and modified date had not changed since this row was listed.
+   */
+  boolean isUnchangedFrom(FileRow other)
+  {
+    if ((attrs == null) || (other.attrs == null)) return false;
+
+    return hyperPath.filePath().equals(other.hyperPath.filePath()) &&
+           (hyperPath.getRecord() == other.hyperPath.getRecord()) &&
+           (treeItem == other.treeItem) &&
+           (attrs.isDirectory() == other.attrs.isDirectory()) &&
+           (attrs.size() == other.attrs.size()) &&
+           attrs.lastModifiedTime().equals(other.attrs.lastModifiedTime());
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -29,10 +29,19 @@ import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.tika.mime.MediaType;
+import org.hypernomicon.HyperTask.HyperThread;
 import org.hypernomicon.fileManager.FileManager.MarkedRowInfo;
 import org.hypernomicon.model.items.HyperPath;
 import org.hypernomicon.model.records.HDT_Folder;
@@ -42,6 +51,7 @@ import org.hypernomicon.util.filePath.FilePath;
 import org.hypernomicon.view.wrappers.DragNDropContainer;
 import org.hypernomicon.view.wrappers.HyperTable;
 
+import javafx.application.Platform;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -102,20 +112,159 @@ public class FileTable extends DragNDropContainer<FileRow>
 
 //---------------------------------------------------------------------------
 
+  private static final class ListedFile
+  {
+    private final FilePath filePath;
+    private final BasicFileAttributes attrs;
+    private final HyperPath hyperPath;  // null if the file had no HyperPath when it was listed
+
+    /**
+     * Called on the listing thread. Computes the path's key and looks up its HyperPath here so the
+     * FX thread doesn't have to touch the file system for them.
+     */
+    private ListedFile(FilePath filePath, BasicFileAttributes attrs)
+    {
+      this.filePath = filePath;
+      this.attrs = attrs;
+
+      filePath.hashCode();
+
+      Set<HyperPath> set = HyperPath.getHyperPathSetForFilePath(filePath);
+      hyperPath = set.isEmpty() ? null : set.iterator().next();
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  /**
+   * Lists a folder and reads the attributes of its entries in the background, handing
+   * them to the FX thread in batches. When the folder is already being displayed, the
+   * whole listing is handed over at the end instead, so it can be merged into the existing rows.
+   */
+  private final class ListingThread extends HyperThread
+  {
+    private final FilePath dirPath;
+    private final TreeItem<FileRow> parentTreeItem;
+    private final boolean merge;
+    private volatile boolean cancelled = false;
+    private int nextDirNdx = 0;
+
+    private ListingThread(FilePath dirPath, TreeItem<FileRow> parentTreeItem, boolean merge)
+    {
+      super("FileListing");
+      setDaemon(true);
+
+      this.dirPath = dirPath;
+      this.parentTreeItem = parentTreeItem;
+      this.merge = merge;
+    }
+
+    @Override public void run()
+    {
+      List<ListedFile> batch = new ArrayList<>();
+      boolean failed = false;
+
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dirPath.toPath()))
+      {
+        for (Path entry : stream)
+        {
+          if (cancelled) return;
+
+          BasicFileAttributes attrs;
+
+          try                   { attrs = Files.readAttributes(entry, BasicFileAttributes.class); }
+          catch (IOException e) { attrs = null; } // e.g., a broken link; the row will look up what it needs itself
+
+          batch.add(new ListedFile(new FilePath(entry), attrs));
+
+          if ((merge == false) && (batch.size() >= LISTING_BATCH_SIZE))
+          {
+            addBatch(batch);
+            batch = new ArrayList<>();
+          }
+        }
+      }
+      catch (DirectoryIteratorException | IOException ex)
+      {
+        if (cancelled) return;
+
+        failed = true;
+        messageDialog("An error occurred while displaying the folder's contents: " + ex.getMessage(), mtError);
+      }
+
+      List<ListedFile> lastBatch = batch;
+      boolean finalFailed = failed;
+
+      Platform.runLater(() ->
+      {
+        if (listingThread != this) return;
+
+        listingThread = null;
+        finishListing(this, lastBatch, finalFailed);
+      });
+    }
+
+    private void addBatch(List<ListedFile> batch)
+    {
+      Platform.runLater(() ->
+      {
+        if (listingThread != this) return;
+
+        previewWindow.disablePreviewUpdating = true;
+        addRows(this, batch);
+        previewWindow.disablePreviewUpdating = false;
+
+        if (pendingSelection != null)
+          selectByFileName(pendingSelection);
+      });
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int LISTING_BATCH_SIZE = 200;
+
+  private static final ExecutorService typeDetectionExecutor = Executors.newFixedThreadPool(2, runnable ->
+  {
+    HyperThread thread = new HyperThread(runnable, "FileTypeDetection");
+    thread.setDaemon(true);
+    return thread;
+  });
+
   private final FileManager dlg;
   private final TableView<FileRow> fileTV;
   private final ObservableList<FileRow> rows;
+  private ListingThread listingThread = null;
+  private FilePath listedDirPath = null, pendingSelection = null;
+  private volatile int listingID = 0;
   List<MarkedRowInfo> draggingRows;
 
-  void clear() { rows.clear(); }
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  void clear()
+  {
+    cancelListing();
+
+    listedDirPath = null;
+    pendingSelection = null;
+    listingID++;
+    rows.clear();
+  }
+
+  private void cancelListing()
+  {
+    if (listingThread == null) return;
+
+    listingThread.cancelled = true;
+    listingThread = null;
+  }
 
   @Override protected Control getControl() { return fileTV; }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  private boolean refreshing = false;
-
   @SuppressWarnings("unchecked") FileTable(TableView<FileRow> fileTV, FileManager dlg)
   {
     this.dlg = dlg;
@@ -127,14 +276,6 @@ public class FileTable extends DragNDropContainer<FileRow>
     fileTV.setItems(rows);
     fileTV.setPlaceholder(new Text("This folder is empty."));
 
-    fileTV.setOnSort(event ->
-    {
-      if (refreshing) return;
-      refreshing = true;
-      dlg.refresh();
-      refreshing = false;
-    });
-
     fileTV.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
     TableColumn<FileRow, FileRow>                nameCol    = (TableColumn<FileRow, FileRow>)                fileTV.getColumns().get(0);
@@ -148,7 +289,12 @@ public class FileTable extends DragNDropContainer<FileRow>
 
     modDateCol.setCellValueFactory(cellData -> new SimpleObjectProperty<>(cellData.getValue().getModifiedDateCellValue()));
 
-    typeCol.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getTypeString()));
+    typeCol.setCellValueFactory(cellData ->
+    {
+      requestTypeDetection(cellData.getValue());
+      return cellData.getValue().typeProperty();
+    });
+
     sizeCol.setCellValueFactory(cellData -> new SimpleObjectProperty<>(cellData.getValue().getSizeCellValue()));
     sizeCol.setStyle( "-fx-alignment: CENTER-RIGHT;");
 
@@ -160,6 +306,8 @@ public class FileTable extends DragNDropContainer<FileRow>
       {
         super.updateItem(item, empty);
 
+        graphicProperty().unbind();
+
         if (empty || (item == null))
         {
           setText(null);
@@ -168,7 +316,8 @@ public class FileTable extends DragNDropContainer<FileRow>
         else
         {
           setText(item.getFileName());
-          setGraphic(item.getGraphic());
+          requestTypeDetection(item);
+          graphicProperty().bind(item.graphicProperty());
         }
       }
     });
@@ -177,57 +326,178 @@ public class FileTable extends DragNDropContainer<FileRow>
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
+  /**
+   * Starts listing the contents of {@code folder} in the background; any listing that is still running is cancelled.
+   * If a different folder was being displayed, rows are added to the table as they are read. If the same folder
+   * is being displayed again, the new listing is merged into the existing rows so the selection and scroll position are kept.
+   */
   void update(HDT_Folder folder, TreeItem<FileRow> parentTreeItem)
+  {
+    FilePath dirPath = folder.filePath();
+    boolean merge = dirPath.equals(listedDirPath);
+
+    if (merge)
+      cancelListing();
+    else
+    {
+      previewWindow.disablePreviewUpdating = true;
+      clear();
+      previewWindow.disablePreviewUpdating = false;
+
+      fileTV.setPlaceholder(new Text("Loading..."));
+      listedDirPath = dirPath;
+    }
+
+    (listingThread = new ListingThread(dirPath, parentTreeItem, merge)).start();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void finishListing(ListingThread listing, List<ListedFile> lastBatch, boolean failed)
   {
     previewWindow.disablePreviewUpdating = true;
-    clear();
+
+    if (failed)
+      rows.clear();
+    else if (listing.merge)
+      mergeRows(listing, lastBatch);
+    else
+      addRows(listing, lastBatch);
+
+    if (fileTV.getSortOrder().isEmpty() == false)
+      fileTV.sort();
+
+    if (listing.merge)
+      fileTV.refresh();  // The records column of rows that were kept may be out of date
+
     previewWindow.disablePreviewUpdating = false;
 
-    try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.filePath().toPath(), "**"))
+    fileTV.setPlaceholder(new Text(failed ? "Unable to display the folder's contents." : "This folder is empty."));
+
+    if (pendingSelection != null)
+      selectByFileName(pendingSelection);
+
+    pendingSelection = null;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void addRows(ListingThread listing, List<ListedFile> files)
+  {
+    List<FileRow> dirRows = new ArrayList<>(), fileRows = new ArrayList<>();
+
+    files.forEach(file ->
     {
-      int nextDirNdx = 0;
+      FileRow row = createRow(file, listing.parentTreeItem);
+      (row.isDirectory() ? dirRows : fileRows).add(row);
+    });
+
+    rows.addAll(listing.nextDirNdx, dirRows);
+    listing.nextDirNdx += dirRows.size();
+    rows.addAll(fileRows);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Rows for files that are unchanged are kept as they are, rows for files that have changed are replaced
+   * in place, rows for files that are gone are removed, and rows for new files are added.
+   */
+  private void mergeRows(ListingThread listing, List<ListedFile> files)
+  {
+    Map<FilePath, ListedFile> newFiles = new LinkedHashMap<>();
+    files.forEach(file -> newFiles.put(file.filePath, file));
+
+    for (ListIterator<FileRow> it = rows.listIterator(); it.hasNext();)
+    {
+      FileRow oldRow = it.next();
+      ListedFile file = newFiles.remove(oldRow.getFilePath());
 
-      for (Path entry: stream)
+      if (file == null)
       {
-        FilePath filePath = new FilePath(entry);
+        it.remove();
+        continue;
+      }
 
-        Set<HyperPath> set = HyperPath.getHyperPathSetForFilePath(filePath);
+      FileRow newRow = createRow(file, listing.parentTreeItem);
 
-        if (set.size() > 0)
-        {
-          FileRow row = new FileRow(set.iterator().next(), null);
+      if (newRow.isUnchangedFrom(oldRow) == false)
+        it.set(newRow);
+    }
 
-          if (filePath.isDirectory())
-          {
-            rows.add(nextDirNdx++, row);
-
-            for (TreeItem<FileRow> childTreeItem : parentTreeItem.getChildren())
-            {
-              FileRow fileRow = childTreeItem.getValue();
-              if (fileRow.getRecord().getID() > 0)  // a deleted folder might still be in the tree at this point; the delete recordHandler gets called
-                                                    // in a Platform.runLater call
-              {
-                if (fileRow.getFilePath().equals(filePath))
-                {
-                  row.setFolderTreeItem(childTreeItem);
-                  break;
-                }
-              }
-            }
-          }
-          else
-            rows.add(row);
-        }
-        else
+    listing.nextDirNdx = (int) rows.stream().filter(FileRow::isDirectory).count();
+
+    addRows(listing, new ArrayList<>(newFiles.values()));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static FileRow createRow(ListedFile file, TreeItem<FileRow> parentTreeItem)
+  {
+    HyperPath hyperPath = file.hyperPath;
+
+    if ((hyperPath == null) || ((hyperPath.getRecord() != null) && hyperPath.getRecord().isExpired()))
+    {
+      // The file had no HyperPath when it was listed, or its record has since been deleted. A new HyperPath
+      // is only created here on the FX thread because creating one modifies the database's filename map.
+
+      Set<HyperPath> set = HyperPath.getHyperPathSetForFilePath(file.filePath);
+
+      if (set.isEmpty())
+        return new FileRow(new HyperPath(file.filePath), null, file.attrs);
+
+      hyperPath = set.iterator().next();
+    }
+
+    FileRow row = new FileRow(hyperPath, null, file.attrs);
+
+    if (row.isDirectory() == false)
+      return row;
+
+    for (TreeItem<FileRow> childTreeItem : parentTreeItem.getChildren())
+    {
+      FileRow fileRow = childTreeItem.getValue();
+      if (fileRow.getRecord().getID() > 0)  // a deleted folder might still be in the tree at this point; the delete recordHandler gets called
+                                            // in a Platform.runLater call
+      {
+        if (fileRow.getFilePath().equals(file.filePath))
         {
-          rows.add(new FileRow(new HyperPath(filePath), null));
+          row.setFolderTreeItem(childTreeItem);
+          break;
         }
       }
     }
-    catch (DirectoryIteratorException | IOException ex)
+
+    return row;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Detecting the media type means reading the file, so it is only done in the background
+   * for rows that are actually displayed, and is skipped if the listing has changed by then.
+   */
+  private void requestTypeDetection(FileRow row)
+  {
+    if (row.needsTypeDetection() == false) return;
+
+    int id = listingID;
+
+    row.markTypeDetectionRequested();
+
+    typeDetectionExecutor.execute(() ->
     {
-      messageDialog("An error occurred while displaying the folder's contents: " + ex.getMessage(), mtError);
-    }
+      if (id != listingID) return;
+
+      MediaType mimetype = row.detectType();
+
+      Platform.runLater(() -> row.setDetectedType(mimetype));
+    });
   }
 
 //---------------------------------------------------------------------------
@@ -237,11 +507,19 @@ public class FileTable extends DragNDropContainer<FileRow>
   {
     FilePath nameOnly = fileName.getNameOnly();
 
-    nullSwitch(findFirst(rows, row -> row.getFilePath().getNameOnly().equals(nameOnly)), row ->
+    FileRow row = findFirst(rows, fileRow -> fileRow.getFilePath().getNameOnly().equals(nameOnly));
+
+    if (row == null)
     {
-      fileTV.getSelectionModel().select(row);
-      HyperTable.scrollToSelection(fileTV, true);
-    });
+      if (listingThread != null)
+        pendingSelection = nameOnly;  // Select it if it turns up later in the listing
+
+      return;
+    }
+
+    pendingSelection = null;
+    fileTV.getSelectionModel().select(row);
+    HyperTable.scrollToSelection(fileTV, true);
   }
 
 //---------------------------------------------------------------------------
@@ -0,0 +1,476 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.fileManager;
+
+import static org.hypernomicon.App.*;
+import static org.hypernomicon.Const.*;
+import static org.hypernomicon.bib.data.BibField.BibFieldEnum.*;
+import static org.hypernomicon.model.HyperDB.*;
+import static org.hypernomicon.model.records.RecordType.*;
+import static org.hypernomicon.util.MediaUtil.*;
+import static org.hypernomicon.util.Util.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.tika.mime.MediaType;
+import org.hypernomicon.HyperTask;
+import org.hypernomicon.HyperTask.HyperThread;
+import org.hypernomicon.bib.authors.BibAuthor;
+import org.hypernomicon.bib.authors.BibAuthor.AuthorType;
+import org.hypernomicon.bib.data.BibData;
+import org.hypernomicon.bib.data.BibDataRetriever;
+import org.hypernomicon.bib.data.BibDataStandalone;
+import org.hypernomicon.bib.data.PDFBibData;
+import org.hypernomicon.model.Exceptions.CancelledTaskException;
+import org.hypernomicon.model.Exceptions.HyperDataException;
+import org.hypernomicon.model.items.Author;
+import org.hypernomicon.model.items.HDI_OfflineTernary.Ternary;
+import org.hypernomicon.model.items.HyperPath;
+import org.hypernomicon.model.items.PersonName;
+import org.hypernomicon.model.items.WorkAuthors;
+import org.hypernomicon.model.records.HDT_Person;
+import org.hypernomicon.model.records.HDT_Work;
+import org.hypernomicon.model.records.HDT_WorkFile;
+import org.hypernomicon.util.AsyncHttpClient;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Creates a work record for each PDF file in a folder that isn't already assigned to a record.
+ * <p>
+ * The files go through three overlapping stages. Identifiers and metadata are extracted from several
+ * files at once on a small thread pool. As soon as a file has been read, its bibliographic information is
+ * looked up online, with a limit on how many lookups can be in progress and how often a new one can start.
+ * Files with the same DOI (or, lacking a DOI, the same first ISBN) share a single lookup. Finished files
+ * are turned into records on the FX thread, a batch at a time.
+ */
+final class PDFFolderImporter
+{
+
+//---------------------------------------------------------------------------
+
+  private static final class ExtractedFile
+  {
+    private final FilePath filePath;
+    private final PDFBibData pdfBD;
+
+    private ExtractedFile(FilePath filePath, PDFBibData pdfBD) { this.filePath = filePath; this.pdfBD = pdfBD; }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final class PendingWork
+  {
+    private final ExtractedFile file;
+    private final BibDataStandalone queryBD;
+
+    private PendingWork(ExtractedFile file, BibDataStandalone queryBD) { this.file = file; this.queryBD = queryBD; }
+  }
+
+//---------------------------------------------------------------------------
+
+  private final class Lookup
+  {
+    private final List<ExtractedFile> files = new ArrayList<>();
+    private BibDataRetriever retriever = null;
+    private BibDataStandalone queryBD = null;
+    private boolean done = false;
+
+    private Lookup(ExtractedFile file) { files.add(file); }
+
+    private void start()
+    {
+      ExtractedFile file = files.get(0);
+
+      retriever = BibDataRetriever.forExtractedPDF(new AsyncHttpClient(), file.pdfBD, file.filePath, (pdfBD, queryBD, messageShown) -> lookupFinished(this, queryBD));
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int MAX_EXTRACTION_THREADS = 3,
+                           RECORD_BATCH_SIZE = 20,
+                           DEFAULT_LOOKUP_CONCURRENCY = 4,
+                           DEFAULT_LOOKUPS_PER_SECOND = 2;
+
+  private final FilePath folderFilePath;
+  private final int lookupConcurrency;
+  private final long minLookupIntervalMS;
+  private final Semaphore lookupSlots;
+
+  private final Map<String, Lookup> idToLookup = new HashMap<>();
+  private final List<Lookup> activeLookups = new ArrayList<>();
+  private final List<PendingWork> pendingWorks = new ArrayList<>();
+  private final AtomicInteger finishedCount = new AtomicInteger(), createdCount = new AtomicInteger();
+
+  private HyperTask task;
+  private int fileCount = 0;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  PDFFolderImporter(FilePath folderFilePath)
+  {
+    this.folderFilePath = folderFilePath;
+
+    lookupConcurrency = Math.max(1, app.prefs.getInt(PREF_KEY_BIB_LOOKUP_CONCURRENCY, DEFAULT_LOOKUP_CONCURRENCY));
+    minLookupIntervalMS = 1000L / Math.max(1, app.prefs.getInt(PREF_KEY_BIB_LOOKUPS_PER_SECOND, DEFAULT_LOOKUPS_PER_SECOND));
+    lookupSlots = new Semaphore(lookupConcurrency);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Runs the import with a progress dialog. Must be called on the FX thread.
+   * @return The number of work records that were created
+   */
+  int run()
+  {
+    task = new HyperTask("ImportPDFFolder") { @Override protected void call() throws CancelledTaskException, HyperDataException
+    {
+      updateMessage("Importing PDF files from: " + folderFilePath);
+      updateProgress(0, 1);
+
+      importFiles();
+    }};
+
+    task.runWithProgressDialog();
+
+    ui.update();
+
+    return createdCount.get();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private List<FilePath> findPDFFiles() throws IOException
+  {
+    List<FilePath> filePaths = new ArrayList<>();
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(folderFilePath.toPath(), Files::isRegularFile))
+    {
+      stream.forEach(path ->
+      {
+        FilePath filePath = new FilePath(path);
+
+        if (HyperPath.getHyperPathSetForFilePath(filePath).isEmpty())
+          filePaths.add(filePath);
+      });
+    }
+
+    Map<FilePath, MediaType> mediaTypes = getMediaTypes(filePaths);
+    List<FilePath> pdfFilePaths = new ArrayList<>();
+
+    filePaths.forEach(filePath ->
+    {
+      MediaType mediaType = mediaTypes.get(filePath);
+
+      if ((mediaType != null) && mediaType.toString().contains("pdf"))
+        pdfFilePaths.add(filePath);
+    });
+
+    return pdfFilePaths;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void importFiles() throws CancelledTaskException, HyperDataException
+  {
+    List<FilePath> pdfFilePaths;
+
+    try { pdfFilePaths = findPDFFiles(); }
+    catch (IOException e) { throw new HyperDataException("Unable to read folder contents: " + e.getMessage(), e); }
+
+    if ((fileCount = pdfFilePaths.size()) == 0) return;
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_EXTRACTION_THREADS, fileCount), runnable ->
+    {
+      HyperThread thread = new HyperThread(runnable, "PDFFolderImport");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    CompletionService<ExtractedFile> extractions = new ExecutorCompletionService<>(executor);
+
+    pdfFilePaths.forEach(filePath -> extractions.submit(() -> extract(filePath)));
+
+    try
+    {
+      long nextLookupTime = 0L;
+
+      for (int ndx = 0; ndx < fileCount; ndx++)
+      {
+        ExtractedFile file = extractions.take().get();
+
+        if (task.isCancelled()) throw new CancelledTaskException();
+
+        Lookup lookup = joinExistingLookup(file);
+        if (lookup == null) continue;
+
+        acquireLookupSlots(1);
+
+        long delay = nextLookupTime - System.currentTimeMillis();
+        if (delay > 0) Thread.sleep(delay);
+
+        nextLookupTime = System.currentTimeMillis() + minLookupIntervalMS;
+
+        runInFXThread(lookup::start);
+      }
+
+      acquireLookupSlots(lookupConcurrency); // Wait for the remaining lookups to finish
+    }
+    catch (InterruptedException e)
+    {
+      throw new CancelledTaskException();
+    }
+    catch (ExecutionException e)
+    {
+      throw new HyperDataException("An error occurred while extracting metadata: " + e.getCause().getMessage(), e.getCause());
+    }
+    finally
+    {
+      executor.shutdownNow();
+
+      runInFXThread(() ->
+      {
+        synchronized (this) { activeLookups.forEach(lookup -> nullSwitch(lookup.retriever, BibDataRetriever::stop)); }
+
+        createPendingWorks();
+      }, true);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static ExtractedFile extract(FilePath filePath)
+  {
+    PDFBibData pdfBD;
+
+    try { pdfBD = PDFBibData.createFromFiles(List.of(filePath), false); }
+    catch (IOException | RuntimeException e) { pdfBD = null; } // A malformed file is imported without metadata instead of stopping the import
+
+    return new ExtractedFile(filePath, BibData.isEmpty(pdfBD) ? null : pdfBD);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void acquireLookupSlots(int count) throws CancelledTaskException, InterruptedException
+  {
+    while (lookupSlots.tryAcquire(count, 100, TimeUnit.MILLISECONDS) == false)
+      if (task.isCancelled()) throw new CancelledTaskException();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static String lookupID(PDFBibData pdfBD)
+  {
+    if (pdfBD == null) return null;
+
+    String doi = pdfBD.getStr(bfDOI);
+    if (doi.length() > 0) return "doi:" + doi.toLowerCase();
+
+    List<String> isbns = pdfBD.getMultiStr(bfISBNs);
+    return isbns.isEmpty() ? null : ("isbn:" + isbns.get(0));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Attaches the file to a lookup that was already started for the same identifier, or queues it for
+   * record creation if there is nothing to look up.
+   * @return A new lookup that needs to be started, or null if the file has been taken care of
+   */
+  private synchronized Lookup joinExistingLookup(ExtractedFile file)
+  {
+    if (file.pdfBD == null)
+    {
+      addPendingWork(file, null);
+      return null;
+    }
+
+    String id = lookupID(file.pdfBD);
+    Lookup lookup = id == null ? null : idToLookup.get(id);
+
+    if (lookup != null)
+    {
+      if (lookup.done)
+        addPendingWork(file, lookup.queryBD);
+      else
+        lookup.files.add(file);
+
+      return null;
+    }
+
+    lookup = new Lookup(file);
+
+    if (id != null) idToLookup.put(id, lookup);
+    activeLookups.add(lookup);
+
+    return lookup;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void lookupFinished(Lookup lookup, BibDataStandalone queryBD)
+  {
+    synchronized (this)
+    {
+      if (lookup.done) return;
+
+      lookup.done = true;
+      lookup.queryBD = queryBD;
+      activeLookups.remove(lookup);
+
+      lookup.files.forEach(file -> addPendingWork(file, queryBD));
+    }
+
+    lookupSlots.release();
+
+    boolean batchReady;
+    synchronized (this) { batchReady = pendingWorks.size() >= RECORD_BATCH_SIZE; }
+
+    if (batchReady)
+      createPendingWorks();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private synchronized void addPendingWork(ExtractedFile file, BibDataStandalone queryBD)
+  {
+    pendingWorks.add(new PendingWork(file, queryBD));
+    task.updateProgress(finishedCount.incrementAndGet(), fileCount);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void createPendingWorks()
+  {
+    List<PendingWork> batch;
+
+    synchronized (this)
+    {
+      batch = new ArrayList<>(pendingWorks);
+      pendingWorks.clear();
+    }
+
+    batch.forEach(this::createWork);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void createWork(PendingWork pendingWork)
+  {
+    FilePath filePath = pendingWork.file.filePath;
+    PDFBibData pdfBD = pendingWork.file.pdfBD;
+
+    if ((filePath.exists() == false) || (HyperPath.getHyperPathSetForFilePath(filePath).isEmpty() == false))
+      return; // Deleted, or assigned to a record, since the import started
+
+    HDT_Work work = db.createNewBlankRecord(hdtWork);
+    BibData workBD = work.getBibData();
+    BibData bd = nullSwitch(pendingWork.queryBD, pdfBD);
+
+    if (bd != null)
+    {
+      workBD.copyAllFieldsFrom(bd, false, false);
+      bd.getAuthors().forEach(bibAuthor -> addAuthor(work, bibAuthor));
+
+      if ((bd != pdfBD) && (pdfBD != null))
+      {
+        if (workBD.getStr(bfDOI).isEmpty())
+          workBD.setStr(bfDOI, pdfBD.getStr(bfDOI));
+
+        if (workBD.getMultiStr(bfISBNs).isEmpty())
+          workBD.setMultiStr(bfISBNs, pdfBD.getMultiStr(bfISBNs));
+      }
+    }
+
+    if (work.name().isBlank())
+      work.setName(FilenameUtils.removeExtension(filePath.getNameOnly().toString()));
+
+    HDT_WorkFile workFile = (HDT_WorkFile) HyperPath.createRecordAssignedToPath(hdtWorkFile, filePath);
+    if (workFile != null)
+      work.addWorkFile(workFile.getID());
+
+    createdCount.incrementAndGet();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Adds an author the way {@link WorkAuthors#setAll} does, except that a name without an exactly matching person
+   * record is added as it is, instead of being checked against similar names. That check shows a progress dialog,
+   * and possibly a prompt, which would happen for nearly every work.
+   */
+  private static void addAuthor(HDT_Work work, BibAuthor bibAuthor)
+  {
+    PersonName name = bibAuthor.getName();
+    if ((name == null) || name.isEmpty()) return;
+
+    boolean isEditor = bibAuthor.getType() == AuthorType.editor,
+            isTrans  = bibAuthor.getType() == AuthorType.translator;
+
+    HDT_Person person = bibAuthor.getPerson();
+    if (person == null)
+      person = HDT_Person.lookUpByName(name);
+
+    if (person == null)
+    {
+      work.getAuthors().add(new Author(work, name, isEditor, isTrans, Ternary.Unset));
+      return;
+    }
+
+    work.getAuthors().add(person);
+
+    if (isEditor) work.setPersonIsEditor(person, true);
+    if (isTrans) work.setPersonIsTranslator(person, true);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
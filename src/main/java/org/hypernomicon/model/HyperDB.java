@@ -60,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -156,8 +157,10 @@ public final class HyperDB
   private final Map<String, HDT_Work> bibEntryKeyToWork = new HashMap<>();
   private final Map<String, String> xmlChecksums = new HashMap<>();
   private final SetMultimap<Integer, Integer> workIDtoInvIDs = LinkedHashMultimap.create(); // For backwards compatibility with records XML version 1.4
+  private final AtomicLong modGeneration = new AtomicLong(); // Incremented whenever anything happens that could change the result of a query
 
   public final FilenameMap<Set<HyperPath>> filenameMap = new FilenameMap<>();
+  public final Map<HDT_Folder, FilenameMap<Set<HyperPath>>> folderToChildPaths = new ConcurrentHashMap<>(); // Entries only count if they are also in filenameMap; see HyperPath.getChildPaths
 
   private final FolderTreeWatcher folderTreeWatcher;
 
@@ -202,7 +205,17 @@ public final class HyperDB
   public BibEntry<?, ?> getBibEntryByKey(String key)                { return bibLibrary.getEntryByKey(key); }
 
   public void setSearchKey(HDT_Record record, String newKey, boolean noMod, boolean rebuildMentions) throws SearchKeyException
-  { searchKeys.setSearchKey(record, newKey, noMod, rebuildMentions); }
+  { searchKeys.setSearchKey(record, newKey, noMod, rebuildMentions); if (record.isDummy() == false) bumpModGeneration(); }
+
+  /**
+   * The modification generation is incremented whenever a record is created, modified, or deleted,
+   * whenever a relation is added or removed, and whenever the database is loaded or closed. Anything
+   * computed from the contents of the database can be stamped with this value and treated as
+   * current for as long as the value stays the same.
+   * @return The current modification generation
+   */
+  public long getModGeneration()                                    { return modGeneration.get(); }
+  public void bumpModGeneration()                                   { modGeneration.incrementAndGet(); }
 
   public LibraryWrapper<? extends BibEntry<?, ?>, ? extends BibCollection> getBibLibrary()  { return bibLibrary; }
   public Stream<Consumer<HDT_Record>> getRecordDeleteHandlers()                             { return recordDeleteHandlers.stream(); }
@@ -259,6 +272,12 @@ public final class HyperDB
   public <HDT_ObjType extends HDT_Record, HDT_SubjType extends HDT_Record> HyperObjPointer<HDT_SubjType, HDT_ObjType> getObjPointer(RelationType relType, HDT_SubjType subj)
   { return new HyperObjPointer<>(relSet(relType), subj, true); }
 
+  /**
+   * Returns the reachability index for the hierarchy that {@code relType} belongs to, or null
+   * if {@code relType} does not link records of the same type or of a cycle group.
+   */
+  public RelationHierarchy getHierarchy(RelationType relType) { return relSet(relType).getHierarchy(); }
+
   public <HDT_ObjType extends HDT_Record, HDT_SubjType extends HDT_Record> HyperSubjPointer<HDT_SubjType, HDT_ObjType> getSubjPointer(RelationType relType, HDT_ObjType obj)
   { return new HyperSubjPointer<>(relSet(relType), obj); }
 
@@ -393,6 +412,9 @@ public final class HyperDB
 
     this.folderTreeWatcher = folderTreeWatcher;
 
+    dbMentionsNdxCompleteHandlers.add(this::bumpModGeneration);
+    bibChangedHandlers           .add(this::bumpModGeneration);
+
     persons          = getAccessor(HDT_Person         .class);
     personStatuses   = getAccessor(HDT_PersonStatus   .class);
     institutions     = getAccessor(HDT_Institution    .class);
@@ -941,6 +963,7 @@ public final class HyperDB
     InterProcClient.refresh(newRootFilePath);
 
     rootFilePath = newRootFilePath;
+    HyperPath.folderStructureChanged();
     hdbFilePath = rootFilePath.resolve(app.prefs.get(PREF_KEY_SOURCE_FILENAME, HDB_DEFAULT_FILENAME));
 
     if (dbChanged)
@@ -1167,6 +1190,7 @@ public final class HyperDB
     getRootFolder().checkExists();
 
     loaded = true;
+    bumpModGeneration();
     dbLoadedHandlers.forEach(Runnable::run);
 
     rebuildMentions();
@@ -1334,7 +1358,13 @@ public final class HyperDB
         (id == topicalFolder  .getID()))
       return true;
 
-    return checkSubfolders && folders.getByID(id).childFolders.stream().anyMatch(folder -> folder.isSpecial(true));
+    if (checkSubfolders == false) return false;
+
+    HDT_Folder folder = folders.getByID(id);
+    RelationHierarchy hierarchy = getHierarchy(rtParentFolderOfFolder);
+
+    return Stream.of(xmlFolder, booksFolder, papersFolder, miscFilesFolder, picturesFolder, resultsFolder, unenteredFolder, topicalFolder)
+                 .anyMatch(specialFolder -> hierarchy.isAncestor(folder, specialFolder));
   }
 
 //---------------------------------------------------------------------------
@@ -1378,6 +1408,8 @@ public final class HyperDB
 
     if (record.isDummy() == false)
     {
+      bumpModGeneration();
+
       if (mentionsIndex.isRebuilding())
       {
         startMentionsRebuildAfterDelete = true;
@@ -1603,7 +1635,12 @@ public final class HyperDB
   @SuppressWarnings("unchecked")
   public <T extends HDT_RecordBase> T createNewRecordFromState(RecordState recordState, boolean bringOnline) throws DuplicateRecordException, RelationCycleException, HDB_InternalError, SearchKeyException, RestoreException
   {
-    return (T) datasets.get(recordState.type).createNewRecord(recordState, bringOnline);
+    T record = (T) datasets.get(recordState.type).createNewRecord(recordState, bringOnline);
+
+    if (record.isDummy() == false)
+      bumpModGeneration();
+
+    return record;
   }
 
 //---------------------------------------------------------------------------
@@ -1612,6 +1649,8 @@ public final class HyperDB
   @SuppressWarnings("unchecked")
   public <T extends HDT_RecordBase> T createNewBlankRecord(RecordType type)
   {
+    bumpModGeneration();
+
     try
     {
       return (T) datasets.get(type).createNewRecord(new RecordState(type), true);
@@ -2082,6 +2121,7 @@ public final class HyperDB
     boolean bringOnline = datasetsToKeep != null; // Datasets remain online through process of creating a new database
 
     folderTreeWatcher.stop();
+    folderTreeWatcher.clearQueuedChanges();
 
     if (FilePath.isEmpty(lockFilePath) == false)
     {
@@ -2093,12 +2133,14 @@ public final class HyperDB
     mentionsIndex.clear();
 
     loaded = false;
+    bumpModGeneration();
     InterProcClient.refresh(new FilePath(""));
     clearAllDataSets(datasetsToKeep);
     cleanupRelations();
 
     initialNavList   .clear();
     filenameMap      .clear();
+    folderToChildPaths.clear();
     mainTextTemplates.clear();
     keyWorkIndex     .clear();
     displayedAtIndex .clear();
@@ -2183,6 +2225,7 @@ public final class HyperDB
 
     app.prefs.put(PREF_KEY_SOURCE_PATH, newPath.toString());
     rootFilePath = newPath;
+    HyperPath.folderStructureChanged();
     hdbFilePath = rootFilePath.resolve(app.prefs.get(PREF_KEY_SOURCE_FILENAME, HDB_DEFAULT_FILENAME));
 
     addRootFolder();
@@ -2273,6 +2316,7 @@ public final class HyperDB
 
     BIB_FILE_NAME = "Bib.json",
     ZOTERO_TEMPLATE_FILE_NAME = "ZoteroTemplates.json",
+    ZOTERO_SYNC_JOURNAL_FILE_NAME = "ZoteroSyncJournal.jsonl",
     ZOTERO_CREATOR_TYPES_FILE_NAME = "ZoteroCreatorTypes.json",
     DESC_TEMPLATE_FOLDER_NAME = "Description templates",
     DEFAULT_XML_PATH = "XML",
@@ -2473,7 +2517,7 @@ public final class HyperDB
 
     if (paths == null) return;
 
-    paths.removeIf(path -> filePath.equals(path.filePath()));
+    paths.removeAll(HyperPath.getHyperPathSetForFilePath(filePath));
 
     if (paths.isEmpty())
       filenameMap.remove(name);
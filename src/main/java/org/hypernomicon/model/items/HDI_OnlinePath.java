@@ -81,6 +81,9 @@ public class HDI_OnlinePath extends HDI_OnlineBase<HDI_OfflinePath>
           }
         }
 
+        if (hyperPath != null)
+          hyperPath.updateChildIndex();
+
         break;
 
       default :
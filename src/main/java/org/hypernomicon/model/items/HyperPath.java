@@ -26,11 +26,13 @@ import static org.hypernomicon.model.records.RecordType.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hypernomicon.model.Exceptions.*;
 import org.hypernomicon.model.records.HDT_Record;
@@ -40,6 +42,7 @@ import org.hypernomicon.model.records.RecordType;
 import org.hypernomicon.model.records.HDT_WorkFile;
 import org.hypernomicon.model.records.SimpleRecordTypes.HDT_RecordWithPath;
 import org.hypernomicon.model.relations.HyperObjPointer;
+import org.hypernomicon.util.FilenameMap;
 import org.hypernomicon.util.filePath.FilePath;
 
 public class HyperPath
@@ -49,6 +52,24 @@ public class HyperPath
   private final HDT_RecordWithPath record;
   private HDT_Folder folder = null;
   private FilePath fileName = null;
+  private volatile CachedFilePath cachedFilePath = null;
+  private HDT_Folder indexedFolder = null; // Where this path was last filed in db.folderToChildPaths
+  private String indexedName = null;
+
+  private static final AtomicLong folderGeneration = new AtomicLong();
+
+//---------------------------------------------------------------------------
+
+  /**
+   * Resolved file path, along with the folder generation that was current when it was resolved
+   */
+  private static final class CachedFilePath
+  {
+    private final FilePath filePath;
+    private final long generation;
+
+    private CachedFilePath(FilePath filePath, long generation) { this.filePath = filePath; this.generation = generation; }
+  }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
@@ -158,10 +179,101 @@ public class HyperPath
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
+  // Paths are resolved by walking down from the root folder one segment at a time. Each step looks up the segment
+  // name among the children of the folder found in the previous step (db.folderToChildPaths), so the cost depends
+  // only on the depth of the path, not on how many other records have the same file name.
+
   public static Set<HyperPath> getHyperPathSetForFilePath(FilePath filePath)
   {
-    return nullSwitch(db.filenameMap.get(filePath.getNameOnly().toString()), new HashSet<>(),
-                      paths -> paths.stream().filter(path -> filePath.equals(path.filePath())).collect(Collectors.toSet()));
+    Set<HyperPath> set = new HashSet<>();
+
+    if (FilePath.isEmpty(filePath) || FilePath.isEmpty(db.getRootPath())) return set;
+
+    List<String> segments = db.getRootPath().getSubpathSegments(filePath);
+    if (segments == null) return set;
+
+    HDT_Folder folder = db.getRootFolder();
+
+    if (segments.isEmpty())
+    {
+      set.add(folder.getPath());
+      return set;
+    }
+
+    for (String segment : segments.subList(0, segments.size() - 1))
+    {
+      folder = getChildFolder(folder, segment);
+      if (folder == null) return set;
+    }
+
+    set.addAll(getChildPaths(folder, segments.get(segments.size() - 1)));
+    return set;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static HDT_Folder getChildFolder(HDT_Folder parentFolder, String name)
+  {
+    for (HyperPath path : getChildPaths(parentFolder, name))
+      if (path.getRecordType() == hdtFolder)
+        return (HDT_Folder) path.getRecord();
+
+    return null;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the paths named {@code name} whose parent folder is {@code parentFolder}. A path only counts
+   * if it is also still in db.filenameMap, so removing a path from filenameMap (for example, in
+   * HyperDB.unmapFilePath) also removes it from the folder's children.
+   */
+  private static List<HyperPath> getChildPaths(HDT_Folder parentFolder, String name)
+  {
+    Set<HyperPath> childPaths = nullSwitch(db.folderToChildPaths.get(parentFolder), null, nameToPaths -> nameToPaths.get(name));
+    if ((childPaths == null) || childPaths.isEmpty()) return List.of();
+
+    Set<HyperPath> paths = db.filenameMap.get(name);
+    if (paths == null) return List.of();
+
+    List<HyperPath> list = new ArrayList<>(1);
+
+    for (HyperPath path : childPaths)
+      if ((path.parentFolder() == parentFolder) && paths.contains(path))
+        list.add(path);
+
+    return list;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Files this path under its current parent folder and file name in db.folderToChildPaths. Has to be called
+   * whenever either of them changes.
+   */
+  void updateChildIndex()
+  {
+    if (indexedFolder != null)
+      nullSwitch(db.folderToChildPaths.get(indexedFolder), nameToPaths -> nullSwitch(nameToPaths.get(indexedName), set -> set.remove(this)));
+
+    HDT_Folder parent = parentFolder();
+
+    if ((parent == null) || FilePath.isEmpty(fileName))
+    {
+      indexedFolder = null;
+      indexedName = null;
+      return;
+    }
+
+    indexedFolder = parent;
+    indexedName = fileName.getNameOnly().toString();
+
+    db.folderToChildPaths.computeIfAbsent(indexedFolder, folder -> new FilenameMap<>())
+                         .computeIfAbsent(indexedName, name -> ConcurrentHashMap.newKeySet())
+                         .add(this);
   }
 
 //---------------------------------------------------------------------------
@@ -174,10 +286,35 @@ public class HyperPath
 
     if (FilePath.isEmpty(fileName)) return null;
 
-    return nullSwitch(parentFolder()   , fileName, pFolder   ->
-           nullSwitch(pFolder.filePath(), fileName, parentFP -> parentFP.resolve(fileName)));
+    long generation = folderGeneration.get();
+    CachedFilePath cached = cachedFilePath;
+
+    if ((cached != null) && (cached.generation == generation))
+      return cached.filePath;
+
+    FilePath filePath = nullSwitch(parentFolder()   , fileName, pFolder   ->
+                        nullSwitch(pFolder.filePath(), fileName, parentFP -> parentFP.resolve(fileName)));
+
+    cachedFilePath = new CachedFilePath(filePath, generation);
+    return filePath;
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Discards the cached file paths of all HyperPaths. Has to be called whenever a folder is
+   * renamed, moved, assigned a different parent, or deleted, or when the root path changes,
+   * because the file paths of everything under that folder change with it.
+   */
+  public static void folderStructureChanged() { folderGeneration.incrementAndGet(); }
+
+  /**
+   * Discards the cached file path of this HyperPath only. Sufficient when the parent folder of a
+   * non-folder record changes, because nothing else resolves its path through this one.
+   */
+  public void invalidateCachedPath() { cachedFilePath = null; }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -185,20 +322,38 @@ public class HyperPath
   {
     dirFilePath = dirFilePath.getDirOnly();
 
-    if (db.getRootPath().isSubpath(dirFilePath) == false)  // the path is not in the database folder tree
+    List<String> segments = db.getRootPath().getSubpathSegments(dirFilePath);
+    if (segments == null)  // the path is not in the database folder tree
       return null;
 
-    Set<HyperPath> set = getHyperPathSetForFilePath(dirFilePath);
+    HDT_Folder folder = db.getRootFolder();
+    FilePath curFilePath = db.getRootPath();
 
-    HDT_RecordWithPath folder = findFirst(set, hyperPath -> hyperPath.getRecordType() == hdtFolder, HyperPath::getRecord);
-    if (folder != null) return (HDT_Folder) folder;
+    for (String segment : segments)
+    {
+      curFilePath = curFilePath.resolve(segment);
 
-    if (dirFilePath.exists() == false) return null;
+      HDT_Folder childFolder = getChildFolder(folder, segment);
 
-    HDT_Folder parentRecord = getFolderFromFilePath(dirFilePath.getParent(), doCreateRecord);
+      if (childFolder == null)
+      {
+        if ((doCreateRecord == false) || (curFilePath.exists() == false)) return null;
 
-    if ((parentRecord == null) || (doCreateRecord == false)) return null;
+        childFolder = createFolderRecord(folder, curFilePath);
+        if (childFolder == null) return null;
+      }
+
+      folder = childFolder;
+    }
+
+    return folder;
+  }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static HDT_Folder createFolderRecord(HDT_Folder parentRecord, FilePath dirFilePath)
+  {
     RecordState recordState = new RecordState(hdtFolder);
 
     try
@@ -378,6 +533,12 @@ public class HyperPath
     }
 
     fileName = newFileName;
+    updateChildIndex();
+
+    if (getRecordType() == hdtFolder)
+      folderStructureChanged();
+    else
+      invalidateCachedPath();
 
     if (record != null)
       record.updateSortKey();
@@ -388,13 +549,15 @@ public class HyperPath
     // now remove duplicates; for this to work, folder records have to be brought online first
 
     HDT_Folder parent = parentFolder();
+    if (parent == null) return;
 
-    db.filenameMap.get(fileName.getNameOnly().toString()).removeIf(path ->
-    {
-      if ((path == this) || path.isEmpty()) return false;
+    String name = fileName.getNameOnly().toString();
+    Set<HyperPath> paths = db.filenameMap.get(name);
 
-      HDT_Folder otherParent = path.parentFolder();
-      return (otherParent != null) && (parent == otherParent);
+    getChildPaths(parent, name).forEach(path ->
+    {
+      if ((path != this) && (path.isEmpty() == false))
+        paths.remove(path);
     });
   }
 
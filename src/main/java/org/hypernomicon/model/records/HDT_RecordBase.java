@@ -251,6 +251,9 @@ public abstract class HDT_RecordBase implements HDT_Record
       //System.out.println("Modified: " + db.getTypeName(type) + " " + id + " " + dateTimeToUserReadableStr(modifiedDate));
     }
 
+    if (dummyFlag == false)
+      db.bumpModGeneration();
+
     if (online && (type != hdtFolder))
       db.updateMentioner(this);
   }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.model.relations;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.hypernomicon.model.records.HDT_Record;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Reachability index over a group of relation types that together form a hierarchy, where
+ * the subject of each relation is a child of the object. For example, the parent folder
+ * relation, or the four relation types linking debates and positions to each other.
+ * <p>
+ * The transitive closure of each record's ancestors and descendants is computed the first
+ * time it is requested and reused until a relation in the group changes, at which point
+ * the whole index is invalidated.
+ * <p>
+ * Cycles are prevented by maintaining a topological order of the records (every parent is
+ * ordered before its children) incrementally, using the Pearce-Kelly algorithm. Adding a
+ * relation that is consistent with the current order takes constant time; otherwise only
+ * the records whose order lies between the new parent and the new child are searched.
+ */
+public final class RelationHierarchy
+{
+
+//---------------------------------------------------------------------------
+
+  private final Collection<RelationSet<? extends HDT_Record, ? extends HDT_Record>> relSets;
+
+  private Map<HDT_Record, Set<HDT_Record>> recordToAncestors   = new HashMap<>(),
+                                           recordToDescendants = new HashMap<>();
+
+  private final Map<HDT_Record, Integer> recordToOrd = new HashMap<>();
+  private int nextOrd = 0, prevOrd = -1; // A record seen for the first time is ordered after every other record, or before if it is a parent
+
+//---------------------------------------------------------------------------
+
+  RelationHierarchy(Collection<RelationSet<? extends HDT_Record, ? extends HDT_Record>> relSets)
+  {
+    this.relSets = List.copyOf(relSets);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  synchronized void invalidate()
+  {
+    if (recordToAncestors  .isEmpty() == false) recordToAncestors   = new HashMap<>();
+    if (recordToDescendants.isEmpty() == false) recordToDescendants = new HashMap<>();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  synchronized void removeExpired()
+  {
+    recordToOrd.keySet().removeIf(HDT_Record::isExpired);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private int ord(HDT_Record record)
+  {
+    return recordToOrd.computeIfAbsent(record, rec -> nextOrd++);
+  }
+
+  private int parentOrd(HDT_Record record)
+  {
+    return recordToOrd.computeIfAbsent(record, rec -> prevOrd--);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Updates the topological order so that {@code parent} comes before {@code child}, unless
+   * that is impossible because {@code child} is already {@code parent} or one of its ancestors.
+   * The order stays valid for the current relations whether or not the new one is actually added.
+   * @param parent The record that would become a parent
+   * @param child The record that would become a child of {@code parent}
+   * @return False if adding the relation would create a cycle
+   */
+  synchronized boolean orderForNewRelation(HDT_Record parent, HDT_Record child)
+  {
+    if (parent == child) return false;
+
+    int upperBound = parentOrd(parent), lowerBound = ord(child);
+
+    if (upperBound < lowerBound) return true;
+
+    // Records reachable from the child, going down, whose order is not past the parent's
+
+    List<HDT_Record> forward = search(child, this::getChildren, rec -> ord(rec) <= upperBound);
+    if (forward.contains(parent)) return false;
+
+    // Records reachable from the parent, going up, whose order is not before the child's
+
+    List<HDT_Record> backward = search(parent, this::getParents, rec -> ord(rec) >= lowerBound);
+
+    // Reassign the order values of both sets so that everything in the backward set comes first
+
+    forward .sort(Comparator.comparingInt(this::ord));
+    backward.sort(Comparator.comparingInt(this::ord));
+
+    List<Integer> ords = new ArrayList<>(forward.size() + backward.size());
+    forward .forEach(rec -> ords.add(ord(rec)));
+    backward.forEach(rec -> ords.add(ord(rec)));
+    Collections.sort(ords);
+
+    int ndx = 0;
+    for (HDT_Record rec : backward) recordToOrd.put(rec, ords.get(ndx++));
+    for (HDT_Record rec : forward ) recordToOrd.put(rec, ords.get(ndx++));
+
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static List<HDT_Record> search(HDT_Record start, Function<HDT_Record, List<HDT_Record>> nextStep, Predicate<HDT_Record> inRange)
+  {
+    Set<HDT_Record> visited = new LinkedHashSet<>();
+    Deque<HDT_Record> stack = new ArrayDeque<>();
+
+    visited.add(start);
+    stack.push(start);
+
+    while (stack.isEmpty() == false)
+    {
+      for (HDT_Record next : nextStep.apply(stack.pop()))
+        if (inRange.test(next) && visited.add(next))
+          stack.push(next);
+    }
+
+    return new ArrayList<>(visited);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns all records that can be reached from {@code record} by repeatedly going from child to parent.
+   * @param record The record
+   * @return Unmodifiable set of ancestors, not including {@code record} itself
+   */
+  public synchronized Set<HDT_Record> getAncestors(HDT_Record record)
+  {
+    return closure(record, recordToAncestors, this::getParents);
+  }
+
+  /**
+   * Returns all records that can be reached from {@code record} by repeatedly going from parent to child.
+   * @param record The record
+   * @return Unmodifiable set of descendants, not including {@code record} itself
+   */
+  public synchronized Set<HDT_Record> getDescendants(HDT_Record record)
+  {
+    return closure(record, recordToDescendants, this::getChildren);
+  }
+
+  /**
+   * Returns true if {@code descendant} is under {@code ancestor} in the hierarchy.
+   * A record is not considered to be its own ancestor.
+   */
+  public boolean isAncestor(HDT_Record ancestor, HDT_Record descendant)
+  {
+    return (ancestor != null) && (descendant != null) && getAncestors(descendant).contains(ancestor);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static Set<HDT_Record> closure(HDT_Record record, Map<HDT_Record, Set<HDT_Record>> cache, Function<HDT_Record, List<HDT_Record>> nextStep)
+  {
+    Set<HDT_Record> result = cache.get(record);
+    if (result != null) return result;
+
+    cache.put(record, Collections.emptySet()); // Placeholder so that a cycle in the data cannot cause infinite recursion
+
+    Set<HDT_Record> records = new LinkedHashSet<>();
+
+    for (HDT_Record next : nextStep.apply(record))
+    {
+      records.add(next);
+      records.addAll(closure(next, cache, nextStep));
+    }
+
+    result = Collections.unmodifiableSet(records);
+    cache.put(record, result);
+    return result;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @SuppressWarnings("unchecked")
+  private List<HDT_Record> getParents(HDT_Record record)
+  {
+    List<HDT_Record> parents = new ArrayList<>();
+
+    for (RelationSet<? extends HDT_Record, ? extends HDT_Record> relSet : relSets)
+      if (relSet.getSubjType() == record.getType())
+        parents.addAll(((RelationSet<HDT_Record, HDT_Record>) relSet).getUnmodifiableObjectList(record));
+
+    return parents;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @SuppressWarnings("unchecked")
+  private List<HDT_Record> getChildren(HDT_Record record)
+  {
+    List<HDT_Record> children = new ArrayList<>();
+
+    for (RelationSet<? extends HDT_Record, ? extends HDT_Record> relSet : relSets)
+      if (relSet.getObjType() == record.getType())
+        children.addAll(((RelationSet<HDT_Record, HDT_Record>) relSet).getUnmodifiableSubjectList(record));
+
+    return children;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -47,6 +47,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableSet;
@@ -73,7 +74,7 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
   private final HashBasedTable<HDT_Subj, HDT_Obj, Map<Tag, HDI_OnlineBase<? extends HDI_OfflineBase>>> objectGroups = HashBasedTable.create();
   private final Map<Tag, HDI_Schema> tagToSchema = new LinkedHashMap<>();
   private final List<RelationChangeHandler> changeHandlers = new ArrayList<>();
-  private final Set<RelationType> cycleGroup;
+  private RelationHierarchy hierarchy = null;
 
   private static final EnumMap<RecordType, Set<RelationSet<? extends HDT_Record, ? extends HDT_Record>>> orphanTypeToRelSets = new EnumMap<>(RecordType.class);
   private static final EnumMap<RelationType, RelationSet<? extends HDT_Record, ? extends HDT_Record>> relationSets = new EnumMap<>(RelationType.class);
@@ -91,6 +92,7 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
   public boolean getHasNestedItems()                      { return hasNestedItems; }
   public Set<Tag> getNestedTags()                         { return EnumSet.copyOf(tagToSchema.keySet()); }
   public void addChangeHandler(RelationChangeHandler rch) { changeHandlers.add(rch); }
+  public RelationHierarchy getHierarchy()                 { return hierarchy; }
   public Set<HDT_Subj> getOrphans()                       { return ImmutableSet.copyOf(orphans); } // Make a new copy of the set to prevent concurrent modification exception
   private void addObjAndMod(HDT_Subj subj, HDT_Obj obj)   { new HyperObjList<>(this, subj, true).add(obj); }
   List<HDT_Obj> getUnmodifiableObjectList(HDT_Subj subj)  { return Collections.unmodifiableList(subjToObjList.get(subj)); }
@@ -133,8 +135,6 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
   {
     type = newType;
 
-    cycleGroup = cycleGroups.stream().filter(cGroup -> cGroup.contains(type)).findAny().map(EnumSet::copyOf).orElse(null);
-
     this.subjType = typeByRecordClass(subjClass);
     this.objType = typeByRecordClass(objClass);
     this.hasNestedItems = (nestedSchemas.length > 0);
@@ -236,7 +236,7 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
         dbRelationSets.put(relType, createSet(relType));
 
     relationSets.putAll(dbRelationSets);
-    relationSets.values().forEach(RelationSet::initCycleGroup);
+    initHierarchies();
 
     for (RecordType objType : RecordType.values())
     {
@@ -249,15 +249,26 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
     }
   }
 
-  //---------------------------------------------------------------------------
-  //---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  // Relation types in a cycle group share one hierarchy; any other relation type whose subject and object types are the same gets its own
 
-    private void initCycleGroup()
+  private static void initHierarchies()
+  {
+    for (Set<RelationType> cycleGroup : cycleGroups)
     {
-      if (cycleGroup != null)
-        cycleGroup.removeIf(relType -> relationSets.get(relType).subjType != objType);
+      RelationHierarchy hierarchy = new RelationHierarchy(cycleGroup.stream().map(relationSets::get).collect(Collectors.toList()));
+      cycleGroup.forEach(relType -> relationSets.get(relType).hierarchy = hierarchy);
     }
 
+    relationSets.values().forEach(relSet ->
+    {
+      if ((relSet.hierarchy == null) && (relSet.subjType == relSet.objType))
+        relSet.hierarchy = new RelationHierarchy(List.of(relSet));
+    });
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -585,6 +596,19 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
     });
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  // The subject's parent folder changed, so its cached file path, and those of everything under it if it is a folder, are stale
+
+  private void invalidateFilePaths(HDT_Subj subj)
+  {
+    if (subjType == hdtFolder)
+      HyperPath.folderStructureChanged();
+    else if (subj instanceof HDT_RecordWithPath)
+      nullSwitch(((HDT_RecordWithPath) subj).getPath(), HyperPath::invalidateCachedPath);
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -619,6 +643,13 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
         objToSubjList.put(obj, subj);
 
       orphans.remove(subj);
+      db.bumpModGeneration();
+
+      if (hierarchy != null)
+        hierarchy.invalidate();
+
+      if (objType == hdtFolder)
+        invalidateFilePaths(subj);
 
       Platform.runLater(() -> changeHandlers.forEach(handler -> handler.handle(subj, obj, true)));
 
@@ -631,6 +662,14 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
       if (ndx == -1) objList.remove(obj);
       else           objList.remove(ndx);
 
+      db.bumpModGeneration();
+
+      if (hierarchy != null)
+        hierarchy.invalidate();
+
+      if (objType == hdtFolder)
+        invalidateFilePaths(subj);
+
       if (objList.contains(obj) == false)
       {
         objToSubjList.remove(obj, subj);
@@ -679,47 +718,12 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  @SuppressWarnings("unchecked") void cycleCheck(HDT_Subj subj, HDT_Obj obj) throws RelationCycleException
-  {
-    if (cycleGroup != null)
-      groupCycleCheckCase(subj, obj, obj);
-    else if (obj.getType() == subj.getType())
-      cycleCheckCase(subj, (HDT_Subj) obj, obj);
-  }
-
-//---------------------------------------------------------------------------
-//---------------------------------------------------------------------------
+  // Making obj a parent of subj creates a cycle if subj is already obj or one of its ancestors
 
-  @SuppressWarnings("unchecked")
-  private void cycleCheckCase(HDT_Subj origSubj, HDT_Subj curSubj, HDT_Obj origObj) throws RelationCycleException
+  void cycleCheck(HDT_Subj subj, HDT_Obj obj) throws RelationCycleException
   {
-    if (origSubj == curSubj)
-      throw new RelationCycleException(origSubj, origObj);
-
-    for (HDT_Obj nextObj : subjToObjList.get(curSubj))
-      cycleCheckCase(origSubj, (HDT_Subj) nextObj, origObj);
-  }
-
-//---------------------------------------------------------------------------
-//---------------------------------------------------------------------------
-
-  @SuppressWarnings("unchecked")
-  private void groupCycleCheckCase(HDT_Record origSubj, HDT_Obj curSubj, HDT_Record origObj) throws RelationCycleException
-  {
-    if (origSubj == curSubj)
-      throw new RelationCycleException(origSubj, origObj);
-
-    for (RelationType relType : cycleGroup)
-    {
-      RelationSet<HDT_Obj, ? extends HDT_Record> relSet = (RelationSet<HDT_Obj, ? extends HDT_Record>) relationSets.get(relType);
-      relSet.groupParentCycleCheckCase(origSubj, curSubj, origObj);
-    }
-  }
-
-  private void groupParentCycleCheckCase(HDT_Record origSubj, HDT_Subj curSubj, HDT_Record origObj) throws RelationCycleException
-  {
-    for (HDT_Obj nextObj : subjToObjList.get(curSubj))
-      groupCycleCheckCase(origSubj, nextObj, origObj);
+    if ((hierarchy != null) && (hierarchy.orderForNewRelation(obj, subj) == false))
+      throw new RelationCycleException(subj, obj);
   }
 
 //---------------------------------------------------------------------------
@@ -764,6 +768,12 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
     subjToObjList = rebuildMultimap(subjToObjList);
     objToSubjList = rebuildMultimap(objToSubjList);
 
+    if (hierarchy != null)
+    {
+      hierarchy.invalidate();
+      hierarchy.removeExpired();
+    }
+
     Iterator<HDT_Subj> orphanIt = orphans.iterator();
 
     while (orphanIt.hasNext())
@@ -937,13 +947,15 @@ public final class RelationSet<HDT_Subj extends HDT_Record, HDT_Obj extends HDT_
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  void reorderObjects (HDT_Subj subj, List<HDT_Obj>  newObjList) { reorderList(subj, newObjList, subjToObjList); }
+  void reorderObjects (HDT_Subj subj, List<HDT_Obj>  newObjList) { if (reorderList(subj, newObjList, subjToObjList)) db.bumpModGeneration(); }
 
   void reorderSubjects(HDT_Obj obj, List<HDT_Subj> newSubjList)
   {
     if (reorderList(obj, newSubjList, objToSubjList) == false)
       return;
 
+    db.bumpModGeneration();
+
     subjOrdMap.clear();
     for (int ndx = 0; ndx < newSubjList.size(); ndx++)
       subjOrdMap.put(newSubjList.get(ndx), ndx + 1);
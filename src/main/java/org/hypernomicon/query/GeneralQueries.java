@@ -24,9 +24,10 @@ import static org.hypernomicon.query.QueryType.*;
 import static org.hypernomicon.query.WorkQueries.*;
 import static org.hypernomicon.view.wrappers.HyperTableCell.*;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.hypernomicon.model.Exceptions.HDB_InternalError;
@@ -111,19 +112,19 @@ public final class GeneralQueries
         return false;
       }
 
+      private final Map<String, RecordTextMatcher> matchers = new HashMap<>();
+
       @Override public boolean evaluate(HDT_Record record, HyperTableRow row, HyperTableCell op1, HyperTableCell op2, HyperTableCell op3)
       {
         String val1 = getCellText(op1);
         if (val1.isBlank())
           return false;
 
-        List<String> list = new ArrayList<>();
-        record.getAllStrings(list, ui.queryHyperTab().getCurQueryCtrlr().getSearchLinkedRecords());
-
-        String val1LC = val1.toLowerCase();
-        return list.stream().anyMatch(str -> str.toLowerCase().contains(val1LC));
+        return matchers.computeIfAbsent(val1, RecordTextMatcher::forSubstring).matches(record, ui.queryHyperTab().getCurQueryCtrlr().getSearchLinkedRecords());
       }
 
+      @Override public void cleanup(State state) { matchers.clear(); }
+
       @Override public boolean autoShowDescription() { return true; }
 
       @Override public boolean hasOperand(int opNum, HyperTableCell op1, HyperTableCell op2) { return opNum == 1; }
@@ -335,6 +336,7 @@ public final class GeneralQueries
     {
       private final SearchKeys dummySearchKeys = new SearchKeys();
       private HDT_Record searchDummy = null;
+      private RecordTextMatcher matcher = null;
 
       @Override public boolean initRow(HyperTableRow row, VariablePopulator vp1, VariablePopulator vp2, VariablePopulator vp3)
       {
@@ -349,21 +351,15 @@ public final class GeneralQueries
         searchDummy = db.createNewRecordFromState(new RecordState(hdtPerson, -1, "", "", "", "", true), true);
 
         dummySearchKeys.setSearchKey(searchDummy, getCellText(op1), true, false);
+
+        matcher = RecordTextMatcher.forSearchKey(getCellText(op1), dummySearchKeys);
       }
 
       @Override public boolean evaluate(HDT_Record record, HyperTableRow row, HyperTableCell op1, HyperTableCell op2, HyperTableCell op3) throws HyperDataException
       {
-        if (searchDummy == null) return false;
+        if ((searchDummy == null) || (matcher == null)) return false;
 
-        List<String> list = new ArrayList<>();
-        record.getAllStrings(list, true);
-        boolean add = false;
-
-        for (String str : list)
-          if (KeywordLinkList.generate(str.toLowerCase(), dummySearchKeys::getKeywordsByPrefix).size() > 0)
-            add = true;
-
-        return add;
+        return matcher.matches(record, true);
       }
 
       @Override public void cleanup(State state)
@@ -374,6 +370,8 @@ public final class GeneralQueries
           searchDummy = null;
           dummySearchKeys.removeAll();
         }
+
+        matcher = null;
       }
 
       @Override public boolean autoShowDescription() { return true; }
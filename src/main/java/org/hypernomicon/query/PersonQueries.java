@@ -67,6 +67,8 @@ public final class PersonQueries
         return false;
       }
 
+      @Override public boolean resultsCanBeCached() { return false; }
+
       @Override public boolean hasOperand(int opNum, HyperTableCell op1, HyperTableCell op2) { return false; }
     });
 
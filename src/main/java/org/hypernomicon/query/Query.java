@@ -68,7 +68,13 @@ public abstract class Query<HDT_T extends HDT_Record>
 
     QuerySource origSource = recordType == hdtNone ? new AllQuerySource() : new DatasetQuerySource(recordType);
 
-    return getSource(origSource, row.getCell(QueryCtrlr.OPERAND_1_COL_NDX), row.getCell(QueryCtrlr.OPERAND_2_COL_NDX), row.getCell(QueryCtrlr.OPERAND_3_COL_NDX));
+    HyperTableCell op1 = row.getCell(QueryCtrlr.OPERAND_1_COL_NDX),
+                   op2 = row.getCell(QueryCtrlr.OPERAND_2_COL_NDX),
+                   op3 = row.getCell(QueryCtrlr.OPERAND_3_COL_NDX);
+
+    QuerySource indexedSource = getIndexedSource(origSource, row, op1, op2, op3);
+
+    return indexedSource != null ? indexedSource : getSource(origSource, op1, op2, op3);
   }
 
   /**
@@ -84,6 +90,16 @@ public abstract class Query<HDT_T extends HDT_Record>
   @SuppressWarnings("unused")
   protected QuerySource getSource(QuerySource origSource, HyperTableCell op1, HyperTableCell op2, HyperTableCell op3) { return origSource; }
 
+  /**
+   * Override this function to look up the records matching a row in an index instead of
+   * evaluating every record in {@code origSource}. The returned source must contain every record
+   * for which {@link Query#evaluate evaluate} would return true; evaluate is still called for
+   * each record in it.
+   * @return The source, or null if the row cannot be answered from an index
+   */
+  @SuppressWarnings("unused")
+  protected QuerySource getIndexedSource(QuerySource origSource, HyperTableRow row, HyperTableCell op1, HyperTableCell op2, HyperTableCell op3) { return null; }
+
   @SuppressWarnings("unused")  //returns true if subsequent cells need to be updated
   public boolean initRow(HyperTableRow row, VariablePopulator vp1, VariablePopulator vp2, VariablePopulator vp3) { return true; }   // queryChange
 
@@ -120,6 +136,14 @@ public abstract class Query<HDT_T extends HDT_Record>
 
   public boolean autoShowDescription() { return false; }
 
+  /**
+   * Override this function to return false if the result of the query can depend on
+   * anything other than the contents of the database and the query operands, or if
+   * running the query has side effects. Otherwise, results may be reused if the query
+   * is run again before the database changes.
+   */
+  public boolean resultsCanBeCached() { return true; }
+
   /**
    * This determines whether the cell corresponding to an operand number will automatically
    * go into edit mode and the dropdown will be shown, after a value is committed by the
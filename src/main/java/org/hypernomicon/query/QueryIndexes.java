@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.query;
+
+import static org.hypernomicon.model.HyperDB.db;
+import static org.hypernomicon.model.records.HDT_RecordBase.HyperDataCategory.*;
+import static org.hypernomicon.model.records.RecordType.*;
+import static org.hypernomicon.model.relations.RelationSet.RelationType.*;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.hypernomicon.bib.data.BibField.BibFieldEnum;
+import org.hypernomicon.model.HDI_Schema;
+import org.hypernomicon.model.Tag;
+import org.hypernomicon.model.records.HDT_Record;
+import org.hypernomicon.model.records.HDT_Work;
+import org.hypernomicon.model.records.RecordType;
+import org.hypernomicon.model.relations.RelationSet.RelationType;
+import org.hypernomicon.query.sources.AllQuerySource;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Secondary indexes used to answer "equal to" field queries without evaluating every record.
+ * <p>
+ * Pointer fields are looked up through the reverse (object-to-subject) maps that the relation
+ * sets already maintain. Boolean, ternary, and string field values, and bibliographic field
+ * values, are indexed by value the first time a given field is queried. Those indexes are
+ * stamped with the database modification generation and are discarded when it changes.
+ */
+final class QueryIndexes
+{
+
+//---------------------------------------------------------------------------
+
+  private QueryIndexes() { throw new UnsupportedOperationException(); }
+
+  private static final Table<RecordType, Tag, Map<String, Set<HDT_Record>>> stringIndexes = HashBasedTable.create();
+  private static final Table<RecordType, Tag, Map<Boolean, Set<HDT_Record>>> booleanIndexes = HashBasedTable.create();
+  private static final Map<BibFieldEnum, Map<String, Set<HDT_Work>>> bibFieldIndexes = new EnumMap<>(BibFieldEnum.class);
+
+  private static long generation = -1;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void checkGeneration()
+  {
+    long curGeneration = db.getModGeneration();
+    if (curGeneration == generation) return;
+
+    stringIndexes.clear();
+    booleanIndexes.clear();
+    bibFieldIndexes.clear();
+
+    generation = curGeneration;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Case-folds a string the same way {@link String#equalsIgnoreCase equalsIgnoreCase} compares
+   * characters, so that two strings are equal ignoring case if and only if their folded forms are equal.
+   */
+  static String foldCase(String str)
+  {
+    str = str.trim();
+
+    StringBuilder sb = new StringBuilder(str.length());
+
+    for (int ndx = 0; ndx < str.length(); ndx++)
+      sb.append(Character.toLowerCase(Character.toUpperCase(str.charAt(ndx))));
+
+    return sb.toString();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static EnumSet<RecordType> typesInScope(RecordType recordType)
+  {
+    return recordType == hdtNone ?
+      AllQuerySource.types()
+    :
+      EnumSet.of(recordType);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static HDI_Schema getSchema(RecordType recordType, Tag tag)
+  {
+    Collection<HDI_Schema> schemas = db.getSchemasByRecordType(recordType);
+    if (schemas == null) return null;
+
+    return schemas.stream().filter(schema -> schema.getTags().contains(tag)).findFirst().orElse(null);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the records of the given type (or of any type, if {@code recordType} is hdtNone)
+   * that point to {@code obj} via the field identified by {@code tag}.
+   * @return The set of matching records, or null if a record type in scope stores the field
+   * in some way other than a relation
+   */
+  static synchronized LinkedHashSet<HDT_Record> recordsPointingTo(RecordType recordType, Tag tag, HDT_Record obj)
+  {
+    LinkedHashSet<HDT_Record> records = new LinkedHashSet<>();
+
+    for (RecordType type : typesInScope(recordType))
+    {
+      HDI_Schema schema = getSchema(type, tag);
+      if (schema == null) continue;
+
+      RelationType relType = schema.getRelType();
+      if (relType == rtNone) return null;
+
+      if ((obj != null) && (db.getObjType(relType) == obj.getType()))
+        records.addAll(db.getSubjectList(relType, obj));
+    }
+
+    return records;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the records of the given type (or of any type, if {@code recordType} is hdtNone)
+   * whose boolean value for the field identified by {@code tag} is {@code value}.
+   * @return The set of matching records, or null if the field is not boolean for a record type in scope
+   */
+  static synchronized LinkedHashSet<HDT_Record> recordsWithBoolean(RecordType recordType, Tag tag, boolean value)
+  {
+    checkGeneration();
+
+    LinkedHashSet<HDT_Record> records = new LinkedHashSet<>();
+
+    for (RecordType type : typesInScope(recordType))
+    {
+      HDI_Schema schema = getSchema(type, tag);
+      if (schema == null) continue;
+      if (schema.getCategory() != hdcBoolean) return null;
+
+      Map<Boolean, Set<HDT_Record>> index = booleanIndexes.get(type, tag);
+
+      if (index == null)
+      {
+        index = buildIndex(type, record -> record.getTagBoolean(tag));
+        booleanIndexes.put(type, tag, index);
+      }
+
+      records.addAll(index.getOrDefault(value, Set.of()));
+    }
+
+    return records;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the records of the given type (or of any type, if {@code recordType} is hdtNone)
+   * whose display text for the field identified by {@code tag} is equal to {@code value},
+   * ignoring case and leading/trailing whitespace.
+   */
+  static synchronized LinkedHashSet<HDT_Record> recordsWithText(RecordType recordType, Tag tag, String value)
+  {
+    checkGeneration();
+
+    LinkedHashSet<HDT_Record> records = new LinkedHashSet<>();
+
+    for (RecordType type : typesInScope(recordType))
+    {
+      if (getSchema(type, tag) == null) continue;
+
+      Map<String, Set<HDT_Record>> index = stringIndexes.get(type, tag);
+
+      if (index == null)
+      {
+        index = buildIndex(type, record ->
+        {
+          String text = record.resultTextForTag(tag);
+          return text.isEmpty() ? null : foldCase(text);
+        });
+
+        stringIndexes.put(type, tag, index);
+      }
+
+      records.addAll(index.getOrDefault(foldCase(value), Set.of()));
+    }
+
+    return records;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the works whose bibliographic data value for {@code field} is equal to
+   * {@code value}, ignoring case and leading/trailing whitespace.
+   */
+  static synchronized LinkedHashSet<HDT_Record> worksWithBibText(BibFieldEnum field, String value)
+  {
+    checkGeneration();
+
+    Map<String, Set<HDT_Work>> index = bibFieldIndexes.get(field);
+
+    if (index == null)
+    {
+      index = buildIndex(hdtWork, work ->
+      {
+        String text = work.getBibData().getStr(field).toLowerCase().trim();
+        return text.isEmpty() ? null : foldCase(text);
+      });
+
+      bibFieldIndexes.put(field, index);
+    }
+
+    return new LinkedHashSet<>(index.getOrDefault(foldCase(value), Set.of()));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @SuppressWarnings("unchecked")
+  private static <HDT_T extends HDT_Record, K> Map<K, Set<HDT_T>> buildIndex(RecordType type, Function<HDT_T, K> keyFunction)
+  {
+    Map<K, Set<HDT_T>> index = new HashMap<>();
+
+    for (HDT_Record record : db.records(type))
+    {
+      K key = keyFunction.apply((HDT_T) record);
+
+      if (key != null)
+        index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add((HDT_T) record);
+    }
+
+    return index;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
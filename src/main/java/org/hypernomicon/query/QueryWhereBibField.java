@@ -34,6 +34,8 @@ import org.hypernomicon.model.Exceptions.HyperDataException;
 import org.hypernomicon.model.records.HDT_Work;
 import org.hypernomicon.model.records.RecordType;
 import org.hypernomicon.query.Query.WorkQuery;
+import org.hypernomicon.query.sources.FilteredQuerySource;
+import org.hypernomicon.query.sources.QuerySource;
 import org.hypernomicon.view.populators.VariablePopulator;
 import org.hypernomicon.view.populators.Populator;
 import org.hypernomicon.view.populators.Populator.CellValueType;
@@ -101,6 +103,19 @@ public class QueryWhereBibField extends WorkQuery
     return true;
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @Override protected QuerySource getIndexedSource(QuerySource origSource, HyperTableRow row, HyperTableCell op1, HyperTableCell op2, HyperTableCell op3)
+  {
+    if (getCellID(op2) != EQUAL_TO_OPERAND_ID) return null;
+
+    BibFieldEnum field = getEnumVal(getCellID(op1), BibFieldEnum.class);
+    if (field == null) return null;
+
+    return new FilteredQuerySource(origSource, QueryIndexes.worksWithBibText(field, getCellText(op3)));
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -25,6 +25,8 @@ import static org.hypernomicon.query.ui.QueriesTabCtrlr.*;
 import static org.hypernomicon.view.populators.Populator.CellValueType.*;
 import static org.hypernomicon.view.wrappers.HyperTableCell.*;
 
+import java.util.LinkedHashSet;
+
 import org.hypernomicon.model.HDI_Schema;
 import org.hypernomicon.model.Tag;
 import org.hypernomicon.model.records.HDT_Record;
@@ -32,6 +34,8 @@ import org.hypernomicon.model.records.RecordType;
 import org.hypernomicon.model.records.HDT_RecordBase.HyperDataCategory;
 import org.hypernomicon.model.relations.RelationSet.RelationType;
 import org.hypernomicon.query.Query.RecordQuery;
+import org.hypernomicon.query.sources.FilteredQuerySource;
+import org.hypernomicon.query.sources.QuerySource;
 import org.hypernomicon.query.ui.QueryCtrlr;
 import org.hypernomicon.view.populators.Populator;
 import org.hypernomicon.view.populators.StandardPopulator;
@@ -157,6 +161,42 @@ public class QueryWhereField extends RecordQuery
     return true;
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @Override protected QuerySource getIndexedSource(QuerySource origSource, HyperTableRow row, HyperTableCell op1, HyperTableCell op2, HyperTableCell op3)
+  {
+    if (getCellID(op2) != EQUAL_TO_OPERAND_ID) return null;
+
+    Tag tag = Tag.getTag(getCellID(op1));
+    if (tag == Tag.tagNone) return null;
+
+    RecordType recordType = row.getRecordType(QueryCtrlr.QUERY_TYPE_COL_NDX);
+    LinkedHashSet<HDT_Record> records;
+
+    switch (row.getPopulator(QueryCtrlr.OPERAND_3_COL_NDX).getValueType(row))
+    {
+      case cvtRecord :
+
+        records = QueryIndexes.recordsPointingTo(recordType, tag, getRecord(op3));
+        break;
+
+      case cvtBoolean :
+
+        if ((getCellID(op3) != TRUE_ID) && (getCellID(op3) != FALSE_ID)) return null;
+
+        records = QueryIndexes.recordsWithBoolean(recordType, tag, getCellID(op3) == TRUE_ID);
+        break;
+
+      default :
+
+        records = QueryIndexes.recordsWithText(recordType, tag, getCellText(op3));
+        break;
+    }
+
+    return records == null ? null : new FilteredQuerySource(origSource, records);
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.query;
+
+import static org.hypernomicon.model.HyperDB.db;
+import static org.hypernomicon.model.SearchKeys.*;
+import static org.hypernomicon.util.Util.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.hypernomicon.model.KeywordLinkList;
+import org.hypernomicon.model.SearchKeys;
+import org.hypernomicon.model.SearchKeys.SearchKeyword;
+import org.hypernomicon.model.records.HDT_Record;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Matches text against all of the strings of a record, using a cached, pre-folded copy of each
+ * record's strings so that a query does not have to call {@link HDT_Record#getAllStrings getAllStrings}
+ * and re-fold every string for every record it evaluates. The cached text is discarded whenever the
+ * database modification generation changes.
+ */
+public final class RecordTextMatcher
+{
+
+//---------------------------------------------------------------------------
+
+  private static final char SEPARATOR = '\0';
+
+  private static final Map<HDT_Record, String> lowerCaseText         = new HashMap<>(),
+                                               lowerCaseLinkedText   = new HashMap<>(),
+                                               alphanumericLinkedText = new HashMap<>();
+  private static long generation = -1;
+
+  private final String pattern;                 // Lower-cased pattern for substring matching, or null
+  private final List<String> alphanumericKeys;  // Folded search keywords with everything but letters and digits removed, or null
+  private final SearchKeys searchKeys;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private RecordTextMatcher(String pattern, List<String> alphanumericKeys, SearchKeys searchKeys)
+  {
+    this.pattern = pattern;
+    this.alphanumericKeys = alphanumericKeys;
+    this.searchKeys = searchKeys;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns a matcher that matches records having any string that contains {@code str}, ignoring case.
+   */
+  static RecordTextMatcher forSubstring(String str)
+  {
+    return new RecordTextMatcher(str.toLowerCase(), null, null);
+  }
+
+  /**
+   * Returns a matcher that matches records having any string that would be linked to a
+   * keyword in {@code searchKeys}.
+   * @param searchKey The search key string that was assigned to {@code searchKeys}
+   * @param searchKeys Search keys holding only the keywords parsed from {@code searchKey}
+   */
+  static RecordTextMatcher forSearchKey(String searchKey, SearchKeys searchKeys)
+  {
+    List<String> alphanumericKeys = new ArrayList<>();
+
+    for (String subStr : prepSearchKey(searchKey).split(";"))
+    {
+      String text = new SearchKeyword(subStr, null).text;
+
+      if (text.isEmpty() == false)
+        alphanumericKeys.add(foldAlphanumeric(text));
+    }
+
+    return new RecordTextMatcher(null, alphanumericKeys, searchKeys);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  boolean matches(HDT_Record record, boolean searchLinkedRecords)
+  {
+    if (pattern != null)
+    {
+      if (pattern.indexOf(SEPARATOR) >= 0)
+        return allStrings(record, searchLinkedRecords).stream().anyMatch(str -> str.toLowerCase().contains(pattern));
+
+      return getText(searchLinkedRecords ? lowerCaseLinkedText : lowerCaseText, record, searchLinkedRecords, String::toLowerCase).contains(pattern);
+    }
+
+  // A keyword can only be linked in a string if its letters and digits appear consecutively in the string
+  // (KeywordLinkList may disregard spaces after periods), so most records are ruled out without calling it.
+
+    String text = getText(alphanumericLinkedText, record, true, str -> foldAlphanumeric(convertToEnglishChars(str.toLowerCase())));
+
+    if (alphanumericKeys.stream().noneMatch(text::contains))
+      return false;
+
+    return allStrings(record, true).stream().anyMatch(str -> KeywordLinkList.generate(str.toLowerCase(), searchKeys::getKeywordsByPrefix).size() > 0);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static synchronized String getText(Map<HDT_Record, String> cache, HDT_Record record, boolean searchLinkedRecords, Function<String, String> folder)
+  {
+    long curGeneration = db.getModGeneration();
+
+    if (curGeneration != generation)
+    {
+      clearCache();
+      generation = curGeneration;
+    }
+
+    return cache.computeIfAbsent(record, rec ->
+    {
+      StringBuilder sb = new StringBuilder();
+
+      for (String str : allStrings(rec, searchLinkedRecords))
+        sb.append(folder.apply(str)).append(SEPARATOR);
+
+      return sb.toString();
+    });
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static synchronized void clearCache()
+  {
+    lowerCaseText         .clear();
+    lowerCaseLinkedText   .clear();
+    alphanumericLinkedText.clear();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static List<String> allStrings(HDT_Record record, boolean searchLinkedRecords)
+  {
+    List<String> list = new ArrayList<>();
+    record.getAllStrings(list, searchLinkedRecords);
+    return list;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  // Folds case the same way equalsIgnoreCase compares characters, then drops everything but letters and digits
+
+  private static String foldAlphanumeric(String str)
+  {
+    StringBuilder sb = new StringBuilder(str.length());
+
+    for (int ndx = 0; ndx < str.length(); ndx++)
+    {
+      char c = Character.toLowerCase(Character.toUpperCase(str.charAt(ndx)));
+
+      if (Character.isLetterOrDigit(c))
+        sb.append(c);
+    }
+
+    return sb.toString();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
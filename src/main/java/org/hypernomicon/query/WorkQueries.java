@@ -176,6 +176,8 @@ public final class WorkQueries
         }
       }
 
+      @Override public boolean resultsCanBeCached() { return false; }
+
       @Override public boolean hasOperand(int opNum, HyperTableCell op1, HyperTableCell op2) { return false; }
     });
   }
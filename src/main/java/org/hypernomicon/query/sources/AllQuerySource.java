@@ -36,7 +36,7 @@ public class AllQuerySource extends CombinedUnfilteredQuerySource
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  private static EnumSet<RecordType> types()
+  public static EnumSet<RecordType> types()
   {
     EnumSet<RecordType> types = EnumSet.allOf(RecordType.class);
     types.removeAll(EnumSet.of(hdtNone, hdtAuxiliary, hdtHub));
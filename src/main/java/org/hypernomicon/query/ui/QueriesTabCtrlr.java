@@ -112,6 +112,8 @@ public class QueriesTabCtrlr extends HyperTab<HDT_Record, HDT_Record>
   private final List<QueryCtrlr> queryCtrlrs = new ArrayList<>();
   private final Highlighter highlighter;
 
+  final QueryResultCache resultCache = new QueryResultCache();
+
   private QueryCtrlr curQueryCtrlr;
 
   private static final List<Query<?>> allQueries = new ArrayList<>();
@@ -160,6 +162,9 @@ public class QueriesTabCtrlr extends HyperTab<HDT_Record, HDT_Record>
     PersonQueries .addQueries(allQueries);
     WorkQueries   .addQueries(allQueries);
 
+    db.addCloseDBHandler(resultCache::clear);
+    db.addCloseDBHandler(RecordTextMatcher::clearCache);
+
 //---------------------------------------------------------------------------
 
     btnExecute.setOnAction(event -> btnExecuteClick());
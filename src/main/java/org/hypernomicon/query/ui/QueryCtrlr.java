@@ -66,6 +66,7 @@ import org.hypernomicon.query.sources.CombinedFilteredQuerySource;
 import org.hypernomicon.query.sources.CombinedUnfilteredQuerySource;
 import org.hypernomicon.query.sources.QuerySource;
 import org.hypernomicon.query.ui.ColumnGroup.*;
+import org.hypernomicon.query.ui.QueryResultCache.CachedResult;
 import org.hypernomicon.view.HyperFavorites.QueryFavorite;
 import org.hypernomicon.view.HyperFavorites.QueryRow;
 import org.hypernomicon.view.mainText.MainTextUtil;
@@ -816,20 +817,19 @@ public final class QueryCtrlr
     }
 
     Map<HyperTableRow, Query<?>> queries = new LinkedHashMap<>();
-    Map<HyperTableRow, QuerySource> sources = new LinkedHashMap<>();
+    Map<HyperTableRow, Integer> rowNumbers = new HashMap<>();
 
     for (HyperTableRow row : htFields.dataRows())
     {
       if (row.getID(QUERY_COL_NDX) < 0) continue;
 
-      QueryType type = getQueryType(row);
       Query<?> query = getQuery(row);
 
       if (query.needsMentionsIndex() && (db.waitUntilRebuildIsDone() == false))
         return false;
 
       queries.put(row, query);
-      sources.put(row, query.getSource(type, row));
+      rowNumbers.put(row, tvFields.getItems().indexOf(row) + 1);
 
       if (query.autoShowDescription())
         showDesc = true;
@@ -842,6 +842,74 @@ public final class QueryCtrlr
     if (setCaption)
       setCaption();
 
+    QueryResultCache resultCache = queriesTabCtrlr.resultCache;
+    List<Object> cacheKey = QueryResultCache.makeKey(queries, rowNumbers, customLogic ? tfCustomLogic.getText() : null, orLogic);
+    CachedResult cachedResult = resultCache.get(cacheKey);
+
+    if (cachedResult != null)
+    {
+      // The database has not changed since these results were generated, so there is no need to evaluate the query again
+
+      searchLinkedRecords = cachedResult.searchLinkedRecords;
+
+      resultsBackingList.clear();
+      cachedResult.records.forEach(record -> addRecord(record, false));
+
+      tvResults.setItems(FXCollections.observableList(resultsBackingList));
+    }
+    else
+    {
+      long generation = db.getModGeneration();
+
+      if (runRecordQueries(queries, rowNumbers, customLogic, orLogic) == false)
+        return false;
+
+      resultCache.put(cacheKey, resultsBackingList.stream().map(row -> row.<HDT_Record>getRecord()).collect(Collectors.toList()), searchLinkedRecords, generation);
+    }
+
+    recordTypeToColumnGroups.forEach((recordType, colGroup) ->
+    {
+      if (recordType != hdtNone)
+        ((NonGeneralColumnGroup) colGroup).addColumnsToTable();
+    });
+
+    if (showDesc)
+      queriesTabCtrlr.chkShowDesc.setSelected(true);
+
+    if (resultsBackingList.isEmpty() == false)
+    {
+      if (getRecordToHilite() != null)
+      {
+        ui.switchToRecordSearch();
+
+        refreshView(false);
+      }
+      else
+      {
+        refreshView(false);
+
+        String textToHilite = getTextToHilite();
+        if (textToHilite.isBlank() == false)
+          ui.findInDescription(textToHilite);
+      }
+    }
+    else
+      refreshView(false);
+
+    return true;
+  }
+
+  //---------------------------------------------------------------------------
+  //---------------------------------------------------------------------------
+
+  // Returns true if the queries completed successfully
+
+  private boolean runRecordQueries(Map<HyperTableRow, Query<?>> queries, Map<HyperTableRow, Integer> rowNumbers, boolean customLogic, boolean orLogic)
+  {
+    Map<HyperTableRow, QuerySource> sources = new LinkedHashMap<>();
+
+    queries.forEach((row, query) -> sources.put(row, query.getSource(getQueryType(row), row)));
+
     QuerySource combinedSource = getCombinedRecordSource(sources);
 
     searchLinkedRecords = combinedSource.recordType() != hdtNone;
@@ -862,14 +930,10 @@ public final class QueryCtrlr
         updateMessage("Running query...");
         updateProgress(0, 1);
 
-        Map<HyperTableRow, Integer> rowNumbers = new HashMap<>(sources.size());
         Map<Integer, Boolean> results = new HashMap<>(sources.size());
 
         for (HyperTableRow row : sources.keySet())
-        {
-          rowNumbers.put(row, tvFields.getItems().indexOf(row) + 1);
           queries.get(row).init(row.getCell(OPERAND_1_COL_NDX), row.getCell(OPERAND_2_COL_NDX), row.getCell(OPERAND_3_COL_NDX));
-        }
 
         Iterator<HDT_Record> recordIterator = combinedSource.iterator();
 
@@ -943,38 +1007,7 @@ public final class QueryCtrlr
 
     Platform.runLater(() -> tvResults.setItems(FXCollections.observableList(resultsBackingList)));
 
-    if (succeeded == false) return false;
-
-    recordTypeToColumnGroups.forEach((recordType, colGroup) ->
-    {
-      if (recordType != hdtNone)
-        ((NonGeneralColumnGroup) colGroup).addColumnsToTable();
-    });
-
-    if (showDesc)
-      queriesTabCtrlr.chkShowDesc.setSelected(true);
-
-    if (resultsBackingList.isEmpty() == false)
-    {
-      if (getRecordToHilite() != null)
-      {
-        ui.switchToRecordSearch();
-
-        refreshView(false);
-      }
-      else
-      {
-        refreshView(false);
-
-        String textToHilite = getTextToHilite();
-        if (textToHilite.isBlank() == false)
-          ui.findInDescription(textToHilite);
-      }
-    }
-    else
-      refreshView(false);
-
-    return true;
+    return succeeded;
   }
 
   //---------------------------------------------------------------------------
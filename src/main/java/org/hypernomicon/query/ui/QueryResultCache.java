@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.query.ui;
+
+import static org.hypernomicon.model.HyperDB.db;
+import static org.hypernomicon.query.ui.QueryCtrlr.*;
+import static org.hypernomicon.util.Util.*;
+import static org.hypernomicon.view.wrappers.HyperTableCell.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hypernomicon.model.records.HDT_Record;
+import org.hypernomicon.query.Query;
+import org.hypernomicon.view.wrappers.HyperTableCell;
+import org.hypernomicon.view.wrappers.HyperTableRow;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Holds the results of recently executed record queries so that running the same query again
+ * can fill the results table without re-evaluating every record. Each entry is stamped with the
+ * database modification generation that was current when the query started; an entry is only
+ * returned if the generation has not changed since then.
+ */
+final class QueryResultCache
+{
+
+//---------------------------------------------------------------------------
+
+  static final class CachedResult
+  {
+    final List<HDT_Record> records;
+    final boolean searchLinkedRecords;
+    private final long generation;
+
+    private CachedResult(List<HDT_Record> records, boolean searchLinkedRecords, long generation)
+    {
+      this.records = List.copyOf(records);
+      this.searchLinkedRecords = searchLinkedRecords;
+      this.generation = generation;
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int MAX_ENTRIES = 20;
+
+  private final Map<List<Object>, CachedResult> keyToResult = new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true)
+  {
+    @Override protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedResult> eldest) { return size() > MAX_ENTRIES; }
+  };
+
+  synchronized void clear() { keyToResult.clear(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Builds the key identifying a query definition: the row position, query type, query ID, and operand
+   * cells of each row, plus the logic setting. Returns null if any of the queries cannot be cached.
+   * @param queries Map of rows in the query fields table to the query selected in each row
+   * @param rowNumbers Map of rows to their 1-based position in the query fields table (used by custom logic expressions)
+   * @param customLogic Custom logic expression, or null if custom logic is not being used
+   * @param orLogic True if rows are combined with OR logic instead of AND logic
+   * @return The key, or null if the results should not be cached
+   */
+  static List<Object> makeKey(Map<HyperTableRow, Query<?>> queries, Map<HyperTableRow, Integer> rowNumbers, String customLogic, boolean orLogic)
+  {
+    if (queries.values().stream().anyMatch(query -> query.resultsCanBeCached() == false))
+      return null;
+
+    List<Object> key = new ArrayList<>();
+
+    key.add(customLogic == null ? (orLogic ? "or" : "and") : ultraTrim(customLogic));
+
+    queries.forEach((row, query) ->
+    {
+      key.add(rowNumbers.get(row));
+      key.add(row.getID(QUERY_TYPE_COL_NDX));
+      key.add(query.getID());
+
+      for (int colNdx = OPERAND_1_COL_NDX; colNdx <= OPERAND_3_COL_NDX; colNdx++)
+      {
+        HyperTableCell cell = row.getCell(colNdx);
+
+        key.add(getCellID  (cell));
+        key.add(getCellType(cell));
+        key.add(getCellText(cell));
+      }
+    });
+
+    return key;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  synchronized CachedResult get(List<Object> key)
+  {
+    if (key == null) return null;
+
+    CachedResult result = keyToResult.get(key);
+    if (result == null) return null;
+
+    if (result.generation == db.getModGeneration())
+      return result;
+
+    keyToResult.remove(key);
+    return null;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Stores query results, but only if the database has not changed since the query started.
+   * @param key Key returned by {@link #makeKey makeKey}
+   * @param records Records found by the query, in order
+   * @param searchLinkedRecords Whether the query searched linked records
+   * @param generation Database modification generation from before the query started
+   */
+  synchronized void put(List<Object> key, List<HDT_Record> records, boolean searchLinkedRecords, long generation)
+  {
+    if ((key == null) || (generation != db.getModGeneration())) return;
+
+    keyToResult.put(key, new CachedResult(records, searchLinkedRecords, generation));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
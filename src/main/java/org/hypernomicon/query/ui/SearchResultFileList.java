@@ -26,6 +26,7 @@ import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.pdfbox.cos.COSArray;
@@ -333,6 +334,8 @@ class SearchResultFileList
 
   void copyAll(boolean excludeAnnots, HyperTask task) throws CancelledTaskException
   {
+    getMediaTypes(list.stream().map(resultFile -> resultFile.filePath).collect(Collectors.toList())); // Detect in parallel up front
+
     int ndx = 0; for (SearchResultFile resultFile : list)
     {
       resultFile.copyToResultsFolder(excludeAnnots, errList);
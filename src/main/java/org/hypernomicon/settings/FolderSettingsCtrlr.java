@@ -20,6 +20,7 @@ package org.hypernomicon.settings;
 import static org.hypernomicon.App.*;
 import static org.hypernomicon.Const.*;
 import static org.hypernomicon.model.HyperDB.db;
+import static org.hypernomicon.model.relations.RelationSet.RelationType.*;
 import static org.hypernomicon.util.UIUtil.*;
 import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
 
@@ -152,13 +153,7 @@ public class FolderSettingsCtrlr implements SettingsControl
 
   private static boolean ancestorIsResultsFolder(HDT_Folder folder)
   {
-    HDT_Folder parentFolder = folder.parentFolder();
-
-    if ((parentFolder == null) || (parentFolder.getID() == HyperDB.ROOT_FOLDER_ID)) return false;
-
-    if (parentFolder == db.getResultsFolder()) return true;
-
-    return ancestorIsResultsFolder(parentFolder);
+    return db.getHierarchy(rtParentFolderOfFolder).isAncestor(db.getResultsFolder(), folder);
   }
 
 //---------------------------------------------------------------------------
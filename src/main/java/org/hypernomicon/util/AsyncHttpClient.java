@@ -28,6 +28,12 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import javax.net.ssl.SSLContext;
@@ -36,56 +42,53 @@ import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
-
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Runs HTTP requests in the background, one at a time per instance; starting a new request stops the
+ * previous one.
+ * <p>
+ * All instances share one long-lived client with a connection pool, so that connections (and their TLS
+ * sessions) are kept alive and reused between requests to the same host, and one pool of request threads.
+ * Responses are transparently decompressed if the server sends them compressed. Each request still gets
+ * its own cookie store, as when every request had its own client.
+ */
 public class AsyncHttpClient
 {
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  final class RequestThread extends HyperThread
-  {
-    private final ResponseHandler<Boolean> responseHandler;
-    private final Consumer<Exception> failHndlr;
-
-    private RequestThread(ResponseHandler<Boolean> responseHandler, Consumer<Exception> failHndlr)
-    {
-      super("HttpRequest");
-
-      setDaemon(true);
-
-      this.responseHandler = responseHandler;
-      this.failHndlr = failHndlr;
-    }
-
-    @Override public void run()
-    {
-      cancelledByUser = false;
-
-      try (CloseableHttpClient httpclient = createClient())
-      {
-        httpclient.execute(request, responseHandler);
-      }
-      catch (IOException e)
-      {
-        runInFXThread(() -> failHndlr.accept(cancelledByUser ? new CancelledTaskException() : e));
-      }
-    }
-  }
+  public enum HttpRequestType { get, post, put, patch, delete, head, options, connect, trace }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  public enum HttpRequestType { get, post, put, patch, delete, head, options, connect, trace }
+  private static final int MAX_CONNECTIONS = 40, MAX_CONNECTIONS_PER_ROUTE = 6, VALIDATE_AFTER_INACTIVITY_MS = 2000;
+  private static final long DEFAULT_KEEP_ALIVE_MS = 30000L, MAX_IDLE_TIME_MS = 60000L;
 
-//---------------------------------------------------------------------------
-//---------------------------------------------------------------------------
+  private static final ExecutorService requestExecutor = Executors.newCachedThreadPool(runnable ->
+  {
+    HyperThread thread = new HyperThread(runnable, "HttpRequest");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static CloseableHttpClient sharedClient = null;
 
   private volatile HttpUriRequest request;
   private volatile boolean cancelledByUser = false;
-  private RequestThread requestThread;
+  private Future<?> requestFuture;
   private String lastUrl = "";
 
   public boolean wasCancelledByUser()     { return cancelledByUser; }
@@ -113,7 +116,20 @@ public class AsyncHttpClient
       return;
     }
 
-    (requestThread = new RequestThread(responseHandler, failHndlr)).start();
+    requestFuture = requestExecutor.submit(() ->
+    {
+      cancelledByUser = false;
+
+      try
+      {
+        execute(request, responseHandler);
+      }
+      catch (IOException | RuntimeException e)  // The future is never checked, so anything thrown here would be lost
+      {
+        if (failHndlr != null)
+          runInFXThread(() -> failHndlr.accept(cancelledByUser ? new CancelledTaskException() : e));
+      }
+    });
   }
 
 //---------------------------------------------------------------------------
@@ -121,7 +137,7 @@ public class AsyncHttpClient
 
   public synchronized void stop()
   {
-    if (HyperThread.isRunning(requestThread))
+    if ((requestFuture != null) && (requestFuture.isDone() == false))
     {
       if (request != null)
       {
@@ -129,18 +145,62 @@ public class AsyncHttpClient
         request.abort();
       }
 
-      try { requestThread.join(); } catch (InterruptedException e) { noOp(); }
+      try { requestFuture.get(); } catch (InterruptedException | ExecutionException | CancellationException e) { noOp(); }
 
       request = null;
     }
 
-    requestThread = null;
+    requestFuture = null;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Executes the request on the calling thread using the shared client.
+   */
+  static <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) throws IOException
+  {
+    HttpClientContext context = HttpClientContext.create();
+    context.setCookieStore(new BasicCookieStore());
+
+    return sharedClient().execute(request, responseHandler, context);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static synchronized CloseableHttpClient sharedClient()
+  {
+    if (sharedClient != null) return sharedClient;
+
+    Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+      .register("https", new SSLConnectionSocketFactory(createSSLContext(), (hostname, session) -> true))
+      .build();
+
+    PoolingHttpClientConnectionManager connMgr = new PoolingHttpClientConnectionManager(registry);
+
+    connMgr.setMaxTotal(MAX_CONNECTIONS);
+    connMgr.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+    connMgr.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+
+    return sharedClient = HttpClientBuilder.create()
+      .setConnectionManager(connMgr)
+      .setKeepAliveStrategy((response, context) ->
+      {
+        long keepAliveMS = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return keepAliveMS > 0 ? keepAliveMS : DEFAULT_KEEP_ALIVE_MS;
+      })
+      .evictExpiredConnections()
+      .evictIdleConnections(MAX_IDLE_TIME_MS, TimeUnit.MILLISECONDS)
+      .build();
   }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  static CloseableHttpClient createClient()
+  private static SSLContext createSSLContext()
   {
     SSLContext sc;
 
@@ -162,7 +222,7 @@ public class AsyncHttpClient
       throw new AssertionError("Error while creating SSLContext", e);
     }
 
-    return HttpClientBuilder.create().setSSLContext(sc).setSSLHostnameVerifier((hostname, session) -> true).build();
+    return sc;
   }
 
 //---------------------------------------------------------------------------
@@ -365,6 +365,34 @@ public final class DesktopUtil
     return new FilePath(System.getProperty("java.io.tmpdir"));
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the per-user folder for data that the program can regenerate if it is lost, such
+   * as indexes of the file system. The folder is created if it does not exist.
+   * @throws IOException if the folder could not be created
+   */
+  public static FilePath cacheDir() throws IOException
+  {
+    String baseStr;
+
+    if (SystemUtils.IS_OS_WINDOWS)
+      baseStr = System.getenv("LOCALAPPDATA");
+    else if (SystemUtils.IS_OS_MAC)
+      baseStr = homeDir().resolve("Library").resolve("Caches").toString();
+    else
+      baseStr = System.getenv("XDG_CACHE_HOME");
+
+    FilePath baseDir = safeStr(baseStr).isBlank() ? homeDir().resolve(".cache") : new FilePath(baseStr),
+             dir = baseDir.resolve(appTitle);
+
+    if (dir.exists() == false)
+      dir.createDirectories();
+
+    return dir;
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
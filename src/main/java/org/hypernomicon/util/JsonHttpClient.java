@@ -18,7 +18,6 @@
 package org.hypernomicon.util;
 
 import static org.hypernomicon.util.Util.*;
-import static org.hypernomicon.util.json.JsonObj.*;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -32,13 +31,14 @@ import static java.nio.charset.StandardCharsets.*;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import org.hypernomicon.util.json.JsonArray;
@@ -46,12 +46,15 @@ import org.hypernomicon.util.json.JsonObj;
 
 public class JsonHttpClient
 {
+  private static final JsonResponseCache responseCache = new JsonResponseCache();
+
   private List<Header> headers;
   private int statusCode;
   private String reasonPhrase = "", lastUrl = "";
   private JsonArray jsonArray = null;
   private JsonObj jsonObj = null;
   private Exception lastException = null;
+  private String cacheUrl = null;
 
   public int getStatusCode()       { return statusCode; }
   public List<Header> getHeaders() { return headers; }
@@ -99,6 +102,64 @@ public class JsonHttpClient
     }
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Same as {@link #getObjAsync}, except that a fresh enough response in the response cache is used instead
+   * of going over the network, and a response that does have to be requested is added to the cache.
+   * A cached "not found" response is passed to {@code failHndlr} as an {@link HttpResponseException}.
+   */
+  public static void getObjAsyncCached(String url, AsyncHttpClient httpClient, Consumer<JsonObj> successHndlr, Consumer<Exception> failHndlr)
+  {
+    JsonResponseCache.Entry entry = responseCache.get(url);
+    JsonObj jsonObj = null;
+
+    if ((entry != null) && (entry.statusCode < 400))
+    {
+      try { jsonObj = new JsonObj((JSONObject) new JSONParser().parse(entry.body)); }
+      catch (ParseException | ClassCastException e) { entry = null; }
+    }
+
+    if (entry == null)
+    {
+      try
+      {
+        JsonHttpClient jsonClient = new JsonHttpClient();
+        jsonClient.cacheUrl = url;
+        jsonClient.doAsyncRequest(new HttpGet(url), httpClient, client -> runInFXThread(() -> successHndlr.accept(client.jsonObj)), failHndlr);
+      }
+      catch (IllegalArgumentException e)
+      {
+        if (failHndlr != null)
+          failHndlr.accept(e);
+      }
+
+      return;
+    }
+
+    httpClient.stop(); // Starting a request normally stops the previous one
+
+    int statusCode = entry.statusCode;
+    JsonObj finalJsonObj = jsonObj;
+
+    runInFXThread(() ->
+    {
+      if (statusCode >= 400)
+      {
+        if (failHndlr != null)
+          failHndlr.accept(new HttpResponseException(statusCode, "Response from " + url + ": Not found"));
+      }
+      else
+        successHndlr.accept(finalJsonObj);
+    });
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void saveResponseCache() { responseCache.save(); }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -150,10 +211,7 @@ public class JsonHttpClient
     lastUrl = request.getURI().toURL().toString();
     ResponseHandler<Boolean> responseHndlr = response -> handleResponse(response, null, null);
 
-    try (CloseableHttpClient httpclient = AsyncHttpClient.createClient())
-    {
-      rc = httpclient.execute(request, responseHndlr);
-    }
+    rc = AsyncHttpClient.execute(request, responseHndlr);
 
     if (lastException instanceof ParseException)
     {
@@ -199,7 +257,18 @@ public class JsonHttpClient
     {
       try (InputStream is = entity.getContent())
       {
-        Object obj = jsonParser.parse(new InputStreamReader(is, UTF_8));
+        Object obj;
+
+        if (cacheUrl == null)
+          obj = new JSONParser().parse(new InputStreamReader(is, UTF_8));
+        else
+        {
+          String body = new String(is.readAllBytes(), UTF_8);
+          obj = new JSONParser().parse(body);
+
+          if ((obj instanceof JSONObject) && (statusCode < 400))
+            responseCache.put(cacheUrl, statusCode, body, response.getAllHeaders());
+        }
 
         if (obj instanceof JSONObject)
         {
@@ -232,6 +301,9 @@ public class JsonHttpClient
 
     if (statusCode >= 400)
     {
+      if ((cacheUrl != null) && (statusCode == HttpStatus.SC_NOT_FOUND))
+        responseCache.put(cacheUrl, statusCode, "", response.getAllHeaders());
+
       if (failHndlr != null)
         runInFXThread(() -> failHndlr.accept(new HttpResponseException(statusCode, "Response from " + lastUrl + ": " + reasonPhrase)));
 
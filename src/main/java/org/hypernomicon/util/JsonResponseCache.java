@@ -0,0 +1,303 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.util;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hypernomicon.util.DesktopUtil.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.client.utils.DateUtils;
+
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Keeps the bodies of JSON responses from bibliographic lookup services, keyed by request URL, so that
+ * repeating a lookup doesn't have to go over the network. "Not found" responses are remembered as
+ * well, for a shorter time.
+ * <p>
+ * How long a response is kept is taken from its Cache-Control or Expires header, if it has one;
+ * responses marked no-store or no-cache are not kept at all. The least recently used responses are
+ * dropped once the total size reaches a fixed limit. The cache is saved in the per-user cache folder.
+ */
+final class JsonResponseCache
+{
+
+//---------------------------------------------------------------------------
+
+  static final class Entry
+  {
+    private final long expiresAt;
+    final int statusCode;
+    final String body;
+
+    private Entry(long expiresAt, int statusCode, String body)
+    {
+      this.expiresAt = expiresAt;
+      this.statusCode = statusCode;
+      this.body = body;
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int FILE_VERSION = 1;
+  private static final long MAX_TOTAL_CHARS = 16L * 1024L * 1024L,
+                            DEFAULT_FRESHNESS_MS = 7L * 24L * 60L * 60L * 1000L,
+                            DEFAULT_NOT_FOUND_FRESHNESS_MS = 24L * 60L * 60L * 1000L;
+
+  private static final String FILE_NAME = "json-responses.dat";
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalChars = 0L;
+  private boolean loaded = false, dirty = false;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static String key(String url) { return url.toLowerCase(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * @return The cached response, or null if there is none or it has expired
+   */
+  synchronized Entry get(String url)
+  {
+    loadIfNeeded();
+
+    String key = key(url);
+    Entry entry = entries.get(key);
+    if (entry == null) return null;
+
+    if (entry.expiresAt > System.currentTimeMillis())
+      return entry;
+
+    remove(key);
+    return null;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  synchronized void put(String url, int statusCode, String body, Header[] headers)
+  {
+    long freshnessMS = freshnessMS(headers, statusCode >= 400 ? DEFAULT_NOT_FOUND_FRESHNESS_MS : DEFAULT_FRESHNESS_MS);
+    if ((freshnessMS <= 0) || (body.length() > (MAX_TOTAL_CHARS / 4))) return;
+
+    loadIfNeeded();
+
+    String key = key(url);
+    remove(key);
+
+    add(key, new Entry(System.currentTimeMillis() + freshnessMS, statusCode, body));
+    dirty = true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void add(String key, Entry entry)
+  {
+    entries.put(key, entry);
+    totalChars += entry.body.length();
+
+    Iterator<Entry> it = entries.values().iterator();
+
+    while ((totalChars > MAX_TOTAL_CHARS) && it.hasNext())
+    {
+      totalChars -= it.next().body.length();
+      it.remove();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void remove(String key)
+  {
+    Entry entry = entries.remove(key);
+    if (entry == null) return;
+
+    totalChars -= entry.body.length();
+    dirty = true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Determines how long a response can be reused, based on its Cache-Control and Expires headers.
+   * @return Zero if the response should not be stored; {@code defaultMS} if the headers don't say
+   */
+  private static long freshnessMS(Header[] headers, long defaultMS)
+  {
+    Long expiresMS = null;
+
+    for (Header header : headers)
+    {
+      switch (HttpHeader.get(header))
+      {
+        case Cache_Control :
+
+          for (String directive : header.getValue().toLowerCase().split(","))
+          {
+            directive = directive.trim();
+
+            if (directive.equals("no-store") || directive.equals("no-cache"))
+              return 0L;
+
+            if (directive.startsWith("max-age="))
+              return Math.max(0L, Util.parseLong(directive.substring(8).trim(), 0L) * 1000L);
+          }
+
+          break;
+
+        case Expires :
+
+          Date date = DateUtils.parseDate(header.getValue());
+          expiresMS = date == null ? 0L : (date.getTime() - System.currentTimeMillis());
+          break;
+
+        default : break;
+      }
+    }
+
+    return expiresMS == null ? defaultMS : Math.max(0L, expiresMS);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void loadIfNeeded()
+  {
+    if (loaded) return;
+    loaded = true;
+
+    try
+    {
+      FilePath filePath = cacheDir().resolve(FILE_NAME);
+      if (filePath.exists() == false) return;
+
+      long fileSize = filePath.size();
+
+      try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(filePath.toPath()))))
+      {
+        if (dis.readInt() != FILE_VERSION) return;
+
+        long now = System.currentTimeMillis();
+
+        for (int ndx = dis.readInt(); ndx > 0; ndx--)
+        {
+          String key = dis.readUTF();
+          long expiresAt = dis.readLong();
+          int statusCode = dis.readInt(),
+              length = dis.readInt();
+
+          if ((length < 0) || (length > fileSize) || (length > MAX_TOTAL_CHARS))
+            throw new IOException("Response cache file is corrupt");
+
+          byte[] bodyBytes = new byte[length];
+          dis.readFully(bodyBytes);
+
+          if (expiresAt > now)
+            add(key, new Entry(expiresAt, statusCode, new String(bodyBytes, UTF_8)));
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      entries.clear(); // The cache is only an optimization; start over if it can't be read
+      totalChars = 0L;
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Writes the cache to a temporary file, which then replaces the cache file, so that a save
+   * that is cut short doesn't leave a partly written cache behind.
+   */
+  synchronized void save()
+  {
+    if (dirty == false) return;
+
+    FilePath tempFilePath = null;
+
+    try
+    {
+      FilePath filePath = cacheDir().resolve(FILE_NAME);
+      tempFilePath = cacheDir().resolve(FILE_NAME + ".tmp");
+
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFilePath.toPath()))))
+      {
+        dos.writeInt(FILE_VERSION);
+        dos.writeInt(entries.size());
+
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet())
+        {
+          Entry entry = mapEntry.getValue();
+          byte[] bodyBytes = entry.body.getBytes(UTF_8);
+
+          dos.writeUTF(mapEntry.getKey());
+          dos.writeLong(entry.expiresAt);
+          dos.writeInt(entry.statusCode);
+          dos.writeInt(bodyBytes.length);
+          dos.write(bodyBytes);
+        }
+      }
+
+      try
+      {
+        Files.move(tempFilePath.toPath(), filePath.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+        Files.move(tempFilePath.toPath(), filePath.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      dirty = false;
+    }
+    catch (IOException e)
+    {
+      if (tempFilePath != null)
+        tempFilePath.deleteReturnsBoolean(true);
+      e.printStackTrace();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
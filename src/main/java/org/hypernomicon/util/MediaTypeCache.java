@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.util;
+
+import static org.hypernomicon.util.DesktopUtil.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.tika.mime.MediaType;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Remembers the media type detected for each file, along with the file's size and modification
+ * time when it was detected, so that a file is only read again by the detector if it has changed.
+ * The most recently used entries are kept, up to a fixed limit, and are saved in the per-user cache
+ * folder so that they survive restarts.
+ */
+final class MediaTypeCache
+{
+
+//---------------------------------------------------------------------------
+
+  private static final class Entry
+  {
+    private final long size, modTime;
+    private final MediaType mediaType;
+
+    private Entry(long size, long modTime, MediaType mediaType)
+    {
+      this.size = size;
+      this.modTime = modTime;
+      this.mediaType = mediaType;
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  private static final int MAX_ENTRIES = 50000, FILE_VERSION = 1;
+  private static final String FILE_NAME = "media-types.dat";
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) // Keyed by normalized absolute path
+  {
+    @Override protected boolean removeEldestEntry(Map.Entry<String, MediaTypeCache.Entry> eldest) { return size() > MAX_ENTRIES; }
+  };
+
+  private boolean loaded = false, dirty = false;
+  private long hits = 0L, misses = 0L, detectNanos = 0L;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the cached media type for the file if its size and modification time have not changed;
+   * otherwise calls {@code detector} and caches the result. Can be called from any thread.
+   * @return The media type, or null if the file's attributes could not be read
+   */
+  MediaType get(FilePath filePath, Function<FilePath, MediaType> detector)
+  {
+    BasicFileAttributes attrs;
+
+    try { attrs = Files.readAttributes(filePath.toPath(), BasicFileAttributes.class); }
+    catch (IOException e) { return null; }
+
+    if (attrs.isRegularFile() == false) return null;
+
+    long size = attrs.size(), modTime = attrs.lastModifiedTime().toMillis();
+    String key = key(filePath);
+
+    synchronized (this)
+    {
+      loadIfNeeded();
+
+      Entry entry = entries.get(key);
+
+      if ((entry != null) && (entry.size == size) && (entry.modTime == modTime))
+      {
+        hits++;
+        return entry.mediaType;
+      }
+    }
+
+    long startTime = System.nanoTime();
+    MediaType mediaType = detector.apply(filePath);
+    long elapsed = System.nanoTime() - startTime;
+
+    synchronized (this)
+    {
+      misses++;
+      detectNanos += elapsed;
+
+      entries.put(key, new Entry(size, modTime, mediaType));
+      dirty = true;
+    }
+
+    return mediaType;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Uses the path as a string rather than the FilePath itself, because hashing a FilePath resolves it
+   * against the file system, which would be one system call per entry when the cache is loaded.
+   */
+  private static String key(FilePath filePath) { return filePath.toPath().toAbsolutePath().normalize().toString(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Describes how often the cache was used since the program started, and roughly how much
+   * detection time it saved, estimated from the average time taken by the detections that did run.
+   */
+  synchronized String getStats()
+  {
+    long total = hits + misses;
+    if (total == 0) return "Media type cache: no lookups";
+
+    long savedMS = misses == 0 ? 0L : (hits * (detectNanos / misses)) / 1000000L;
+
+    return "Media type cache: " + hits + " hits, " + misses + " misses (" + (100L * hits / total) + "% hit ratio); about " + savedMS + " ms of detection saved";
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void loadIfNeeded()
+  {
+    if (loaded) return;
+    loaded = true;
+
+    try
+    {
+      FilePath filePath = cacheDir().resolve(FILE_NAME);
+      if (filePath.exists() == false) return;
+
+      try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(filePath.toPath()))))
+      {
+        if (dis.readInt() != FILE_VERSION) return;
+
+        for (int ndx = dis.readInt(); ndx > 0; ndx--)
+        {
+          String key = dis.readUTF();
+          long size = dis.readLong(), modTime = dis.readLong();
+          MediaType mediaType = MediaType.parse(dis.readUTF());
+
+          if (mediaType != null)
+            entries.put(key, new Entry(size, modTime, mediaType));
+        }
+      }
+    }
+    catch (IOException e)
+    {
+      entries.clear(); // The cache is only an optimization; start over if it can't be read
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Writes the cache to a temporary file, which then replaces the cache file, so that a save
+   * that is cut short doesn't leave a partly written cache behind.
+   */
+  synchronized void save()
+  {
+    if (dirty == false) return;
+
+    List<Map.Entry<String, Entry>> list = new ArrayList<>(entries.entrySet());
+    list.removeIf(mapEntry -> mapEntry.getValue().mediaType == null);
+
+    FilePath tempFilePath = null;
+
+    try
+    {
+      FilePath filePath = cacheDir().resolve(FILE_NAME);
+      tempFilePath = cacheDir().resolve(FILE_NAME + ".tmp");
+
+      try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFilePath.toPath()))))
+      {
+        dos.writeInt(FILE_VERSION);
+        dos.writeInt(list.size());
+
+        for (Map.Entry<String, Entry> mapEntry : list)
+        {
+          Entry entry = mapEntry.getValue();
+
+          dos.writeUTF(mapEntry.getKey());
+          dos.writeLong(entry.size);
+          dos.writeLong(entry.modTime);
+          dos.writeUTF(entry.mediaType.toString());
+        }
+      }
+
+      try
+      {
+        Files.move(tempFilePath.toPath(), filePath.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e)
+      {
+        Files.move(tempFilePath.toPath(), filePath.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      dirty = false;
+    }
+    catch (IOException e)
+    {
+      if (tempFilePath != null)
+        tempFilePath.deleteReturnsBoolean(true);
+
+      e.printStackTrace();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
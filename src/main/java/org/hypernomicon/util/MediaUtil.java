@@ -17,6 +17,7 @@
 
 package org.hypernomicon.util;
 
+import static org.hypernomicon.App.*;
 import static org.hypernomicon.model.records.RecordType.*;
 import static org.hypernomicon.util.UIUtil.*;
 import static org.hypernomicon.util.UIUtil.MessageDialogType.*;
@@ -24,6 +25,14 @@ import static org.hypernomicon.util.Util.*;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.io.TikaInputStream;
@@ -32,6 +41,7 @@ import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MimeTypeException;
 import org.hypernomicon.App;
+import org.hypernomicon.HyperTask.HyperThread;
 import org.hypernomicon.model.records.HDT_MiscFile;
 import org.hypernomicon.model.records.HDT_Record;
 import org.hypernomicon.model.records.RecordType;
@@ -48,6 +58,16 @@ public final class MediaUtil
 //---------------------------------------------------------------------------
 
   private static TikaConfig tikaConfig;
+  private static final MediaTypeCache mediaTypeCache = new MediaTypeCache();
+
+  private static final int MAX_DETECTION_THREADS = 4;
+
+  private static final ExecutorService detectionExecutor = Executors.newFixedThreadPool(MAX_DETECTION_THREADS, runnable ->
+  {
+    HyperThread thread = new HyperThread(runnable, "MediaTypeDetection");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   private MediaUtil() { throw new UnsupportedOperationException(); }
 
@@ -65,6 +85,58 @@ public final class MediaUtil
   {
     if (FilePath.isEmpty(filePath)) return MediaType.OCTET_STREAM;
 
+    MediaType mediaType = mediaTypeCache.get(filePath, MediaUtil::detectMediaType);
+
+    return mediaType == null ? detectMediaType(filePath) : mediaType;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Gets the media types of many files at once, detecting them in parallel where they are not already cached.
+   * Detection reads the files, so it is done on a small pool of its own rather than the common fork-join pool.
+   */
+  public static Map<FilePath, MediaType> getMediaTypes(Collection<FilePath> filePaths)
+  {
+    Map<FilePath, MediaType> map = new ConcurrentHashMap<>();
+    List<Callable<Void>> tasks = new ArrayList<>();
+
+    filePaths.stream().filter(filePath -> FilePath.isEmpty(filePath) == false)
+                      .distinct()
+                      .forEach(filePath -> tasks.add(() ->
+                      {
+                        map.put(filePath, getMediaType(filePath));
+                        return null;
+                      }));
+    try
+    {
+      detectionExecutor.invokeAll(tasks);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+
+    return map;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void saveMediaTypeCache()
+  {
+    mediaTypeCache.save();
+
+    if (app.debugging)
+      System.out.println(mediaTypeCache.getStats());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static MediaType detectMediaType(FilePath filePath)
+  {
     Metadata metadata = new Metadata();
     metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, filePath.toString());
 
@@ -78,6 +150,30 @@ public final class MediaUtil
     }
   }
 
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Guesses the media type from the file name alone, without opening the file.
+   * Less accurate than {@link #getMediaType getMediaType} but fast enough to call on the FX thread.
+   */
+  public static MediaType getMediaTypeFromName(FilePath filePath)
+  {
+    if (FilePath.isEmpty(filePath)) return MediaType.OCTET_STREAM;
+
+    Metadata metadata = new Metadata();
+    metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, filePath.toString());
+
+    try
+    {
+      return tikaConfig.getDetector().detect(null, metadata);
+    }
+    catch (IOException e)
+    {
+      return MediaType.OCTET_STREAM;
+    }
+  }
+
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
@@ -46,6 +46,8 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -143,9 +145,17 @@ public class FilePath implements Comparable<FilePath>
   {
     if (noExistOK && (exists() == false)) return;
 
-    boolean startWatcher = folderTreeWatcher.stop();
+    boolean startWatcher = folderTreeWatcher.stop(),
+            directory = isDirectory();
 
-    Files.delete(toPath());
+    try
+    {
+      Files.delete(toPath());
+    }
+    finally
+    {
+      InnerFilePath.invalidateKeys(toPath(), directory);
+    }
 
     fileManagerDlg.setNeedRefresh();
 
@@ -209,7 +219,8 @@ public class FilePath implements Comparable<FilePath>
     if (equals(destFilePath))
       throw new IOException("Source file is the same as the destination file.");
 
-    boolean startWatcher = folderTreeWatcher.stop();
+    boolean startWatcher = folderTreeWatcher.stop(),
+            directory = isDirectory();
 
     try
     {
@@ -234,6 +245,9 @@ public class FilePath implements Comparable<FilePath>
     }
     finally
     {
+      if (move) InnerFilePath.invalidateKeys(toPath(), directory);
+      InnerFilePath.invalidateKeys(destFilePath.toPath(), directory);
+
       if (startWatcher)
         folderTreeWatcher.createNewWatcherAndStart();
 
@@ -312,6 +326,7 @@ public class FilePath implements Comparable<FilePath>
     FilePath filePath = getDirOnly();
 
     fileManagerDlg.setNeedRefresh();
+    InnerFilePath.invalidateKeys(filePath.toPath(), true);
 
     if (singleCall && SystemUtils.IS_OS_WINDOWS)
     {
@@ -354,6 +369,8 @@ public class FilePath implements Comparable<FilePath>
     FilePath srcFilePath = getDirOnly();
 
     fileManagerDlg.setNeedRefresh();
+    InnerFilePath.invalidateKeys(srcFilePath .toPath(), true);
+    InnerFilePath.invalidateKeys(destFilePath.toPath(), true);
 
     if (SystemUtils.IS_OS_WINDOWS)
     {
@@ -500,13 +517,41 @@ public class FilePath implements Comparable<FilePath>
 
   public boolean isSubpath(FilePath subFilePath)
   {
-    while (equals(subFilePath) == false)
+    if (isEmpty(subFilePath)) return false;
+
+    if (subFilePath.innerVal.getKey().startsWith(innerVal.getKey())) return true;
+
+    // The keys are real paths, so a symbolic link under this path has a key somewhere else
+
+    return subFilePath.innerVal.getNormalizedPath().startsWith(innerVal.getNormalizedPath());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Returns the names of the path segments leading from this path down to {@code subFilePath},
+   * or null if {@code subFilePath} is not under this path. Returns an empty list if they are the same.
+   */
+  public List<String> getSubpathSegments(FilePath subFilePath)
+  {
+    if (isSubpath(subFilePath) == false) return null;
+
+    List<String> segments = new ArrayList<>();
+
+    Path relative = subFilePath.innerVal.getKey().startsWith(innerVal.getKey()) ?
+      innerVal.getKey().relativize(subFilePath.innerVal.getKey())
+    :
+      innerVal.getNormalizedPath().relativize(subFilePath.innerVal.getNormalizedPath());
+
+    for (Path segment : relative)
     {
-      subFilePath = subFilePath.getParent();
-      if (isEmpty(subFilePath)) return false;
+      String segmentStr = segment.toString();
+      if (segmentStr.isEmpty() == false)
+        segments.add(segmentStr);
     }
 
-    return true;
+    return segments;
   }
 
 //---------------------------------------------------------------------------
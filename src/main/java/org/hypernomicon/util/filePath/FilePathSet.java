@@ -26,71 +26,43 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 
-import org.hypernomicon.util.FilenameMap;
-
 public class FilePathSet implements Set<FilePath>
 {
-  private final FilenameMap<Set<FilePath>> nameToPaths = new FilenameMap<>();
+  private final Set<FilePath> paths = ConcurrentHashMap.newKeySet();
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  @Override public void clear()                         { nameToPaths.clear(); }
-  @Override public Iterator<FilePath> iterator()        { return new FilePathIterator(nameToPaths); }
-  @Override public boolean isEmpty()                    { return size() == 0; }
+  @Override public void clear()                         { paths.clear(); }
+  @Override public Iterator<FilePath> iterator()        { return paths.iterator(); }
+  @Override public boolean isEmpty()                    { return paths.isEmpty(); }
   @Override public boolean retainAll(Collection<?> c)   { return removeIf(Predicate.not(c::contains)); }
-  @Override public int size()                           { return nameToPaths.values().stream().map(Set::size).reduce(0, Math::addExact); }
+  @Override public int size()                           { return paths.size(); }
   @Override public boolean containsAll(Collection<?> c) { return c.stream().allMatch(this::contains); }
+  @Override public Object[] toArray()                   { return paths.toArray(); }
+  @Override public <T> T[] toArray(T[] a)               { return paths.toArray(a); }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  @Override public boolean contains(Object o)
-  {
-    FilePath filePath;
-
-    if      (o instanceof String)   filePath = new FilePath((String)o);
-    else if (o instanceof Path)     filePath = new FilePath((Path)o);
-    else if (o instanceof File)     filePath = new FilePath((File)o);
-    else if (o instanceof FilePath) filePath = (FilePath)o;
-    else return false;
-
-    Set<FilePath> set = nameToPaths.get(filePath.getNameOnly().toString());
-    if (set == null) return false;
-
-    return set.stream().anyMatch(filePath::equals);
-  }
-
-//---------------------------------------------------------------------------
-//---------------------------------------------------------------------------
-
-  @Override public Object[] toArray()
+  private static FilePath toFilePath(Object o)
   {
-    Object[] array = new Object[size()];
-
-    int ndx = 0;
-    for (Set<FilePath> pathSet : nameToPaths.values())
-      for (FilePath filePath : pathSet)
-        array[ndx++] = filePath;
+    if      (o instanceof String)   return new FilePath((String)o);
+    else if (o instanceof Path)     return new FilePath((Path)o);
+    else if (o instanceof File)     return new FilePath((File)o);
+    else if (o instanceof FilePath) return (FilePath)o;
 
-    return array;
+    return null;
   }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
 
-  @SuppressWarnings("unchecked")
-  @Override public <T> T[] toArray(T[] a)
+  @Override public boolean contains(Object o)
   {
-    if (a.length < size())
-      a = (T[]) new FilePath[size()];
+    FilePath filePath = toFilePath(o);
 
-    int ndx = 0;
-    for (Set<FilePath> pathSet : nameToPaths.values())
-      for (FilePath filePath : pathSet)
-        a[ndx++] = (T) filePath;
-
-    return a;
+    return (FilePath.isEmpty(filePath) == false) && paths.contains(filePath);
   }
 
 //---------------------------------------------------------------------------
@@ -101,9 +73,7 @@ public class FilePathSet implements Set<FilePath>
     if (FilePath.isEmpty(filePath))
       throw new UnsupportedOperationException("Unable to add null path to FilePathSet: That operation is not supported.");
 
-    if (contains(filePath)) return false;
-
-    return nameToPaths.computeIfAbsent(filePath.getNameOnly().toString(), fileNameStr -> ConcurrentHashMap.newKeySet()).add(filePath);
+    return paths.add(filePath);
   }
 
 //---------------------------------------------------------------------------
@@ -113,23 +83,7 @@ public class FilePathSet implements Set<FilePath>
   {
     if ((o instanceof FilePath) == false) return false;
 
-    FilePath filePath = (FilePath)o;
-    if (contains(filePath) == false) return false;
-
-    String nameStr = filePath.getNameOnly().toString();
-
-    Set<FilePath> set = nameToPaths.get(nameStr);
-
-    if (set == null) return false;
-
-    for (FilePath otherPath : set)
-      if (otherPath.equals(filePath))
-      {
-        set.remove(otherPath);
-        return true;
-      }
-
-    return false;
+    return paths.remove(o);
   }
 
 //---------------------------------------------------------------------------
@@ -17,19 +17,31 @@
 
 package org.hypernomicon.util.filePath;
 
-import static org.hypernomicon.util.Util.*;
-
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.IOError;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 class InnerFilePath
 {
   private String pathStr = null;
   private File file = null;
   private Path path = null;
+  private volatile Path key = null; // Only set once the path has been found to exist
+
+  // Absolute, normalized path to identity key, for paths that existed when the key was computed. Entries are
+  // removed when the file system is changed through FilePath; the least recently used ones are dropped beyond the limit.
+
+  private static final int MAX_CACHED_KEYS = 200000;
+
+  private static final Map<Path, Path> keyCache = new LinkedHashMap<>(16, 0.75f, true) // Guarded by itself
+  {
+    @Override protected boolean removeEldestEntry(Map.Entry<Path, Path> eldest) { return size() > MAX_CACHED_KEYS; }
+  };
 
 //---------------------------------------------------------------------------
 
@@ -41,7 +53,7 @@ class InnerFilePath
 //---------------------------------------------------------------------------
 
   @Override public String toString() { return getPathStr(); }
-  @Override public int hashCode()    { return getPath().hashCode(); }
+  @Override public int hashCode()    { return getKey().hashCode(); }
 
 //---------------------------------------------------------------------------
 //---------------------------------------------------------------------------
@@ -87,17 +99,117 @@ class InnerFilePath
 
   @Override public boolean equals(Object other)
   {
+    if (this == other) return true;
     if ((other instanceof InnerFilePath) == false) return false;
 
-    InnerFilePath otherFilePath = (InnerFilePath)other;
+    return getKey().equals(((InnerFilePath)other).getKey());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * The identity key is the real path (symbolic links resolved, and on case-insensitive file systems,
+   * the actual case) of the longest part of the path that exists, with any nonexistent remainder
+   * appended.
+   * <p>
+   * Once the path has been found to exist, this object keeps its key, so equals and hashCode do not touch the
+   * file system again. The shared cache entry is dropped when the file or a folder above it is moved, renamed,
+   * or deleted through FilePath, so other objects for the same path look it up again; a change made outside the
+   * program (for example, replacing a folder with a link) is not noticed by an object that already has its key.
+   * The key of a path that does not exist is computed again each time, so it becomes the real path once the
+   * file is created.
+   */
+  Path getKey()
+  {
+    Path curKey = key;
+    if (curKey != null) return curKey;
 
-    try { return Files.isSameFile(getPath(), otherFilePath.getPath()); }
-    catch (IOException e) { noOp(); }
+    Path absPath;
 
-    try { return getFile().getCanonicalFile().equals(otherFilePath.getFile().getCanonicalFile()); }
-    catch (IOException e) { noOp(); }
+    try { absPath = getPath().toAbsolutePath().normalize(); }
+    catch (IOError | SecurityException e) { return key = getPath().normalize(); }
 
-    return getPath().normalize().equals(otherFilePath.getPath().normalize());
+    curKey = existingKey(absPath);
+    if (curKey != null) return key = curKey;
+
+    Path parent = absPath.getParent();
+    return parent == null ? absPath : keyFor(parent).resolve(absPath.getFileName());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Absolute and normalized, but with symbolic links left as they are
+   */
+  Path getNormalizedPath()
+  {
+    try { return getPath().toAbsolutePath().normalize(); }
+    catch (IOError | SecurityException e) { return getPath().normalize(); }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static Path keyFor(Path absPath)
+  {
+    Path existingKey = existingKey(absPath);
+    if (existingKey != null) return existingKey;
+
+    Path parent = absPath.getParent();
+    return parent == null ? absPath : keyFor(parent).resolve(absPath.getFileName());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * @return The real path, or null if the path does not exist
+   */
+  private static Path existingKey(Path absPath)
+  {
+    synchronized (keyCache)
+    {
+      Path cached = keyCache.get(absPath);
+      if (cached != null) return cached;
+    }
+
+    Path realPath;
+
+    try { realPath = absPath.toRealPath(); }
+    catch (IOException | SecurityException e) { return null; }
+
+    synchronized (keyCache) { keyCache.put(absPath, realPath); }
+
+    return realPath;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Removes the cached identity key for the given path, and if it is a directory, for everything under it.
+   * This should be called after the file or directory is moved, renamed, or deleted.
+   */
+  static void invalidateKeys(Path path, boolean isDirectory)
+  {
+    Path absPath;
+
+    try { absPath = path.toAbsolutePath().normalize(); }
+    catch (IOError | InvalidPathException | SecurityException e)
+    {
+      synchronized (keyCache) { keyCache.clear(); }
+      return;
+    }
+
+    synchronized (keyCache)
+    {
+      if (isDirectory)
+        keyCache.keySet().removeIf(cachedPath -> cachedPath.startsWith(absPath));
+      else
+        keyCache.remove(absPath);
+    }
   }
 
 //---------------------------------------------------------------------------
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.util.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.BiConsumer;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Reads a JSON document of the form <code>{"name1": [{...}, {...}], "name2": [...]}</code> one array element
+ * at a time, without building the whole document in memory. Each object in one of the top-level arrays
+ * is built on its own and passed to the handler as soon as its closing brace has been read.
+ * <p>
+ * Top-level values that are not arrays, and array elements that are not objects, are skipped.
+ */
+public final class JsonStreamReader implements ContentHandler
+{
+
+//---------------------------------------------------------------------------
+
+  private static final int ROOT_DEPTH = 1, ARRAY_DEPTH = 2, ELEMENT_DEPTH = 3;
+
+  private final BiConsumer<String, JsonObj> hndlr;
+  private final Deque<Object> containers = new ArrayDeque<>(); // Objects and arrays inside the element being read
+  private final Deque<String> keys = new ArrayDeque<>();
+  private String arrayName = "";
+  private int depth = 0;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private JsonStreamReader(BiConsumer<String, JsonObj> hndlr) { this.hndlr = hndlr; }
+
+  /**
+   * @param hndlr Receives the name of the top-level array and the element
+   */
+  public static void readArrayElements(Reader in, BiConsumer<String, JsonObj> hndlr) throws IOException, ParseException
+  {
+    new JSONParser().parse(in, new JsonStreamReader(hndlr));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @Override public void startJSON() { }
+  @Override public void endJSON  () { }
+
+  @Override public boolean startObject()
+  {
+    if (++depth < ELEMENT_DEPTH) return true;
+
+    startContainer(new JSONObject());
+    return true;
+  }
+
+  @Override public boolean endObject()
+  {
+    if (depth >= ELEMENT_DEPTH)
+    {
+      Object obj = containers.pop();
+
+      if ((depth == ELEMENT_DEPTH) && (obj instanceof JSONObject))
+        hndlr.accept(arrayName, new JsonObj((JSONObject) obj));
+    }
+
+    depth--;
+    return true;
+  }
+
+  @Override public boolean startObjectEntry(String key)
+  {
+    if (depth == ROOT_DEPTH)
+      arrayName = key;
+    else
+      keys.push(key);
+
+    return true;
+  }
+
+  @Override public boolean endObjectEntry()
+  {
+    if (depth > ROOT_DEPTH)
+      keys.pop();
+
+    return true;
+  }
+
+  @Override public boolean startArray()
+  {
+    if (++depth < ELEMENT_DEPTH) return true;
+
+    startContainer(new JSONArray());
+    return true;
+  }
+
+  @Override public boolean endArray()
+  {
+    if (depth >= ELEMENT_DEPTH)
+      containers.pop();
+
+    depth--;
+    return true;
+  }
+
+  @Override public boolean primitive(Object value)
+  {
+    if (depth >= ELEMENT_DEPTH)
+      addToContainer(value);
+
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void startContainer(Object container)
+  {
+    if (depth > ELEMENT_DEPTH)
+      addToContainer(container);
+
+    containers.push(container);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  @SuppressWarnings("unchecked")
+  private void addToContainer(Object value)
+  {
+    Object container = containers.peek();
+
+    if (container instanceof JSONObject)
+      ((JSONObject) container).put(keys.peek(), value);
+    else
+      ((JSONArray) container).add(value);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
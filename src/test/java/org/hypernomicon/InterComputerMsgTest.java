@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon;
+
+import static org.hypernomicon.App.*;
+import static org.hypernomicon.FolderTreeWatcher.*;
+import static org.hypernomicon.model.HyperDB.*;
+import static org.hypernomicon.model.HyperDB.HDB_MessageType.*;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.util.DesktopUtil;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Measures the round-trip time of an echo request between two processes sharing a database folder.
+ * <p>
+ * A second JVM is started as the responder. It runs the real {@link FolderTreeWatcher} on an in-memory
+ * database (see {@link HeadlessDB}) rooted at a temporary folder, and answers requests the way it would
+ * for another computer. This process sends echo requests and waits for the replies the same way the
+ * locked-database dialog does, using a WatchService with the same fallback poll. Each process is given
+ * its own computer name, since messages from the same computer are ignored.
+ * <p>
+ * The optional argument is the number of round trips to time.
+ */
+public final class InterComputerMsgTest
+{
+
+//---------------------------------------------------------------------------
+
+  private static final String SENDER_NAME = "InterComputerMsgTest-sender", RESPONDER_NAME = "InterComputerMsgTest-responder",
+                              RESPONDER_ARG = "responder", READY = "ready";
+
+  private static final long TIMEOUT_MS = 10000L;
+
+  private InterComputerMsgTest() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    if ((args.length == 2) && RESPONDER_ARG.equals(args[0]))
+    {
+      runResponder(Paths.get(args[1]));
+      return;
+    }
+
+    int roundTrips = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+    Path rootDir = Files.createTempDirectory("InterComputerMsgTest").toRealPath();
+    Process responder = null;
+
+    try
+    {
+      responder = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                                     "-cp", System.getProperty("java.class.path"),
+                                     InterComputerMsgTest.class.getName(), RESPONDER_ARG, rootDir.toString())
+        .redirectError(ProcessBuilder.Redirect.INHERIT)
+        .start();
+
+      BufferedReader responderOut = new BufferedReader(new InputStreamReader(responder.getInputStream(), UTF_8));
+
+      if (READY.equals(responderOut.readLine()) == false)
+        throw new AssertionError("Failed: responder process did not start");
+
+      HeadlessDB.init(new FilePath(rootDir));
+      setComputerName(SENDER_NAME);
+
+      List<Long> times = new ArrayList<>();
+
+      try (WatchService watchService = FileSystems.getDefault().newWatchService())
+      {
+        rootDir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+
+        roundTrip(watchService); // The first one also waits for the responder's watcher to register the folder
+
+        for (int ndx = 0; ndx < roundTrips; ndx++)
+          times.add(roundTrip(watchService));
+      }
+
+      Collections.sort(times);
+
+      long medianMS = times.get(times.size() / 2);
+
+      System.out.println(String.format("%d round trips: min %d ms, median %d ms, max %d ms", times.size(), times.get(0), medianMS, times.get(times.size() - 1)));
+
+      if (medianMS >= INTER_COMPUTER_MSG_FALLBACK_POLL_MS)
+        throw new AssertionError("Failed: replies were no faster than the " + INTER_COMPUTER_MSG_FALLBACK_POLL_MS + " ms fallback poll");
+
+      System.out.println("Passed: replies are detected through watch events");
+    }
+    finally
+    {
+      if (responder != null)
+      {
+        responder.getOutputStream().close(); // Tells the responder to exit
+        if (responder.waitFor(TIMEOUT_MS, TimeUnit.MILLISECONDS) == false)
+          responder.destroyForcibly();
+      }
+
+      FileUtils.deleteDirectory(rootDir.toFile());
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Sends an echo request and waits until the exchange is complete: the reply has arrived, the request
+   * has been removed, and the responder has removed the reply.
+   *
+   * @return The round-trip time in milliseconds
+   */
+  private static long roundTrip(WatchService watchService) throws IOException, InterruptedException
+  {
+    long startMS = System.currentTimeMillis();
+    boolean gotReply = false;
+
+    new InterComputerMsg(SENDER_NAME, RESPONDER_NAME, hmtEchoRequest).writeToDisk(false);
+
+    while (true)
+    {
+      if (gotReply == false)
+      {
+        InterComputerMsg reply = InterComputerMsg.checkForMessage(db.getResponseMessageFilePath(false));
+
+        if ((reply != null) && (reply.getType() == hmtEchoReply) && reply.getSource().equals(RESPONDER_NAME))
+        {
+          gotReply = true;
+          Files.delete(db.getRequestMessageFilePath(false).toPath());
+        }
+      }
+      else if (db.getResponseMessageFilePath(false).exists() == false)
+        return System.currentTimeMillis() - startMS;
+
+      if ((System.currentTimeMillis() - startMS) > TIMEOUT_MS)
+        throw new AssertionError("Failed: no reply within " + TIMEOUT_MS + " ms");
+
+      WatchKey watchKey = watchService.poll(INTER_COMPUTER_MSG_FALLBACK_POLL_MS, TimeUnit.MILLISECONDS);
+
+      if (watchKey != null)
+      {
+        watchKey.pollEvents();
+        watchKey.reset();
+      }
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Runs the folder tree watcher until standard input is closed
+   */
+  private static void runResponder(Path rootDir) throws Exception
+  {
+    HeadlessDB.init(new FilePath(rootDir));
+    setComputerName(RESPONDER_NAME);
+
+    if (folderTreeWatcher.createNewWatcherAndStart() == false)
+      throw new AssertionError("Failed: watcher did not start");
+
+    System.out.println(READY);
+    System.out.flush();
+
+    while (System.in.read() != -1);
+
+    folderTreeWatcher.stop();
+    System.exit(0);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void setComputerName(String name) throws ReflectiveOperationException
+  {
+    Field field = DesktopUtil.class.getDeclaredField("computerName");
+    field.setAccessible(true);
+    field.set(null, name);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -0,0 +1,941 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.bib;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Local stand-in for the parts of the Zotero and Mendeley web APIs that syncing uses, so that sync
+ * throughput can be measured without a network connection or a real account. Only the JDK and json-simple
+ * are needed to run it.
+ * <p>
+ * The Zotero API is served under {@code /zotero/} and the Mendeley API under {@code /mendeley/}. To point
+ * the application at it, start it with:
+ * <pre>
+ *   -Dhypernomicon.zoteroApiUrl=http://localhost:PORT/zotero/
+ *   -Dhypernomicon.mendeleyApiUrl=http://localhost:PORT/mendeley/
+ *   -Dhypernomicon.mendeleyOAuthUrl=http://localhost:PORT/mendeley/oauth/
+ * </pre>
+ * Settings are passed as {@code name=value} arguments; see {@link Settings}.
+ */
+@SuppressWarnings("unchecked")
+public final class MockLibraryServer
+{
+
+//---------------------------------------------------------------------------
+
+  static final class Settings
+  {
+    int port = 8377,
+        itemCount = 1000,          // Zotero items, not counting trash
+        collectionCount = 20,
+        trashCount = 10,
+        deletionCount = 10,        // Items the server reports as having been deleted
+        documentCount = 1000,      // Mendeley documents
+        folderCount = 20,
+        maxRequestsPerSec = 0,     // Requests beyond this in any one second get a 429 with Retry-After; 0 for no limit
+        backoffSec = 0;            // Sent in a Backoff header once more than half of maxRequestsPerSec have been used in a second
+
+    long latencyMS = 0L;           // Added to every response
+
+    static Settings parse(String[] args)
+    {
+      Settings settings = new Settings();
+
+      for (String arg : args)
+      {
+        String[] parts = arg.split("=", 2);
+        if (parts.length < 2) throw new IllegalArgumentException("Expected name=value: " + arg);
+
+        int val = Integer.parseInt(parts[1]);
+
+        switch (parts[0])
+        {
+          case "port"              : settings.port              = val; break;
+          case "items"             : settings.itemCount         = val; break;
+          case "collections"       : settings.collectionCount   = val; break;
+          case "trash"             : settings.trashCount        = val; break;
+          case "deletions"         : settings.deletionCount     = val; break;
+          case "documents"         : settings.documentCount     = val; break;
+          case "folders"           : settings.folderCount       = val; break;
+          case "maxRequestsPerSec" : settings.maxRequestsPerSec = val; break;
+          case "backoffSec"        : settings.backoffSec        = val; break;
+          case "latencyMS"         : settings.latencyMS         = val; break;
+
+          default : throw new IllegalArgumentException("Unknown setting: " + parts[0]);
+        }
+      }
+
+      return settings;
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  static final String USER_ID = "1000";
+
+  private static final int MAX_KEYS_PER_REQUEST = 50, MAX_WRITE_BATCH_SIZE = 50, DEFAULT_LIMIT = 25, MAX_LIMIT = 100, MENDELEY_MAX_LIMIT = 500,
+                           SC_TOO_MANY_REQUESTS = 429;
+
+  private static final String KEY_CHARS = "23456789ABCDEFGHIJKLMNPQRSTUVWXYZ";
+
+  private final Settings settings;
+  private final Random random = new Random(1L);
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool(runnable ->
+  {
+    Thread thread = new Thread(runnable, "MockLibraryServer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Zotero library
+
+  private long libVersion = 0L;
+  private final Map<String, JSONObject> items = new LinkedHashMap<>(), collections = new LinkedHashMap<>();
+  private final Set<String> trash = new LinkedHashSet<>();
+  private final Map<String, Long> deletedItems = new LinkedHashMap<>(), deletedCollections = new LinkedHashMap<>();
+
+  // Mendeley library
+
+  private final Map<String, JSONObject> documents = new LinkedHashMap<>(), trashedDocuments = new LinkedHashMap<>(), folders = new LinkedHashMap<>();
+  private final Map<String, Instant> deletedDocuments = new LinkedHashMap<>();
+
+  private long curSecond = 0L;
+  private int requestsThisSecond = 0, totalRequests = 0, throttledRequests = 0;
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  MockLibraryServer(Settings settings) throws IOException
+  {
+    this.settings = settings;
+
+    generateZoteroLibrary();
+    generateMendeleyLibrary();
+
+    server = HttpServer.create(new InetSocketAddress("localhost", settings.port), 0);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+  }
+
+  void start()    { server.start(); }
+  void stop()     { server.stop(0); executor.shutdownNow(); }
+  int port()      { return server.getAddress().getPort(); }
+  String baseUrl() { return "http://localhost:" + port() + '/'; }
+
+  synchronized int totalRequests()     { return totalRequests; }
+  synchronized int throttledRequests() { return throttledRequests; }
+  synchronized long libVersion()       { return libVersion; }
+  synchronized int itemCount()         { return items.size() - trash.size(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws IOException
+  {
+    MockLibraryServer server = new MockLibraryServer(Settings.parse(args));
+    server.start();
+
+    System.out.println("Mock library server listening at " + server.baseUrl());
+    System.out.println("  Zotero:   " + server.baseUrl() + "zotero/ (user ID " + USER_ID + ')');
+    System.out.println("  Mendeley: " + server.baseUrl() + "mendeley/");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private String newZoteroKey()
+  {
+    StringBuilder sb = new StringBuilder();
+
+    do
+    {
+      sb.setLength(0);
+      for (int ndx = 0; ndx < 8; ndx++)
+        sb.append(KEY_CHARS.charAt(random.nextInt(KEY_CHARS.length())));
+    }
+    while (items.containsKey(sb.toString()) || collections.containsKey(sb.toString()));
+
+    return sb.toString();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void generateZoteroLibrary()
+  {
+    List<String> collKeys = new ArrayList<>();
+
+    for (int ndx = 0; ndx < settings.collectionCount; ndx++)
+    {
+      String key = newZoteroKey();
+
+      JSONObject data = new JSONObject();
+      data.put("key", key);
+      data.put("name", "Collection " + (ndx + 1));
+      data.put("parentCollection", (ndx > 0) && (ndx % 5 == 0) ? collKeys.get(ndx - 1) : Boolean.FALSE);
+      data.put("relations", new JSONObject());
+
+      collections.put(key, zoteroEntity(key, ++libVersion, data));
+      collKeys.add(key);
+    }
+
+    for (int ndx = 0; ndx < settings.itemCount + settings.trashCount; ndx++)
+    {
+      String key = newZoteroKey();
+      JSONObject data = newItemData(ndx + 1, collKeys.isEmpty() ? null : collKeys.get(ndx % collKeys.size()));
+
+      if (ndx >= settings.itemCount)
+      {
+        data.put("deleted", 1L);
+        trash.add(key);
+      }
+
+      data.put("key", key);
+      items.put(key, zoteroEntity(key, ++libVersion, data));
+    }
+
+    for (int ndx = 0; ndx < settings.deletionCount; ndx++)
+      deletedItems.put(newZoteroKey(), ++libVersion);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static JSONObject newItemData(int num, String collKey)
+  {
+    JSONObject data = new JSONObject(), creator = new JSONObject();
+
+    creator.put("creatorType", "author");
+    creator.put("firstName", "Author");
+    creator.put("lastName", "Number " + num);
+
+    JSONArray creators = new JSONArray(), collKeys = new JSONArray();
+    creators.add(creator);
+
+    if (collKey != null)
+      collKeys.add(collKey);
+
+    data.put("itemType", "journalArticle");
+    data.put("title", "Mock article " + num);
+    data.put("creators", creators);
+    data.put("publicationTitle", "Journal of Mock Studies");
+    data.put("volume", String.valueOf(1 + (num % 40)));
+    data.put("pages", num + "-" + (num + 20));
+    data.put("date", String.valueOf(1950 + (num % 70)));
+    data.put("DOI", "10.5555/mock." + num);
+    data.put("collections", collKeys);
+    data.put("tags", new JSONArray());
+    data.put("relations", new JSONObject());
+
+    return data;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static JSONObject zoteroEntity(String key, long version, JSONObject data)
+  {
+    JSONObject entity = new JSONObject(), library = new JSONObject();
+
+    library.put("type", "user");
+    library.put("id", Long.valueOf(USER_ID));
+    library.put("name", "mock");
+
+    data.put("version", version);
+
+    entity.put("key", key);
+    entity.put("version", version);
+    entity.put("library", library);
+    entity.put("data", data);
+
+    return entity;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Changes the titles of {@code count} items in one write, as if they had been edited in another client.
+   */
+  synchronized void modifyItems(int count)
+  {
+    libVersion++;
+
+    items.values().stream().filter(item -> trash.contains(item.get("key")) == false).limit(count).forEach(item ->
+    {
+      JSONObject data = (JSONObject) item.get("data");
+
+      data.put("title", data.get("title") + " (revised)");
+      data.put("version", libVersion);
+      item.put("version", libVersion);
+    });
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Deletes {@code count} items in one write, as if they had been deleted in another client.
+   */
+  synchronized void deleteItems(int count)
+  {
+    libVersion++;
+
+    List<String> keys = new ArrayList<>();
+    items.keySet().stream().filter(key -> trash.contains(key) == false).limit(count).forEach(keys::add);
+
+    keys.forEach(key ->
+    {
+      items.remove(key);
+      deletedItems.put(key, libVersion);
+    });
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void generateMendeleyLibrary()
+  {
+    Instant created = Instant.parse("2020-01-01T00:00:00Z");
+    List<String> folderIDs = new ArrayList<>();
+
+    for (int ndx = 0; ndx < settings.folderCount; ndx++)
+    {
+      String id = new UUID(random.nextLong(), random.nextLong()).toString();
+      JSONObject folder = new JSONObject();
+
+      folder.put("id", id);
+      folder.put("name", "Folder " + (ndx + 1));
+      folder.put("created", created.toString());
+      folder.put("modified", created.toString());
+
+      if ((ndx > 0) && (ndx % 5 == 0))
+        folder.put("parent_id", folderIDs.get(ndx - 1));
+
+      folders.put(id, folder);
+      folderIDs.add(id);
+    }
+
+    for (int ndx = 0; ndx < settings.documentCount; ndx++)
+    {
+      int num = ndx + 1;
+      String id = new UUID(random.nextLong(), random.nextLong()).toString();
+      JSONObject document = new JSONObject(), author = new JSONObject(), identifiers = new JSONObject();
+
+      author.put("first_name", "Author");
+      author.put("last_name", "Number " + num);
+
+      JSONArray authors = new JSONArray(), folderIDArr = new JSONArray();
+      authors.add(author);
+
+      if (folderIDs.isEmpty() == false)
+        folderIDArr.add(folderIDs.get(ndx % folderIDs.size()));
+
+      identifiers.put("doi", "10.5555/mock." + num);
+
+      document.put("id", id);
+      document.put("type", "journal");
+      document.put("title", "Mock article " + num);
+      document.put("authors", authors);
+      document.put("source", "Journal of Mock Studies");
+      document.put("year", Long.valueOf(1950 + (num % 70)));
+      document.put("identifiers", identifiers);
+      document.put("folder_uuids", folderIDArr);
+      document.put("profile_id", USER_ID);
+      document.put("created", created.toString());
+      document.put("last_modified", created.plusSeconds(num).toString());
+
+      documents.put(id, document);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void handle(HttpExchange exchange) throws IOException
+  {
+    try
+    {
+      if (settings.latencyMS > 0)
+        Thread.sleep(settings.latencyMS);
+
+      Map<String, String> responseHeaders = new LinkedHashMap<>();
+
+      if (admitRequest(responseHeaders) == false)
+      {
+        responseHeaders.put("Retry-After", "1");
+        send(exchange, SC_TOO_MANY_REQUESTS, null, responseHeaders);
+        return;
+      }
+
+      String path = exchange.getRequestURI().getPath();
+
+      if (path.startsWith("/zotero/"))
+        handleZotero(exchange, path.substring("/zotero/".length()), responseHeaders);
+      else if (path.startsWith("/mendeley/"))
+        handleMendeley(exchange, path.substring("/mendeley/".length()), responseHeaders);
+      else
+        send(exchange, 404, null, responseHeaders);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch (ParseException | ClassCastException | NumberFormatException e)
+    {
+      send(exchange, 400, errorObj(e.toString()), new HashMap<>());
+    }
+    catch (RuntimeException e)
+    {
+      e.printStackTrace();
+      send(exchange, 500, errorObj(e.toString()), new HashMap<>());
+    }
+    finally
+    {
+      exchange.close();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Counts the request against the per-second limit.
+   * @return False if the request should be rejected
+   */
+  private synchronized boolean admitRequest(Map<String, String> responseHeaders)
+  {
+    totalRequests++;
+
+    if (settings.maxRequestsPerSec < 1) return true;
+
+    long second = System.currentTimeMillis() / 1000L;
+
+    if (second != curSecond)
+    {
+      curSecond = second;
+      requestsThisSecond = 0;
+    }
+
+    if (++requestsThisSecond > settings.maxRequestsPerSec)
+    {
+      throttledRequests++;
+      return false;
+    }
+
+    if ((settings.backoffSec > 0) && (requestsThisSecond > settings.maxRequestsPerSec / 2))
+      responseHeaders.put("Backoff", String.valueOf(settings.backoffSec));
+
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void handleZotero(HttpExchange exchange, String path, Map<String, String> responseHeaders) throws IOException, ParseException
+  {
+    String prefix = "users/" + USER_ID + '/';
+
+    if (path.startsWith(prefix) == false)
+    {
+      send(exchange, 403, errorObj("Forbidden"), responseHeaders);
+      return;
+    }
+
+    path = path.substring(prefix.length());
+    Map<String, String> query = parseQuery(exchange);
+    String method = exchange.getRequestMethod();
+
+    synchronized (this)
+    {
+      responseHeaders.put("Last-Modified-Version", String.valueOf(libVersion));
+
+      if ("POST".equals(method) && "items".equals(path))
+      {
+        zoteroWriteItems(exchange, responseHeaders);
+        return;
+      }
+
+      if ("GET".equals(method) == false)
+      {
+        send(exchange, 405, null, responseHeaders);
+        return;
+      }
+
+      String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since-Version");
+
+      if ((ifModifiedSince != null) && (libVersion <= Long.parseLong(ifModifiedSince)))
+      {
+        send(exchange, 304, null, responseHeaders);
+        return;
+      }
+
+      switch (path)
+      {
+        case "items"       : zoteroRead(exchange, query, "itemKey", items, key -> trash.contains(key) == false, responseHeaders); break;
+        case "items/trash" : zoteroRead(exchange, query, "itemKey", items, trash::contains, responseHeaders); break;
+        case "collections" : zoteroRead(exchange, query, "collectionKey", collections, key -> true, responseHeaders); break;
+
+        case "deleted" :
+
+          long since = Long.parseLong(query.getOrDefault("since", "0"));
+          JSONObject deleted = new JSONObject();
+
+          deleted.put("items"      , keysSince(deletedItems, since));
+          deleted.put("collections", keysSince(deletedCollections, since));
+          deleted.put("searches"   , new JSONArray());
+          deleted.put("tags"       , new JSONArray());
+          deleted.put("settings"   , new JSONArray());
+
+          send(exchange, 200, deleted, responseHeaders);
+          break;
+
+        default :
+
+          send(exchange, 404, errorObj("Not found"), responseHeaders);
+          break;
+      }
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static JSONArray keysSince(Map<String, Long> keyToVersion, long since)
+  {
+    JSONArray keys = new JSONArray();
+
+    keyToVersion.forEach((key, version) -> { if (version > since) keys.add(key); });
+
+    return keys;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void zoteroRead(HttpExchange exchange, Map<String, String> query, String keyParam, Map<String, JSONObject> source,
+                          Predicate<String> include, Map<String, String> responseHeaders) throws IOException
+  {
+    long since = Long.parseLong(query.getOrDefault("since", "-1"));
+    List<JSONObject> matches = new ArrayList<>();
+
+    if (query.containsKey(keyParam))
+    {
+      String[] keys = query.get(keyParam).split(",");
+
+      if (keys.length > MAX_KEYS_PER_REQUEST)
+      {
+        send(exchange, 400, errorObj("Too many keys"), responseHeaders);
+        return;
+      }
+
+      for (String key : keys)
+      {
+        JSONObject entity = source.get(key);
+        if ((entity != null) && include.test(key))
+          matches.add(entity);
+      }
+    }
+    else
+    {
+      source.forEach((key, entity) ->
+      {
+        if (include.test(key) && ((Long) entity.get("version") > since))
+          matches.add(entity);
+      });
+    }
+
+    responseHeaders.put("Total-Results", String.valueOf(matches.size()));
+
+    if ("versions".equals(query.get("format")))
+    {
+      JSONObject versions = new JSONObject();
+      matches.forEach(entity -> versions.put(entity.get("key"), entity.get("version")));
+
+      send(exchange, 200, versions, responseHeaders);
+      return;
+    }
+
+    int start = Integer.parseInt(query.getOrDefault("start", "0")),
+        limit = Math.min(Integer.parseInt(query.getOrDefault("limit", String.valueOf(query.containsKey(keyParam) ? MAX_KEYS_PER_REQUEST : DEFAULT_LIMIT))), MAX_LIMIT);
+
+    JSONArray jArr = new JSONArray();
+
+    for (int ndx = start; (ndx < matches.size()) && (ndx < start + limit); ndx++)
+      jArr.add(matches.get(ndx));
+
+    send(exchange, 200, jArr, responseHeaders);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Handles a write of up to 50 items. New items get keys from the server, and everything written
+   * in one request gets the same new library version, as with the real API.
+   */
+  private void zoteroWriteItems(HttpExchange exchange, Map<String, String> responseHeaders) throws IOException, ParseException
+  {
+    String ifUnmodifiedSince = exchange.getRequestHeaders().getFirst("If-Unmodified-Since-Version");
+
+    if ((ifUnmodifiedSince != null) && (Long.parseLong(ifUnmodifiedSince) != libVersion))
+    {
+      send(exchange, 412, null, responseHeaders);
+      return;
+    }
+
+    JSONArray jArr = (JSONArray) readBody(exchange);
+
+    if (jArr.size() > MAX_WRITE_BATCH_SIZE)
+    {
+      send(exchange, 413, errorObj("Only " + MAX_WRITE_BATCH_SIZE + " objects can be written in one request"), responseHeaders);
+      return;
+    }
+
+    long newVersion = libVersion + 1;
+    JSONObject successful = new JSONObject(), success = new JSONObject(), unchanged = new JSONObject(), failed = new JSONObject();
+
+    for (int ndx = 0; ndx < jArr.size(); ndx++)
+    {
+      JSONObject jObj = (JSONObject) jArr.get(ndx),
+                 jData = jObj.containsKey("data") ? (JSONObject) jObj.get("data") : jObj;
+
+      String key = String.valueOf(jObj.containsKey("key") ? jObj.get("key") : jData.get("key"));
+      Object versionObj = jObj.containsKey("version") ? jObj.get("version") : jData.get("version");
+      JSONObject item = items.get(key);
+
+      if ((item != null) && (versionObj instanceof Long) && ((Long) versionObj < (Long) item.get("version")))
+      {
+        JSONObject failure = new JSONObject();
+        failure.put("key", key);
+        failure.put("code", 412L);
+        failure.put("message", "Item has been modified since specified version");
+
+        failed.put(String.valueOf(ndx), failure);
+        continue;
+      }
+
+      JSONObject data = new JSONObject();
+      data.putAll(jData);
+
+      if (item == null)
+        key = newZoteroKey();
+
+      data.put("key", key);
+
+      if (Long.valueOf(1L).equals(data.get("deleted")) || Boolean.TRUE.equals(data.get("deleted")))
+        trash.add(key);
+      else
+        trash.remove(key);
+
+      item = zoteroEntity(key, newVersion, data);
+      items.put(key, item);
+
+      successful.put(String.valueOf(ndx), item);
+      success   .put(String.valueOf(ndx), key);
+    }
+
+    if (successful.isEmpty() == false)
+      libVersion = newVersion;
+
+    responseHeaders.put("Last-Modified-Version", String.valueOf(libVersion));
+
+    JSONObject response = new JSONObject();
+
+    response.put("successful", successful);
+    response.put("success"   , success);
+    response.put("unchanged" , unchanged);
+    response.put("failed"    , failed);
+
+    send(exchange, 200, response, responseHeaders);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void handleMendeley(HttpExchange exchange, String path, Map<String, String> responseHeaders) throws IOException, ParseException
+  {
+    Map<String, String> query = parseQuery(exchange);
+    String method = exchange.getRequestMethod();
+
+    if (path.startsWith("oauth/"))
+    {
+      mendeleyOAuth(exchange, path.substring("oauth/".length()), query, responseHeaders);
+      return;
+    }
+
+    synchronized (this)
+    {
+      if (path.equals("profiles/me"))
+      {
+        JSONObject profile = new JSONObject();
+        profile.put("id", USER_ID);
+        profile.put("display_name", "Mock User");
+
+        send(exchange, 200, profile, responseHeaders);
+      }
+      else if (path.equals("folders"))
+        mendeleyList(exchange, "folders", query, new ArrayList<>(folders.values()), responseHeaders);
+      else if (path.equals("trash"))
+        mendeleyList(exchange, "trash", query, modifiedSince(trashedDocuments, query), responseHeaders);
+      else if (path.equals("documents") && "GET".equals(method))
+      {
+        if (query.containsKey("deleted_since"))
+        {
+          Instant since = parseInstant(query.get("deleted_since"));
+          List<JSONObject> deleted = new ArrayList<>();
+
+          deletedDocuments.forEach((id, when) ->
+          {
+            if (when.isAfter(since) == false) return;
+
+            JSONObject jObj = new JSONObject();
+            jObj.put("id", id);
+            deleted.add(jObj);
+          });
+
+          mendeleyList(exchange, "documents", query, deleted, responseHeaders);
+        }
+        else
+          mendeleyList(exchange, "documents", query, modifiedSince(documents, query), responseHeaders);
+      }
+      else if (path.equals("documents") && "POST".equals(method))
+      {
+        JSONObject document = new JSONObject();
+        document.putAll((JSONObject) readBody(exchange));
+
+        String id = new UUID(random.nextLong(), random.nextLong()).toString(), now = Instant.now().toString();
+
+        document.put("id", id);
+        document.put("profile_id", USER_ID);
+        document.put("created", now);
+        document.put("last_modified", now);
+
+        documents.put(id, document);
+        send(exchange, 201, document, responseHeaders);
+      }
+      else if (path.startsWith("documents/") && "PATCH".equals(method))
+      {
+        JSONObject document = documents.get(path.substring("documents/".length()));
+
+        if (document == null)
+        {
+          send(exchange, 404, errorObj("Document not found"), responseHeaders);
+          return;
+        }
+
+        document.putAll((JSONObject) readBody(exchange));
+        document.put("last_modified", Instant.now().toString());
+
+        send(exchange, 200, document, responseHeaders);
+      }
+      else
+        send(exchange, 404, errorObj("Not found"), responseHeaders);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static List<JSONObject> modifiedSince(Map<String, JSONObject> source, Map<String, String> query)
+  {
+    Instant since = query.containsKey("modified_since") ? parseInstant(query.get("modified_since")) : Instant.EPOCH;
+    List<JSONObject> list = new ArrayList<>();
+
+    source.values().forEach(jObj -> { if (parseInstant((String) jObj.get("last_modified")).isAfter(since)) list.add(jObj); });
+
+    return list;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static Instant parseInstant(String str)
+  {
+    try { return Instant.parse(str); }
+    catch (DateTimeParseException e) { return Instant.EPOCH; }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Sends one page of {@code list}, with a Link header pointing at the next page if there is one, as the real API does.
+   */
+  private void mendeleyList(HttpExchange exchange, String path, Map<String, String> query, List<JSONObject> list, Map<String, String> responseHeaders) throws IOException
+  {
+    int offset = Integer.parseInt(query.getOrDefault("offset", "0")),
+        limit  = Math.min(Integer.parseInt(query.getOrDefault("limit", "20")), MENDELEY_MAX_LIMIT);
+
+    JSONArray jArr = new JSONArray();
+
+    for (int ndx = offset; (ndx < list.size()) && (ndx < offset + limit); ndx++)
+      jArr.add(list.get(ndx));
+
+    responseHeaders.put("Mendeley-Count", String.valueOf(list.size()));
+
+    if (offset + limit < list.size())
+    {
+      StringBuilder nextUrl = new StringBuilder(baseUrl() + "mendeley/" + path + '?');
+
+      query.forEach((name, value) -> { if (name.equals("offset") == false) nextUrl.append(name).append('=').append(value).append('&'); });
+      nextUrl.append("offset=").append(offset + limit);
+
+      responseHeaders.put("Link", '<' + nextUrl.toString() + ">; rel=\"next\"");
+    }
+
+    send(exchange, 200, jArr, responseHeaders);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void mendeleyOAuth(HttpExchange exchange, String path, Map<String, String> query, Map<String, String> responseHeaders) throws IOException
+  {
+    switch (path)
+    {
+      case "authorize" :
+
+        String redirectUri = query.getOrDefault("redirect_uri", "http://hypernomicon.org/verification.html");
+        responseHeaders.put("Location", redirectUri + "?code=mock-code" + (query.containsKey("state") ? "&state=" + query.get("state") : ""));
+
+        send(exchange, 302, null, responseHeaders);
+        break;
+
+      case "token" :
+
+        JSONObject token = new JSONObject();
+
+        token.put("access_token", "mock-access-token");
+        token.put("refresh_token", "mock-refresh-token");
+        token.put("token_type", "bearer");
+        token.put("expires_in", 3600L);
+
+        send(exchange, 200, token, responseHeaders);
+        break;
+
+      default :
+
+        send(exchange, 404, errorObj("Not found"), responseHeaders);
+        break;
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static Map<String, String> parseQuery(HttpExchange exchange)
+  {
+    Map<String, String> query = new LinkedHashMap<>();
+    String queryStr = exchange.getRequestURI().getRawQuery();
+
+    if ((queryStr == null) || queryStr.isEmpty()) return query;
+
+    for (String param : queryStr.split("&"))
+    {
+      String[] parts = param.split("=", 2);
+      query.put(URLDecoder.decode(parts[0], UTF_8), parts.length > 1 ? URLDecoder.decode(parts[1], UTF_8) : "");
+    }
+
+    return query;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static Object readBody(HttpExchange exchange) throws IOException, ParseException
+  {
+    try (Reader reader = new InputStreamReader(exchange.getRequestBody(), UTF_8))
+    {
+      return new JSONParser().parse(reader);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static JSONObject errorObj(String message)
+  {
+    JSONObject jObj = new JSONObject();
+    jObj.put("message", message);
+    return jObj;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void send(HttpExchange exchange, int statusCode, Object json, Map<String, String> responseHeaders) throws IOException
+  {
+    Headers headers = exchange.getResponseHeaders();
+    responseHeaders.forEach(headers::set);
+
+    if ((json == null) || (statusCode == 304))
+    {
+      exchange.sendResponseHeaders(statusCode, -1);
+      return;
+    }
+
+    byte[] body = json.toString().getBytes(UTF_8);
+
+    headers.set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(statusCode, body.length);
+
+    try (OutputStream out = exchange.getResponseBody())
+    {
+      out.write(body);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
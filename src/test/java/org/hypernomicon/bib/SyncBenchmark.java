@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.bib;
+
+import static org.hypernomicon.bib.data.BibField.BibFieldEnum.*;
+import static org.hypernomicon.bib.data.EntryType.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hypernomicon.HyperTask;
+import org.hypernomicon.bib.zotero.ZoteroItem;
+import org.hypernomicon.bib.zotero.ZoteroWrapper;
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Measures sync throughput by running {@link ZoteroWrapper}'s sync task against {@link MockLibraryServer},
+ * without a user interface.
+ * <p>
+ * The sync task only needs an empty database, which is set up by {@link HeadlessDB}. The task is run on the
+ * calling thread instead of through JavaFX.
+ * <p>
+ * Arguments are the {@code name=value} settings of {@link MockLibraryServer.Settings}, plus {@code changed} (items
+ * edited on the server before the incremental sync) and {@code uploaded} (new items uploaded). Items per second are reported
+ * for the initial sync, the incremental sync, and the upload.
+ * <p>
+ * For example, {@code items=50000 latencyMS=50 maxRequestsPerSec=20 backoffSec=1} times a 50,000-item initial sync
+ * against a rate-limited server.
+ */
+public final class SyncBenchmark
+{
+
+//---------------------------------------------------------------------------
+
+  private SyncBenchmark() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    List<String> serverArgs = new ArrayList<>();
+    int changed = 100, uploaded = 500;
+    boolean portGiven = false;
+
+    for (String arg : args)
+    {
+      if      (arg.startsWith("changed=" )) changed  = Integer.parseInt(arg.substring("changed=" .length()));
+      else if (arg.startsWith("uploaded=")) uploaded = Integer.parseInt(arg.substring("uploaded=".length()));
+      else
+      {
+        portGiven = portGiven || arg.startsWith("port=");
+        serverArgs.add(arg);
+      }
+    }
+
+    MockLibraryServer.Settings settings = MockLibraryServer.Settings.parse(serverArgs.toArray(new String[0]));
+
+    if (portGiven == false)
+      settings.port = 0;
+
+    MockLibraryServer server = new MockLibraryServer(settings);
+    server.start();
+
+    // Has to be set before ZoteroWrapper is loaded
+
+    System.setProperty("hypernomicon.zoteroApiUrl", server.baseUrl() + "zotero/");
+
+    try
+    {
+      initHeadless();
+
+      ZoteroWrapper wrapper = new ZoteroWrapper("benchmark", MockLibraryServer.USER_ID);
+
+      System.out.println("Library: " + settings.itemCount + " items, " + settings.collectionCount + " collections, " + settings.trashCount +
+                         " in trash; latency " + settings.latencyMS + " ms; " +
+                         (settings.maxRequestsPerSec > 0 ? "limit " + settings.maxRequestsPerSec + " requests/sec" : "no rate limit"));
+
+      long start = System.nanoTime();
+      sync(wrapper);
+      report("Initial sync", wrapper.getAllEntries().size() + wrapper.getKeyToColl().size(), start, server);
+
+      server.modifyItems(changed);
+      server.deleteItems(changed / 10);
+
+      int entryCount = wrapper.getAllEntries().size();
+
+      start = System.nanoTime();
+      sync(wrapper);
+      report("Incremental sync", changed + (entryCount - wrapper.getAllEntries().size()), start, server);
+
+      List<ZoteroItem> newItems = new ArrayList<>();
+
+      for (int num = 1; num <= uploaded; num++)
+      {
+        ZoteroItem item = wrapper.addEntry(etJournalArticle);
+
+        item.setTitle("Uploaded article " + num);
+        item.setStr(bfYear, "2023");
+        newItems.add(item);
+      }
+
+      start = System.nanoTime();
+      sync(wrapper);
+      report("Upload", (int) newItems.stream().filter(ZoteroItem::isSynced).count(), start, server);
+    }
+    finally
+    {
+      server.stop();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Sets up an empty in-memory database and loads the item templates that new entries are created from.
+   * Normally the templates are loaded with the library file.
+   */
+  private static void initHeadless() throws Exception
+  {
+    HeadlessDB.init(new FilePath(System.getProperty("java.io.tmpdir")).resolve("SyncBenchmark"));
+
+    Method initTemplates = ZoteroWrapper.class.getDeclaredMethod("initTemplates");
+    initTemplates.setAccessible(true);
+    initTemplates.invoke(null);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Runs the wrapper's sync task on this thread
+   */
+  private static void sync(ZoteroWrapper wrapper) throws Exception
+  {
+    Method call = HyperTask.class.getDeclaredMethod("call");
+    call.setAccessible(true);
+
+    try
+    {
+      call.invoke(wrapper.createNewSyncTask());
+    }
+    catch (InvocationTargetException e)
+    {
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+      throw e;
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void report(String name, int count, long startNanos, MockLibraryServer server)
+  {
+    double sec = (System.nanoTime() - startNanos) / 1e9;
+
+    System.out.println(String.format("%-17s %7d items in %8.3f sec: %10.1f items/sec (%d requests so far, %d throttled)",
+                                     name + ':', count, sec, count / sec, server.totalRequests(), server.throttledRequests()));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
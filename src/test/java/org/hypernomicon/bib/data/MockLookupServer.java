@@ -0,0 +1,500 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.bib.data;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Local stand-in for the parts of the Crossref and Google Books APIs that bibliographic lookups use, so
+ * that lookups can be measured without a network connection. Only the JDK and json-simple are needed to
+ * run it.
+ * <p>
+ * Crossref is served under {@code /crossref/} and Google Books under {@code /google/}. To point the
+ * application at it, start it with:
+ * <pre>
+ *   -Dhypernomicon.crossrefApiUrl=http://localhost:PORT/crossref/
+ *   -Dhypernomicon.googleBooksApiUrl=http://localhost:PORT/google/
+ * </pre>
+ * A DOI lookup finds a journal article if the DOI has the prefix {@value #DOI_PREFIX}, and gets a "not found"
+ * response otherwise. An ISBN lookup finds a book unless the ISBN starts with {@value #MISSING_ISBN_PREFIX}.
+ * A search finds one work, with the title that was searched for, unless it is a Crossref search and the
+ * {@code crossrefSearchFinds} setting is false.
+ * <p>
+ * Settings are passed as {@code name=value} arguments; see {@link Settings}.
+ */
+@SuppressWarnings("unchecked")
+public final class MockLookupServer
+{
+
+//---------------------------------------------------------------------------
+
+  public enum RequestKind { crossrefDoi, crossrefSearch, googleIsbn, googleSearch }
+
+//---------------------------------------------------------------------------
+
+  static final class Settings
+  {
+    int port = 8378,
+        maxAgeSec = -1;      // Sent in a Cache-Control header with every response; -1 for no header
+
+    long latencyMS = 0L;     // Added to every response
+
+    boolean https = false,   // Serve over TLS with a self-signed certificate
+            crossrefSearchFinds = true;
+
+    static Settings parse(String[] args)
+    {
+      Settings settings = new Settings();
+
+      for (String arg : args)
+      {
+        String[] parts = arg.split("=", 2);
+        if (parts.length < 2) throw new IllegalArgumentException("Expected name=value: " + arg);
+
+        switch (parts[0])
+        {
+          case "port"      : settings.port      = Integer.parseInt(parts[1]);     break;
+          case "maxAgeSec" : settings.maxAgeSec = Integer.parseInt(parts[1]);     break;
+          case "latencyMS" : settings.latencyMS = Long.parseLong(parts[1]);       break;
+          case "https"     : settings.https     = Boolean.parseBoolean(parts[1]); break;
+
+          case "crossrefSearchFinds" : settings.crossrefSearchFinds = Boolean.parseBoolean(parts[1]); break;
+
+          default : throw new IllegalArgumentException("Unknown setting: " + parts[0]);
+        }
+      }
+
+      return settings;
+    }
+  }
+
+//---------------------------------------------------------------------------
+
+  public static final String DOI_PREFIX = "10.5555/", MISSING_ISBN_PREFIX = "979";
+
+  private static final String KEYSTORE_PASSWORD = "changeit";
+
+  private static final Pattern QUOTED = Pattern.compile("\"([^\"]*)\"");
+
+  private final Settings settings;
+  private final HttpServer server;
+  private final Map<RequestKind, AtomicInteger> requestCounts = new EnumMap<>(RequestKind.class);
+  private final AtomicInteger totalRequests = new AtomicInteger();
+  private volatile boolean crossrefSearchFinds;
+  private final ExecutorService executor = Executors.newCachedThreadPool(runnable ->
+  {
+    Thread thread = new Thread(runnable, "MockLookupServer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  MockLookupServer(Settings settings) throws Exception
+  {
+    this.settings = settings;
+    crossrefSearchFinds = settings.crossrefSearchFinds;
+
+    for (RequestKind kind : RequestKind.values())
+      requestCounts.put(kind, new AtomicInteger());
+
+    // Without this, the JDK server holds back the body of a response on a kept-alive connection until the client
+    // acknowledges the headers, which adds about 40 ms to every request after the first. It is read once, when the
+    // first server is created.
+
+    if (System.getProperty("sun.net.httpserver.nodelay") == null)
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+
+    InetSocketAddress address = new InetSocketAddress("localhost", settings.port);
+
+    if (settings.https)
+    {
+      HttpsServer httpsServer = HttpsServer.create(address, 0);
+      httpsServer.setHttpsConfigurator(new HttpsConfigurator(createSSLContext()));
+      server = httpsServer;
+    }
+    else
+      server = HttpServer.create(address, 0);
+
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+  }
+
+  void start()            { server.start(); }
+  public void stop()      { server.stop(0); executor.shutdownNow(); }
+  int port()              { return server.getAddress().getPort(); }
+  public String baseUrl() { return (settings.https ? "https" : "http") + "://localhost:" + port() + '/'; }
+
+  public int totalRequests()                { return totalRequests.get(); }
+  public int requestCount(RequestKind kind) { return requestCounts.get(kind).get(); }
+
+  public void setCrossrefSearchFinds(boolean finds) { crossrefSearchFinds = finds; }
+
+  String crossrefApiUrl()    { return baseUrl() + "crossref/"; }
+  String googleBooksApiUrl() { return baseUrl() + "google/"; }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    MockLookupServer server = new MockLookupServer(Settings.parse(args));
+    server.start();
+
+    System.out.println("Mock lookup server listening at " + server.baseUrl());
+    System.out.println("  Crossref:     " + server.crossrefApiUrl());
+    System.out.println("  Google Books: " + server.googleBooksApiUrl());
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Starts a server on a free port, unless a port is given, and points the lookup classes at it. Must be
+   * called before the lookup classes are loaded.
+   *
+   * @param args Settings in the same form as for {@link #main}
+   */
+  public static MockLookupServer startForLookups(String... args) throws Exception
+  {
+    Settings settings = Settings.parse(args);
+    if (Arrays.stream(args).noneMatch(arg -> arg.startsWith("port="))) settings.port = 0;
+
+    MockLookupServer server = new MockLookupServer(settings);
+    server.start();
+
+    System.setProperty("hypernomicon.crossrefApiUrl", server.crossrefApiUrl());
+    System.setProperty("hypernomicon.googleBooksApiUrl", server.googleBooksApiUrl());
+
+    return server;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Creates a key pair and self-signed certificate with keytool, which comes with the JDK
+   */
+  private static SSLContext createSSLContext() throws Exception
+  {
+    Path dir = Files.createTempDirectory("MockLookupServer"),
+         keyStoreFile = dir.resolve("keystore.p12");
+
+    try
+    {
+      Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "keytool").toString(),
+                                           "-genkeypair", "-alias", "localhost", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                                           "-dname", "CN=localhost", "-storetype", "PKCS12", "-keystore", keyStoreFile.toString(),
+                                           "-storepass", KEYSTORE_PASSWORD, "-keypass", KEYSTORE_PASSWORD)
+        .redirectErrorStream(true)
+        .start();
+
+      String output = new String(process.getInputStream().readAllBytes(), UTF_8);
+
+      if (process.waitFor() != 0)
+        throw new IOException("keytool failed: " + output);
+
+      KeyStore keyStore = KeyStore.getInstance("PKCS12");
+
+      try (InputStream is = Files.newInputStream(keyStoreFile))
+      {
+        keyStore.load(is, KEYSTORE_PASSWORD.toCharArray());
+      }
+
+      KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+      kmf.init(keyStore, KEYSTORE_PASSWORD.toCharArray());
+
+      SSLContext sslContext = SSLContext.getInstance("TLS");
+      sslContext.init(kmf.getKeyManagers(), null, null);
+      return sslContext;
+    }
+    finally
+    {
+      Files.deleteIfExists(keyStoreFile);
+      Files.delete(dir);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void handle(HttpExchange exchange) throws IOException
+  {
+    try
+    {
+      totalRequests.incrementAndGet();
+
+      if (settings.latencyMS > 0)
+        Thread.sleep(settings.latencyMS);
+
+      String path = exchange.getRequestURI().getPath(),
+             query = exchange.getRequestURI().getRawQuery();
+
+      if (path.startsWith("/crossref/works/"))
+        handleCrossrefDoi(exchange, path.substring("/crossref/works/".length()));
+      else if (path.equals("/crossref/works"))
+        handleCrossrefSearch(exchange, query);
+      else if (path.equals("/google/volumes"))
+        handleGoogle(exchange, query);
+      else
+        sendNotFound(exchange);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch (RuntimeException e)
+    {
+      e.printStackTrace();
+      exchange.sendResponseHeaders(500, -1);
+    }
+    finally
+    {
+      exchange.close();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void handleCrossrefDoi(HttpExchange exchange, String doi) throws IOException
+  {
+    requestCounts.get(RequestKind.crossrefDoi).incrementAndGet();
+
+    if (doi.startsWith(DOI_PREFIX) == false)
+    {
+      sendNotFound(exchange);
+      return;
+    }
+
+    JSONObject response = new JSONObject();
+    response.put("status", "ok");
+    response.put("message", crossrefWork(doi, "Article " + doi.substring(DOI_PREFIX.length()), "Author", "2001"));
+
+    send(exchange, response);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * The year and the title are both sent as query.bibliographic; the title comes last
+   */
+  private void handleCrossrefSearch(HttpExchange exchange, String query) throws IOException
+  {
+    requestCounts.get(RequestKind.crossrefSearch).incrementAndGet();
+
+    String title = "", author = "Author";
+
+    for (String param : String.valueOf(query).split("&"))
+    {
+      String[] parts = param.split("=", 2);
+      if (parts.length < 2) continue;
+
+      String value = URLDecoder.decode(parts[1], UTF_8);
+
+      switch (parts[0])
+      {
+        case "query.bibliographic" : title  = value; break;
+        case "query.author"        : author = value; break;
+        default                    : break;
+      }
+    }
+
+    JSONObject response = new JSONObject(), message = new JSONObject();
+    JSONArray items = new JSONArray();
+
+    if (crossrefSearchFinds)
+      items.add(crossrefWork(DOI_PREFIX + "search." + Integer.toHexString(title.hashCode()), title, author, "2001"));
+
+    message.put("items", items);
+    response.put("status", "ok");
+    response.put("message", message);
+
+    send(exchange, response);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static JSONObject crossrefWork(String doi, String title, String author, String year)
+  {
+    JSONObject work = new JSONObject(), authorObj = new JSONObject(), published = new JSONObject();
+    JSONArray titles = new JSONArray(), authors = new JSONArray(), dateParts = new JSONArray(), yearParts = new JSONArray();
+
+    titles.add(title);
+
+    authorObj.put("given", "Mock");
+    authorObj.put("family", author);
+    authors.add(authorObj);
+
+    yearParts.add(Long.valueOf(year));
+    dateParts.add(yearParts);
+    published.put("date-parts", dateParts);
+
+    work.put("DOI", doi);
+    work.put("type", "journal-article");
+    work.put("title", titles);
+    work.put("author", authors);
+    work.put("published-print", published);
+    work.put("volume", "1");
+    work.put("page", "1-20");
+
+    return work;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Handles both ISBN lookups ({@code q=isbn:...}) and searches ({@code q="title"+"author"})
+   */
+  private void handleGoogle(HttpExchange exchange, String query) throws IOException
+  {
+    String q = "";
+
+    for (String param : String.valueOf(query).split("&"))
+      if (param.startsWith("q="))
+        q = URLDecoder.decode(param.substring(2), UTF_8);
+
+    JSONObject volumeInfo = new JSONObject(), isbnObj = new JSONObject(), item = new JSONObject(), response = new JSONObject();
+    JSONArray identifiers = new JSONArray(), authors = new JSONArray(), items = new JSONArray();
+
+    String isbn, title;
+
+    if (q.startsWith("isbn:"))
+    {
+      requestCounts.get(RequestKind.googleIsbn).incrementAndGet();
+
+      isbn = q.substring(5);
+      title = "Book " + isbn;
+    }
+    else
+    {
+      requestCounts.get(RequestKind.googleSearch).incrementAndGet();
+
+      Matcher matcher = QUOTED.matcher(q);
+      title = matcher.find() ? matcher.group(1) : q;
+      isbn = String.format("978%010d", Math.abs((long) title.hashCode()) % 10000000000L);
+    }
+
+    isbnObj.put("type", "ISBN_13");
+    isbnObj.put("identifier", isbn);
+    identifiers.add(isbnObj);
+    authors.add("Mock Author");
+
+    volumeInfo.put("title", title);
+    volumeInfo.put("authors", authors);
+    volumeInfo.put("publisher", "Mock Press");
+    volumeInfo.put("publishedDate", "2001-01-01");
+    volumeInfo.put("printType", "BOOK");
+    volumeInfo.put("industryIdentifiers", identifiers);
+
+    item.put("volumeInfo", volumeInfo);
+
+    if (isbn.startsWith(MISSING_ISBN_PREFIX) == false)
+      items.add(item);
+
+    response.put("totalItems", (long) items.size());
+    response.put("items", items);
+
+    send(exchange, response);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void addCacheHeader(HttpExchange exchange)
+  {
+    if (settings.maxAgeSec >= 0)
+      exchange.getResponseHeaders().set("Cache-Control", "max-age=" + settings.maxAgeSec);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Crossref's "not found" responses are plain text
+   */
+  private void sendNotFound(HttpExchange exchange) throws IOException
+  {
+    byte[] body = "Resource not found.".getBytes(UTF_8);
+
+    addCacheHeader(exchange);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain");
+    exchange.sendResponseHeaders(404, body.length);
+
+    try (OutputStream out = exchange.getResponseBody())
+    {
+      out.write(body);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private void send(HttpExchange exchange, JSONObject json) throws IOException
+  {
+    byte[] body = json.toString().getBytes(UTF_8);
+
+    addCacheHeader(exchange);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+
+    try (OutputStream out = exchange.getResponseBody())
+    {
+      out.write(body);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.bib.data;
+
+import static org.hypernomicon.bib.data.BibField.BibFieldEnum.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import org.hypernomicon.util.MediaUtil;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Measures {@link PDFBibData#createFromFiles} over a corpus of generated PDF files.
+ * <p>
+ * Each work is a set of volumes of text pages, and only one volume has a DOI on its first page. Every work is
+ * read the way {@code createFromFiles} reads it, and the way it used to: one volume after another until a
+ * DOI is found. Both must find the same DOI. No database is loaded, so the metadata cache is not used.
+ * <p>
+ * Then a large file of uncompressible page images is loaded, both with PDFBox's default settings, which read the
+ * whole file into the heap, and by {@code PDFBibData}. Run with a small heap (for example {@code -Xmx64m}) to see
+ * the difference.
+ * <p>
+ * Arguments are {@code name=value} settings: {@code works}, {@code volumes} (per work), {@code pages} (per
+ * volume), {@code doiVolume} (1-based, or 0 for none) and {@code largeMB} (0 to skip the large file).
+ */
+public final class PDFExtractionBenchmark
+{
+
+//---------------------------------------------------------------------------
+
+  private static int workCount = 10, volumeCount = 6, pageCount = 40, doiVolume = 6, largeMB = 100;
+
+  private PDFExtractionBenchmark() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    for (String arg : args)
+    {
+      String name = arg.substring(0, arg.indexOf('=')), value = arg.substring(arg.indexOf('=') + 1);
+
+      switch (name)
+      {
+        case "works"     : workCount   = Integer.parseInt(value); break;
+        case "volumes"   : volumeCount = Integer.parseInt(value); break;
+        case "pages"     : pageCount   = Integer.parseInt(value); break;
+        case "doiVolume" : doiVolume   = Integer.parseInt(value); break;
+        case "largeMB"   : largeMB     = Integer.parseInt(value); break;
+        default          : throw new IllegalArgumentException("Unknown setting: " + name);
+      }
+    }
+
+    MediaUtil.init(); // createFromFiles checks the media type of each file
+
+    Path dir = Files.createTempDirectory("PDFExtractionBenchmark");
+
+    try
+    {
+      List<List<FilePath>> works = new ArrayList<>();
+      Random random = new Random(1L);
+
+      for (int workNum = 1; workNum <= workCount; workNum++)
+      {
+        List<FilePath> volumes = new ArrayList<>();
+
+        for (int volNum = 1; volNum <= volumeCount; volNum++)
+        {
+          Path file = dir.resolve("work" + workNum + "-vol" + volNum + ".pdf");
+          writeTextPdf(file, volNum == doiVolume ? doi(workNum) : "", random);
+          volumes.add(new FilePath(file));
+        }
+
+        works.add(volumes);
+      }
+
+      System.out.println(String.format("%d works of %d volumes, %d pages each; DOI in volume %d; %d available processors",
+                                       workCount, volumeCount, pageCount, doiVolume, Runtime.getRuntime().availableProcessors()));
+
+      readAll(works, false); // Warm up
+      readAll(works, true);
+
+      long start = System.nanoTime();
+      readAll(works, false);
+      report("One at a time", start);
+
+      start = System.nanoTime();
+      readAll(works, true);
+      report("createFromFiles", start);
+
+      if (largeMB > 0)
+        loadLargeFile(dir.resolve("large.pdf"));
+    }
+    finally
+    {
+      FileUtils.deleteDirectory(dir.toFile());
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static String doi(int workNum) { return "10.5555/bench." + workNum; }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void readAll(List<List<FilePath>> works, boolean parallel) throws IOException
+  {
+    for (int ndx = 0; ndx < works.size(); ndx++)
+    {
+      String doi = parallel ?
+        PDFBibData.createFromFiles(works.get(ndx), false).getStr(bfDOI)
+      :
+        readOneAtATime(works.get(ndx));
+
+      String expected = doiVolume > 0 ? doi(ndx + 1) : "";
+
+      if (expected.equals(doi) == false)
+        throw new AssertionError("Failed: expected DOI \"" + expected + "\", got \"" + doi + '"');
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Reads the volumes the way createFromFiles did before it read them in parallel
+   * @return The DOI
+   */
+  private static String readOneAtATime(List<FilePath> volumes) throws IOException
+  {
+    for (FilePath filePath : volumes)
+    {
+      String doi = new PDFBibData(filePath).getStr(bfDOI);
+      if (doi.length() > 0) return doi;
+    }
+
+    return "";
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void writeTextPdf(Path file, String doi, Random random) throws IOException
+  {
+    try (PDDocument doc = new PDDocument())
+    {
+      for (int pageNum = 1; pageNum <= pageCount; pageNum++)
+      {
+        PDPage page = new PDPage();
+        doc.addPage(page);
+
+        try (PDPageContentStream stream = new PDPageContentStream(doc, page))
+        {
+          stream.beginText();
+          stream.setFont(PDType1Font.HELVETICA, 10);
+          stream.setLeading(12f);
+          stream.newLineAtOffset(50, 740);
+
+          if ((pageNum == 1) && (doi.length() > 0))
+          {
+            stream.showText("https://doi.org/" + doi);
+            stream.newLine();
+          }
+
+          for (int lineNum = 0; lineNum < 55; lineNum++)
+          {
+            StringBuilder line = new StringBuilder();
+
+            while (line.length() < 90)
+              line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+
+            stream.showText(line.toString());
+            stream.newLine();
+          }
+
+          stream.endText();
+        }
+      }
+
+      doc.save(file.toFile());
+    }
+  }
+
+  private static final String[] WORDS = { "argument", "premise", "conclusion", "position", "debate", "theory", "concept",
+                                          "evidence", "objection", "reply", "therefore", "however", "because", "the", "of", "and" };
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void loadLargeFile(Path file) throws IOException
+  {
+    Random random = new Random(2L);
+    BufferedImage image = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
+
+    try (PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) // So that it can be written with a small heap
+    {
+      long bytesPerPage = 3L * 1000L * 1000L;
+
+      for (long bytes = 0; bytes < largeMB * 1024L * 1024L; bytes += bytesPerPage)
+      {
+        for (int y = 0; y < image.getHeight(); y++)
+          for (int x = 0; x < image.getWidth(); x++)
+            image.setRGB(x, y, random.nextInt());
+
+        PDPage page = new PDPage();
+        doc.addPage(page);
+
+        PDImageXObject pdImage = LosslessFactory.createFromImage(doc, image);
+
+        try (PDPageContentStream stream = new PDPageContentStream(doc, page))
+        {
+          stream.drawImage(pdImage, 0, 0, page.getMediaBox().getWidth(), page.getMediaBox().getHeight());
+        }
+      }
+
+      doc.save(file.toFile());
+    }
+
+    System.out.println(String.format("Large file: %.1f MB; max heap %.1f MB", Files.size(file) / 1048576.0, Runtime.getRuntime().maxMemory() / 1048576.0));
+
+    long start = System.nanoTime();
+
+    try (PDDocument doc = PDDocument.load(file.toFile()))
+    {
+      report("  Default settings", start);
+    }
+    catch (OutOfMemoryError e)
+    {
+      System.out.println("  Default settings: out of memory");
+    }
+
+    start = System.nanoTime();
+    new PDFBibData(new FilePath(file));
+    report("  PDFBibData", start);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void report(String name, long startNanos)
+  {
+    System.out.println(String.format("%-18s %8.3f sec", name + ':', (System.nanoTime() - startNanos) / 1e9));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.bib.data;
+
+import static org.hypernomicon.bib.data.BibField.BibFieldEnum.*;
+import static org.hypernomicon.util.Util.*;
+
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hypernomicon.bib.authors.BibAuthor.AuthorType;
+import org.hypernomicon.bib.data.BibDataRetriever.RetrieveHandler;
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.model.HeadlessFXThread;
+import org.hypernomicon.model.items.PersonName;
+import org.hypernomicon.util.AsyncHttpClient;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Measures how long {@link BibDataRetriever} takes to find a work without a DOI when its lookup stages are
+ * run one after another and when they are all started at once, against a {@link MockLookupServer} that
+ * adds a fixed latency to every response. Both ways must find the same work.
+ * <p>
+ * Each work has a title, year, author and ISBN. In the first case, Crossref finds the work by searching,
+ * which is the first stage that applies. In the second, the Crossref search and the ISBN find nothing,
+ * so one after another it takes three round trips to get to the Google Books search.
+ * <p>
+ * Arguments are {@code name=value} settings: {@code works} (per case) and {@code latencyMS}.
+ */
+public final class RetrieverStagesBenchmark
+{
+
+//---------------------------------------------------------------------------
+
+  private static int workCount = 50;
+  private static long latencyMS = 200L;
+
+  private RetrieverStagesBenchmark() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    for (String arg : args)
+    {
+      String name = arg.substring(0, arg.indexOf('=')), value = arg.substring(arg.indexOf('=') + 1);
+
+      switch (name)
+      {
+        case "works"     : workCount = Integer.parseInt(value); break;
+        case "latencyMS" : latencyMS = Long.parseLong(value);   break;
+        default          : throw new IllegalArgumentException("Unknown setting: " + name);
+      }
+    }
+
+    // Responses are sent with max-age=0 so that nothing is taken from the response cache
+
+    MockLookupServer server = MockLookupServer.startForLookups("latencyMS=" + latencyMS, "maxAgeSec=0");
+
+    try
+    {
+      HeadlessDB.init(new FilePath("/nonexistent/RetrieverStagesBenchmark"));
+      HeadlessFXThread.start();
+
+      System.out.println(String.format("%d works per case; %d ms latency", workCount, latencyMS));
+
+      runCase("Found by Crossref search", server, "Crossref");
+
+      server.setCrossrefSearchFinds(false);
+      runCase("Found by Google search", server, "Google");
+    }
+    finally
+    {
+      server.stop();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void runCase(String caseName, MockLookupServer server, String expectedSource) throws Exception
+  {
+    System.out.println(caseName + ':');
+
+    String[] sequentialTitles = new String[workCount];
+
+    for (boolean speculative : new boolean[] { false, true })
+    {
+      int requestsBefore = server.totalRequests();
+      long start = System.nanoTime();
+
+      for (int ndx = 0; ndx < workCount; ndx++)
+      {
+        BibDataStandalone bd = retrieve(workBD(ndx), speculative);
+
+        if (bd == null)
+          throw new AssertionError("Failed: nothing found for work " + ndx);
+
+        String source = bd instanceof CrossrefBibData ? "Crossref" : "Google";
+        if (source.equals(expectedSource) == false)
+          throw new AssertionError("Failed: work " + ndx + " was found by " + source);
+
+        if (speculative == false)
+          sequentialTitles[ndx] = bd.getStr(bfTitle);
+        else if (bd.getStr(bfTitle).equals(sequentialTitles[ndx]) == false)
+          throw new AssertionError("Failed: different results for work " + ndx);
+      }
+
+      double sec = (System.nanoTime() - start) / 1e9;
+
+      System.out.println(String.format("  %-14s %7.3f sec: %7.1f ms per work, %5.2f requests per work", speculative ? "All at once:" : "One by one:",
+                                       sec, sec * 1e3 / workCount, (double) (server.totalRequests() - requestsBefore) / workCount));
+    }
+
+    System.out.println("Passed: both ways found the same works");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static GUIBibData workBD(int ndx)
+  {
+    GUIBibData bd = new GUIBibData();
+
+    bd.setTitle("Benchmark work number " + ndx);
+    bd.setStr(bfYear, "2001");
+    bd.getAuthors().add(AuthorType.author, new PersonName("Test", "Author" + ndx));
+    bd.setMultiStr(bfISBNs, List.of(isbn(ndx)));
+
+    return bd;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * @return An ISBN that the server doesn't find
+   */
+  private static String isbn(int ndx)
+  {
+    String digits = String.format(MockLookupServer.MISSING_ISBN_PREFIX + "%09d", ndx);
+    int sum = 0;
+
+    for (int pos = 0; pos < 12; pos++)
+      sum += (digits.charAt(pos) - '0') * (pos % 2 == 0 ? 1 : 3);
+
+    return digits + ((10 - (sum % 10)) % 10);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Runs a retriever on the FX thread and waits for it to finish. It is created the way the public constructor
+   * creates it, except that it shows no messages and the stages are only run all at once if {@code speculative}
+   * is true.
+   */
+  private static BibDataStandalone retrieve(GUIBibData workBD, boolean speculative) throws Exception
+  {
+    Constructor<BibDataRetriever> constructor = BibDataRetriever.class.getDeclaredConstructor(AsyncHttpClient.class, BibData.class, PDFBibData.class, List.class, boolean.class,
+                                                                                              boolean.class, boolean.class, boolean.class, RetrieveHandler.class);
+    constructor.setAccessible(true);
+
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicReference<BibDataStandalone> result = new AtomicReference<>();
+    AtomicReference<Exception> error = new AtomicReference<>();
+
+    RetrieveHandler doneHndlr = (pdfBD, queryBD, messageShown) ->
+    {
+      result.set(queryBD);
+      done.countDown();
+    };
+
+    runInFXThread(() ->
+    {
+      try { constructor.newInstance(new AsyncHttpClient(), workBD, null, null, true, true, false, speculative, doneHndlr); }
+      catch (ReflectiveOperationException e) { error.set(e); done.countDown(); }
+    });
+
+    done.await();
+
+    if (error.get() != null) throw error.get();
+
+    return result.get();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.fileManager;
+
+import static org.hypernomicon.App.*;
+import static org.hypernomicon.Const.*;
+import static org.hypernomicon.bib.data.BibField.BibFieldEnum.*;
+import static org.hypernomicon.model.HyperDB.*;
+import static org.hypernomicon.model.records.RecordType.*;
+import static org.hypernomicon.util.Util.*;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import org.hypernomicon.HyperTask;
+import org.hypernomicon.bib.data.BibDataRetriever;
+import org.hypernomicon.bib.data.MockLookupServer;
+import org.hypernomicon.bib.data.PDFBibData;
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.model.HeadlessFXThread;
+import org.hypernomicon.model.records.HDT_Work;
+import org.hypernomicon.util.AsyncHttpClient;
+import org.hypernomicon.util.MediaUtil;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Measures how long it takes to create work records for a folder of PDF files, with Crossref and Google
+ * Books replaced by a {@link MockLookupServer} that adds a fixed latency to every response.
+ * <p>
+ * A folder of generated PDF files is created in an in-memory database (see {@link HeadlessDB}), with
+ * {@link HeadlessFXThread} standing in for the FX thread. Most files have a DOI on their first page, and
+ * every DOI is shared by two files; every fifth file has an ISBN instead, and every tenth has a DOI the
+ * server doesn't know. The files are first read and looked up one at a time, each lookup waiting for the
+ * previous one as when works are created one by one, and then imported by {@link PDFFolderImporter}.
+ * Responses are sent with {@code max-age=0} so that nothing is taken from the response cache.
+ * <p>
+ * Arguments are {@code name=value} settings: {@code files}, {@code pages} (per file), {@code latencyMS},
+ * {@code concurrency} and {@code lookupsPerSec} (for the importer; the defaults are the importer's).
+ */
+public final class PDFFolderImportBenchmark
+{
+
+//---------------------------------------------------------------------------
+
+  private static int fileCount = 200, pageCount = 10, concurrency = 4, lookupsPerSec = 2;
+  private static long latencyMS = 300L;
+
+  private PDFFolderImportBenchmark() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    for (String arg : args)
+    {
+      String name = arg.substring(0, arg.indexOf('=')), value = arg.substring(arg.indexOf('=') + 1);
+
+      switch (name)
+      {
+        case "files"         : fileCount     = Integer.parseInt(value); break;
+        case "pages"         : pageCount     = Integer.parseInt(value); break;
+        case "latencyMS"     : latencyMS     = Long.parseLong(value);   break;
+        case "concurrency"   : concurrency   = Integer.parseInt(value); break;
+        case "lookupsPerSec" : lookupsPerSec = Integer.parseInt(value); break;
+        default              : throw new IllegalArgumentException("Unknown setting: " + name);
+      }
+    }
+
+    MockLookupServer server = MockLookupServer.startForLookups("latencyMS=" + latencyMS, "maxAgeSec=0");
+    Path rootDir = Files.createTempDirectory("PDFFolderImportBenchmark").toRealPath();
+
+    try
+    {
+      HeadlessDB.init(new FilePath(rootDir));
+      HeadlessFXThread.start();
+      MediaUtil.init();
+
+      app.prefs.putInt(PREF_KEY_BIB_LOOKUP_CONCURRENCY, concurrency);
+      app.prefs.putInt(PREF_KEY_BIB_LOOKUPS_PER_SECOND, lookupsPerSec);
+
+      Path folderDir = Files.createDirectory(rootDir.resolve("Imports"));
+      HeadlessDB.createFolder(db.getRootFolder(), "Imports");
+
+      List<FilePath> filePaths = new ArrayList<>();
+      Random random = new Random(1L);
+
+      for (int fileNum = 1; fileNum <= fileCount; fileNum++)
+      {
+        Path file = folderDir.resolve(String.format("file%04d.pdf", fileNum));
+        writePdf(file, idText(fileNum), random);
+        filePaths.add(new FilePath(file));
+      }
+
+      System.out.println(String.format("%d files of %d pages; %d ms latency; importer: %d lookups at once, %d per second",
+                                       fileCount, pageCount, latencyMS, concurrency, lookupsPerSec));
+
+      // One at a time
+
+      int requestsBefore = server.totalRequests();
+      long start = System.nanoTime();
+
+      for (FilePath filePath : filePaths)
+        lookUpAndWait(filePath, PDFBibData.createFromFiles(List.of(filePath), false));
+
+      report("One at a time", start, server.totalRequests() - requestsBefore);
+
+      // Importer
+
+      requestsBefore = server.totalRequests();
+      start = System.nanoTime();
+
+      int created = runImporter(new PDFFolderImporter(new FilePath(folderDir)));
+
+      report("PDFFolderImporter", start, server.totalRequests() - requestsBefore);
+
+      check(created == fileCount, "a work was created for every file");
+      checkWorks();
+    }
+    finally
+    {
+      server.stop();
+      FileUtils.deleteDirectory(rootDir.toFile());
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Files come in pairs with the same DOI. Every fifth file has an ISBN, and every tenth a DOI the server doesn't know.
+   */
+  private static String idText(int fileNum)
+  {
+    if (fileNum % 10 == 0) return "https://doi.org/10.9999/unknown." + fileNum;
+    if (fileNum % 5  == 0) return "ISBN " + isbn(fileNum);
+
+    return "https://doi.org/" + MockLookupServer.DOI_PREFIX + ((fileNum + 1) / 2);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static String isbn(int fileNum)
+  {
+    String digits = String.format("978%09d", fileNum);
+    int sum = 0;
+
+    for (int ndx = 0; ndx < 12; ndx++)
+      sum += (digits.charAt(ndx) - '0') * (ndx % 2 == 0 ? 1 : 3);
+
+    return digits + ((10 - (sum % 10)) % 10);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void lookUpAndWait(FilePath filePath, PDFBibData pdfBD) throws InterruptedException
+  {
+    CountDownLatch done = new CountDownLatch(1);
+
+    runInFXThread(() -> BibDataRetriever.forExtractedPDF(new AsyncHttpClient(), pdfBD, filePath, (bd, queryBD, messageShown) -> done.countDown()));
+
+    done.await();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Runs the import the way {@link PDFFolderImporter#run} does, but on this thread instead of with a progress dialog
+   * @return The number of work records that were created
+   */
+  private static int runImporter(PDFFolderImporter importer) throws Exception
+  {
+    Field taskField = PDFFolderImporter.class.getDeclaredField("task"),
+          createdField = PDFFolderImporter.class.getDeclaredField("createdCount");
+
+    taskField.setAccessible(true);
+    createdField.setAccessible(true);
+
+    taskField.set(importer, new HyperTask("PDFFolderImportBenchmark") { @Override protected void call() { } });
+
+    Method importFiles = PDFFolderImporter.class.getDeclaredMethod("importFiles");
+    importFiles.setAccessible(true);
+
+    try
+    {
+      importFiles.invoke(importer);
+    }
+    catch (InvocationTargetException e)
+    {
+      throw (Exception) e.getCause();
+    }
+
+    HeadlessFXThread.waitForIdle();
+
+    return ((Number) createdField.get(importer)).intValue();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void checkWorks()
+  {
+    int fromDoi = 0, fromIsbn = 0, unknown = 0;
+
+    for (HDT_Work work : db.works)
+    {
+      String title = work.name();
+
+      if (title.startsWith("Article ")) fromDoi++;
+      else if (title.startsWith("Book ")) fromIsbn++;
+      else unknown++;
+
+      if (title.startsWith("Article ") && (work.getBibData().getStr(bfDOI).startsWith(MockLookupServer.DOI_PREFIX) == false))
+        throw new AssertionError("Failed: wrong DOI for " + title);
+    }
+
+    System.out.println(String.format("Works: %d from a DOI, %d from an ISBN, %d without online information", fromDoi, fromIsbn, unknown));
+
+    check(fromDoi == fileCount - (fileCount / 5), "every file with a known DOI got its work's information");
+    check(fromIsbn == (fileCount / 5) - (fileCount / 10), "every file with an ISBN got its book's information");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void writePdf(Path file, String idText, Random random) throws IOException
+  {
+    try (PDDocument doc = new PDDocument())
+    {
+      for (int pageNum = 1; pageNum <= pageCount; pageNum++)
+      {
+        PDPage page = new PDPage();
+        doc.addPage(page);
+
+        try (PDPageContentStream stream = new PDPageContentStream(doc, page))
+        {
+          stream.beginText();
+          stream.setFont(PDType1Font.HELVETICA, 10);
+          stream.setLeading(12f);
+          stream.newLineAtOffset(50, 740);
+
+          if (pageNum == 1)
+          {
+            stream.showText(idText);
+            stream.newLine();
+          }
+
+          for (int lineNum = 0; lineNum < 55; lineNum++)
+          {
+            StringBuilder line = new StringBuilder();
+
+            while (line.length() < 90)
+              line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+
+            stream.showText(line.toString());
+            stream.newLine();
+          }
+
+          stream.endText();
+        }
+      }
+
+      doc.save(file.toFile());
+    }
+  }
+
+  private static final String[] WORDS = { "argument", "premise", "conclusion", "position", "debate", "theory", "concept",
+                                          "evidence", "objection", "reply", "therefore", "however", "because", "the", "of", "and" };
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void report(String name, long startNanos, int requests)
+  {
+    double sec = (System.nanoTime() - startNanos) / 1e9;
+
+    System.out.println(String.format("%-18s %8.2f sec: %6.2f files/sec, %4d requests", name + ':', sec, fileCount / sec, requests));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void check(boolean condition, String description)
+  {
+    if (condition == false)
+      throw new AssertionError("Failed: " + description);
+
+    System.out.println("Passed: " + description);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.model;
+
+import static org.hypernomicon.App.*;
+import static org.hypernomicon.model.HyperDB.*;
+import static org.hypernomicon.model.records.RecordType.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.prefs.Preferences;
+
+import org.hypernomicon.App;
+import org.hypernomicon.HyperTask;
+import org.hypernomicon.model.items.HyperPath;
+import org.hypernomicon.model.records.HDT_Folder;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Sets up an empty, online database for test and benchmark harnesses that run without a user interface.
+ * <ul>
+ *   <li>{@code app} is set to an instance whose constructor was not run, because the constructor starts the
+ *       browser engine and reads the user's preferences.</li>
+ *   <li>The JavaFX toolkit is marked as started and already exited, so {@code Platform.runLater} drops what
+ *       it is given instead of throwing. The model only uses it to notify the user interface of changes.</li>
+ *   <li>The application and database preferences are kept in memory.</li>
+ *   <li>The database has only its built-in records and is marked as loaded. Nothing is read from or written
+ *       to the root folder.</li>
+ * </ul>
+ * Reflection is used for the parts of the database's startup that are normally done by a load task.
+ */
+public final class HeadlessDB
+{
+
+//---------------------------------------------------------------------------
+
+  private HeadlessDB() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void init(FilePath rootFilePath) throws Exception
+  {
+    Field unsafeField = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+    unsafeField.setAccessible(true);
+    Object unsafe = unsafeField.get(null);
+
+    app = (App) unsafe.getClass().getMethod("allocateInstance", Class.class).invoke(unsafe, App.class);
+
+    Constructor<?> prefsConstructor = Class.forName("org.hypernomicon.util.prefs.TransientPreferences").getDeclaredConstructor();
+    prefsConstructor.setAccessible(true);
+
+    Field appPrefsField = App.class.getDeclaredField("prefs");
+    appPrefsField.setAccessible(true);
+    appPrefsField.set(app, prefsConstructor.newInstance());
+
+    Class<?> platformImpl = Class.forName("com.sun.javafx.application.PlatformImpl");
+
+    for (String fieldName : new String[] { "initialized", "toolkitExit" })
+      ((AtomicBoolean) staticField(platformImpl, fieldName)).set(true);
+
+    ((CountDownLatch) staticField(platformImpl, "startupLatch")).countDown();
+
+    HyperDB.create(folderTreeWatcher);
+
+    db.close(null);
+
+    Field rootField = HyperDB.class.getDeclaredField("rootFilePath");
+    rootField.setAccessible(true);
+    rootField.set(db, rootFilePath);
+    HyperPath.folderStructureChanged();
+
+    db.task = new HyperTask("HeadlessDB") { @Override protected void call() { } };
+
+    Method bringAllRecordsOnline = HyperDB.class.getDeclaredMethod("bringAllRecordsOnline");
+    bringAllRecordsOnline.setAccessible(true);
+    bringAllRecordsOnline.invoke(db);
+
+    db.resolvePointers();
+
+    db.prefs = (Preferences) prefsConstructor.newInstance();
+
+    Field loadedField = HyperDB.class.getDeclaredField("loaded");
+    loadedField.setAccessible(true);
+    loadedField.set(db, true);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Creates a folder record. Nothing is created on disk.
+   */
+  public static HDT_Folder createFolder(HDT_Folder parentFolder, String name)
+  {
+    HDT_Folder folder = db.createNewBlankRecord(hdtFolder);
+    folder.getPath().assign(parentFolder, new FilePath(name));
+    return folder;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static Object staticField(Class<?> cls, String name) throws ReflectiveOperationException
+  {
+    Field field = cls.getDeclaredField(name);
+    field.setAccessible(true);
+    return field.get(null);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
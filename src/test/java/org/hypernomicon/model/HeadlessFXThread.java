@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.model;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.application.Platform;
+
+import com.sun.glass.ui.Application;
+import com.sun.glass.ui.CommonDialogs.ExtensionFilter;
+import com.sun.glass.ui.CommonDialogs.FileChooserResult;
+import com.sun.glass.ui.Cursor;
+import com.sun.glass.ui.GlassRobot;
+import com.sun.glass.ui.Pixels;
+import com.sun.glass.ui.Screen;
+import com.sun.glass.ui.Size;
+import com.sun.glass.ui.Timer;
+import com.sun.glass.ui.View;
+import com.sun.glass.ui.Window;
+import com.sun.javafx.tk.Toolkit;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Stands in for the JavaFX application thread in harnesses that run without a display, for code that
+ * hands its results to the FX thread, such as HTTP response handlers.
+ * <p>
+ * {@link HeadlessDB#init} marks the toolkit as exited, so that {@code Platform.runLater} drops what it is
+ * given. After {@link #start}, it is run in order on a single thread instead, and
+ * {@code Platform.isFxApplicationThread} is true on that thread. Nothing that needs a window, a
+ * scene or rendering will work.
+ * <p>
+ * This is done by giving JavaFX a toolkit that was never started, marked as running, and a windowing
+ * layer whose only working operation is running tasks on the thread.
+ */
+public final class HeadlessFXThread
+{
+
+//---------------------------------------------------------------------------
+
+  private static ExecutorService executor = null;
+
+  private HeadlessFXThread() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Must be called after {@link HeadlessDB#init}, and only once.
+   */
+  public static void start() throws Exception
+  {
+    CountDownLatch started = new CountDownLatch(1);
+    Thread[] fxThread = new Thread[1];
+
+    executor = Executors.newSingleThreadExecutor(runnable ->
+    {
+      Thread thread = new Thread(runnable, "HeadlessFXThread");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    executor.execute(() ->
+    {
+      fxThread[0] = Thread.currentThread();
+      started.countDown();
+    });
+
+    started.await();
+
+    Class<?> quantumClass = Class.forName("com.sun.javafx.tk.quantum.QuantumToolkit");
+    Toolkit toolkit = (Toolkit) quantumClass.getConstructor().newInstance(); // Not initialized, so no rendering pipeline is started
+
+    ((AtomicBoolean) field(quantumClass, "toolkitRunning").get(toolkit)).set(true);
+
+    field(Toolkit.class, "TOOLKIT").set(null, toolkit);
+    field(Toolkit.class, "fxUserThread").set(null, fxThread[0]);
+    field(Application.class, "application").set(null, new EventQueue());
+    field(Application.class, "eventThread").set(null, fxThread[0]);
+
+    ((AtomicBoolean) field(Class.forName("com.sun.javafx.application.PlatformImpl"), "toolkitExit").get(null)).set(false);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Waits until everything given to {@code Platform.runLater} so far has been run
+   */
+  public static void waitForIdle() throws InterruptedException
+  {
+    CountDownLatch done = new CountDownLatch(1);
+    Platform.runLater(done::countDown);
+    done.await();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static Field field(Class<?> cls, String name) throws ReflectiveOperationException
+  {
+    Field field = cls.getDeclaredField(name);
+    field.setAccessible(true);
+    return field;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static final class EventQueue extends Application
+  {
+    @Override protected void _invokeLater(Runnable runnable) { executor.execute(runnable); }
+
+    @Override protected void _invokeAndWait(Runnable runnable)
+    {
+      if (Thread.currentThread() == getEventThread())
+      {
+        runnable.run();
+        return;
+      }
+
+      CountDownLatch done = new CountDownLatch(1);
+
+      executor.execute(() ->
+      {
+        try { runnable.run(); }
+        finally { done.countDown(); }
+      });
+
+      try { done.await(); }
+      catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    @Override protected void runLoop(Runnable launchable)                           { throw new UnsupportedOperationException(); }
+    @Override protected Object _enterNestedEventLoop()                              { throw new UnsupportedOperationException(); }
+    @Override protected void _leaveNestedEventLoop(Object retValue)                 { throw new UnsupportedOperationException(); }
+    @Override public Window createWindow(Window owner, Screen screen, int styleMask) { throw new UnsupportedOperationException(); }
+    @Override public View createView()                                              { throw new UnsupportedOperationException(); }
+    @Override public Cursor createCursor(int type)                                  { throw new UnsupportedOperationException(); }
+    @Override public Cursor createCursor(int x, int y, Pixels pixels)               { throw new UnsupportedOperationException(); }
+    @Override protected void staticCursor_setVisible(boolean visible)               { throw new UnsupportedOperationException(); }
+    @Override protected Size staticCursor_getBestSize(int width, int height)        { throw new UnsupportedOperationException(); }
+    @Override public Pixels createPixels(int width, int height, ByteBuffer data)    { throw new UnsupportedOperationException(); }
+    @Override public Pixels createPixels(int width, int height, IntBuffer data)     { throw new UnsupportedOperationException(); }
+    @Override public Pixels createPixels(int width, int height, IntBuffer data, float scalex, float scaley) { throw new UnsupportedOperationException(); }
+    @Override protected int staticPixels_getNativeFormat()                          { throw new UnsupportedOperationException(); }
+    @Override public GlassRobot createRobot()                                       { throw new UnsupportedOperationException(); }
+    @Override protected double staticScreen_getVideoRefreshPeriod()                 { throw new UnsupportedOperationException(); }
+    @Override protected Screen[] staticScreen_getScreens()                          { throw new UnsupportedOperationException(); }
+    @Override public Timer createTimer(Runnable runnable)                           { throw new UnsupportedOperationException(); }
+    @Override protected int staticTimer_getMinPeriod()                              { throw new UnsupportedOperationException(); }
+    @Override protected int staticTimer_getMaxPeriod()                              { throw new UnsupportedOperationException(); }
+    @Override protected long staticView_getMultiClickTime()                         { throw new UnsupportedOperationException(); }
+    @Override protected int staticView_getMultiClickMaxX()                          { throw new UnsupportedOperationException(); }
+    @Override protected int staticView_getMultiClickMaxY()                          { throw new UnsupportedOperationException(); }
+    @Override protected boolean _supportsTransparentWindows()                       { return false; }
+    @Override protected boolean _supportsUnifiedWindows()                           { return false; }
+    @Override protected int _getKeyCodeForChar(char c)                              { throw new UnsupportedOperationException(); }
+
+    @Override protected FileChooserResult staticCommonDialogs_showFileChooser(Window owner, String folder, String filename, String title, int type,
+                                                                              boolean multipleMode, ExtensionFilter[] extensionFilters, int defaultFilterIndex)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override protected File staticCommonDialogs_showFolderChooser(Window owner, String folder, String title)
+    {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.model.items;
+
+import static org.hypernomicon.model.HeadlessDB.*;
+import static org.hypernomicon.model.HyperDB.*;
+import static org.hypernomicon.model.records.RecordType.*;
+
+import java.util.Set;
+
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.model.records.HDT_Folder;
+import org.hypernomicon.model.records.HDT_MiscFile;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Checks that the file paths cached by {@link HyperPath#filePath()} stay correct when folders are moved
+ * and renamed. The records are changed the same way the file manager changes them after moving or renaming
+ * on disk: the old path is unmapped and each HyperPath is assigned its new parent folder and name. Nothing
+ * is created on disk; the database is an in-memory one set up by {@link HeadlessDB}.
+ */
+public final class HyperPathCacheTest
+{
+
+//---------------------------------------------------------------------------
+
+  private static final FilePath ROOT = new FilePath("/nonexistent/HyperPathCacheTest");
+
+  private HyperPathCacheTest() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    HeadlessDB.init(ROOT);
+
+    HDT_Folder folderA = createFolder(db.getRootFolder(), "A"),
+               folderB = createFolder(folderA, "B"),
+               folderC = createFolder(db.getRootFolder(), "C");
+
+    HDT_MiscFile file1 = createFile(folderB, "file1.pdf"),
+                 file2 = createFile(folderB, "file2.pdf");
+
+    checkPath(file1.getPath(), "A/B/file1.pdf");
+
+    check(file1.getPath().filePath() == file1.getPath().filePath(), "path is cached between calls");
+
+    // Move folder A into folder C
+
+    move(folderA.getPath(), folderC, "A");
+
+    checkPath(folderB.getPath(), "C/A/B");
+    checkPath(file1.getPath(), "C/A/B/file1.pdf");
+    checkPath(file2.getPath(), "C/A/B/file2.pdf");
+
+    check(HyperPath.getHyperPathSetForFilePath(ROOT.resolve("A/B/file1.pdf")).isEmpty(), "nothing is found at the old location after a folder move");
+    check(HyperPath.getRecordFromFilePath(ROOT.resolve("C/A/B/file1.pdf")) == file1, "file is found at its new location after a folder move");
+
+    // Rename folder B
+
+    move(folderB.getPath(), folderA, "Renamed");
+
+    checkPath(file1.getPath(), "C/A/Renamed/file1.pdf");
+    checkPath(file2.getPath(), "C/A/Renamed/file2.pdf");
+
+    // Move folder A back to the root
+
+    move(folderA.getPath(), db.getRootFolder(), "A");
+
+    checkPath(file1.getPath(), "A/Renamed/file1.pdf");
+
+    // Renaming a file should only invalidate that file's own cached path
+
+    FilePath file2Path = file2.getPath().filePath();
+
+    move(file1.getPath(), folderB, "file3.pdf");
+
+    checkPath(file1.getPath(), "A/Renamed/file3.pdf");
+    check(file2.getPath().filePath() == file2Path, "renaming a file leaves other cached paths in place");
+
+    // Moving a file into another folder
+
+    move(file2.getPath(), folderC, "file2.pdf");
+
+    checkPath(file2.getPath(), "C/file2.pdf");
+
+    System.out.println("All HyperPath cache checks passed");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static HDT_MiscFile createFile(HDT_Folder folder, String name)
+  {
+    HDT_MiscFile file = db.createNewBlankRecord(hdtMiscFile);
+    file.getPath().assign(folder, new FilePath(name));
+    return file;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Does what FileManager does after moving a file or folder on disk
+   */
+  private static void move(HyperPath hyperPath, HDT_Folder destFolder, String destName)
+  {
+    FilePath srcFilePath = hyperPath.filePath();
+    Set<HyperPath> set = HyperPath.getHyperPathSetForFilePath(srcFilePath);
+
+    db.unmapFilePath(srcFilePath);
+
+    set.forEach(path -> path.assign(destFolder, new FilePath(destName)));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void checkPath(HyperPath hyperPath, String expected)
+  {
+    FilePath filePath = hyperPath.filePath();
+
+    if (ROOT.resolve(expected).equals(filePath) == false)
+      throw new AssertionError("Failed: expected " + expected + ", got " + filePath);
+
+    System.out.println("Passed: path is " + expected);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void check(boolean condition, String description)
+  {
+    if (condition == false)
+      throw new AssertionError("Failed: " + description);
+
+    System.out.println("Passed: " + description);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
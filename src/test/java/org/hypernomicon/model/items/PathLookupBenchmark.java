@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.model.items;
+
+import static org.hypernomicon.model.HeadlessDB.*;
+import static org.hypernomicon.model.HyperDB.*;
+import static org.hypernomicon.model.records.RecordType.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.model.records.HDT_Folder;
+import org.hypernomicon.model.records.HDT_MiscFile;
+import org.hypernomicon.model.records.RecordState;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Measures how long it takes to resolve the path of every file in a large database to its record.
+ * <p>
+ * A folder tree is created on disk in a temporary folder, with a record for every folder and file in an
+ * in-memory database (see {@link HeadlessDB}) rooted there. Every folder holds files with the same set of
+ * names, so each file name is shared by every leaf folder. New {@link FilePath} objects are then created
+ * for every file, as they are when a folder is listed, and each is resolved to its record, to its parent
+ * folder's record, and checked to be under the root folder. For comparison, the same paths are also resolved
+ * the way {@link HyperPath#getHyperPathSetForFilePath} used to do it: by comparing the full path of every
+ * record with the same file name.
+ * <p>
+ * Arguments are {@code name=value} settings: {@code depth} and {@code branching} for the folder tree, and
+ * {@code filesPerFolder} for the number of files in each leaf folder. The defaults give 100,000 files.
+ */
+public final class PathLookupBenchmark
+{
+
+//---------------------------------------------------------------------------
+
+  private static int depth = 3, branching = 10, filesPerFolder = 100;
+
+  private PathLookupBenchmark() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    for (String arg : args)
+    {
+      String name = arg.substring(0, arg.indexOf('=')), value = arg.substring(arg.indexOf('=') + 1);
+
+      switch (name)
+      {
+        case "depth"          : depth          = Integer.parseInt(value); break;
+        case "branching"      : branching      = Integer.parseInt(value); break;
+        case "filesPerFolder" : filesPerFolder = Integer.parseInt(value); break;
+        default               : throw new IllegalArgumentException("Unknown setting: " + name);
+      }
+    }
+
+    Path rootDir = Files.createTempDirectory("PathLookupBenchmark").toRealPath();
+
+    try
+    {
+      HeadlessDB.init(new FilePath(rootDir));
+
+      List<HDT_Folder> leafFolders = new ArrayList<>();
+      List<HDT_MiscFile> files = new ArrayList<>();
+
+      long start = System.nanoTime();
+
+      createFolders(db.getRootFolder(), rootDir, 0, leafFolders);
+
+      int nextID = db.getNextID(hdtMiscFile);
+
+      for (HDT_Folder folder : leafFolders)
+      {
+        for (int ndx = 1; ndx <= filesPerFolder; ndx++)
+        {
+          String fileName = String.format("file%04d.pdf", ndx);
+          Files.createFile(folder.filePath().toPath().resolve(fileName));
+
+          HDT_MiscFile file = db.createNewRecordFromState(new RecordState(hdtMiscFile, nextID++), true);
+          file.getPath().assign(folder, new FilePath(fileName));
+          files.add(file);
+        }
+      }
+
+      System.out.println(String.format("%d files in %d folders, %d records share each file name; set up in %.1f sec",
+                                       files.size(), leafFolders.size(), leafFolders.size(), (System.nanoTime() - start) / 1e9));
+
+      // Create new path objects the way a folder listing does, and compute their keys
+
+      List<FilePath> filePaths = new ArrayList<>(files.size());
+
+      start = System.nanoTime();
+
+      for (HDT_MiscFile file : files)
+      {
+        FilePath filePath = new FilePath(file.filePath().toPath().toString());
+        filePath.hashCode();
+        filePaths.add(filePath);
+      }
+
+      report("Path keys", filePaths.size(), start);
+
+      for (int pass = 1; pass <= 2; pass++)
+      {
+        System.out.println("Pass " + pass + ':');
+
+        start = System.nanoTime();
+
+        for (int ndx = 0; ndx < filePaths.size(); ndx++)
+        {
+          Set<HyperPath> set = HyperPath.getHyperPathSetForFilePath(filePaths.get(ndx));
+
+          if ((set.size() != 1) || (set.iterator().next().getRecord() != files.get(ndx)))
+            throw new AssertionError("Failed: wrong records for " + filePaths.get(ndx));
+        }
+
+        report("  Path to record", filePaths.size(), start);
+
+        start = System.nanoTime();
+
+        for (int ndx = 0; ndx < filePaths.size(); ndx++)
+          if (HyperPath.getFolderFromFilePath(filePaths.get(ndx).getParent(), false) != files.get(ndx).parentFolder())
+            throw new AssertionError("Failed: wrong folder for " + filePaths.get(ndx));
+
+        report("  Path to folder", filePaths.size(), start);
+
+        start = System.nanoTime();
+
+        for (FilePath filePath : filePaths)
+          if (db.getRootPath().isSubpath(filePath) == false)
+            throw new AssertionError("Failed: not under root: " + filePath);
+
+        report("  Under root", filePaths.size(), start);
+
+        start = System.nanoTime();
+
+        for (int ndx = 0; ndx < filePaths.size(); ndx++)
+          if (compareFullPaths(filePaths.get(ndx)) != 1)
+            throw new AssertionError("Failed: wrong records for " + filePaths.get(ndx));
+
+        report("  Old path to record", filePaths.size(), start);
+      }
+
+      System.out.println("Passed: every path resolved to its own record and folder");
+    }
+    finally
+    {
+      FileUtils.deleteDirectory(rootDir.toFile());
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void createFolders(HDT_Folder parentFolder, Path parentDir, int level, List<HDT_Folder> leafFolders) throws Exception
+  {
+    if (level == depth)
+    {
+      leafFolders.add(parentFolder);
+      return;
+    }
+
+    for (int ndx = 1; ndx <= branching; ndx++)
+    {
+      String name = String.format("folder%02d", ndx);
+      Path dir = Files.createDirectory(parentDir.resolve(name));
+
+      createFolders(createFolder(parentFolder, name), dir, level + 1, leafFolders);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Resolves a path the way getHyperPathSetForFilePath did before it walked down from the root
+   * @return The number of records found
+   */
+  private static int compareFullPaths(FilePath filePath)
+  {
+    int count = 0;
+
+    for (HyperPath hyperPath : db.filenameMap.get(filePath.getNameOnly().toString()))
+      if (filePath.equals(hyperPath.filePath()))
+        count++;
+
+    return count;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void report(String name, int count, long startNanos)
+  {
+    double sec = (System.nanoTime() - startNanos) / 1e9;
+
+    System.out.println(String.format("%-21s %7d in %8.3f sec: %8.2f us each", name + ':', count, sec, sec * 1e6 / count));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.model.relations;
+
+import static org.hypernomicon.model.HyperDB.*;
+import static org.hypernomicon.model.records.RecordType.*;
+import static org.hypernomicon.model.relations.RelationSet.RelationType.*;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.model.records.HDT_Argument;
+import org.hypernomicon.model.records.HDT_Debate;
+import org.hypernomicon.model.records.HDT_Position;
+import org.hypernomicon.model.records.HDT_Record;
+import org.hypernomicon.model.records.HDT_RecordBase;
+import org.hypernomicon.model.records.RecordState;
+import org.hypernomicon.model.records.RecordType;
+import org.hypernomicon.model.relations.RelationSet.RelationType;
+import org.hypernomicon.util.filePath.FilePath;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Stress benchmark for the cycle check done whenever a relation is added to a {@link RelationHierarchy}.
+ * <p>
+ * An in-memory database (see {@link HeadlessDB}) is filled with a large graph of debates, positions and
+ * arguments, then positions are moved around the way they are by drag and drop in the tree, then positions
+ * are given their own descendants as parents, which must be rejected. For every relation added, the time
+ * taken by the topological order check is compared with the time taken by a walk over the new parent's
+ * ancestors, which is what the check used to do. Both checks must agree about which relations would create
+ * a cycle.
+ * <p>
+ * Arguments are {@code name=value} settings: {@code positions}, {@code arguments}, {@code moves}, {@code cycles}
+ * and {@code seed}.
+ */
+public final class CycleCheckBenchmark
+{
+
+//---------------------------------------------------------------------------
+
+  private static final FilePath ROOT = new FilePath("/nonexistent/CycleCheckBenchmark");
+
+  private static int positionCount = 50000, argumentCount = 50000, moveCount = 20000, cycleCount = 20000;
+  private static long seed = 1L;
+
+  private static final Map<RecordType, AtomicInteger> nextIDs = new EnumMap<>(RecordType.class);
+
+  private static long orderNanos, walkNanos;
+  private static int added, rejected;
+
+  private CycleCheckBenchmark() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    for (String arg : args)
+    {
+      String name = arg.substring(0, arg.indexOf('=')), value = arg.substring(arg.indexOf('=') + 1);
+
+      switch (name)
+      {
+        case "positions" : positionCount = Integer.parseInt(value); break;
+        case "arguments" : argumentCount = Integer.parseInt(value); break;
+        case "moves"     : moveCount     = Integer.parseInt(value); break;
+        case "cycles"    : cycleCount    = Integer.parseInt(value); break;
+        case "seed"      : seed          = Long.parseLong(value);   break;
+        default          : throw new IllegalArgumentException("Unknown setting: " + name);
+      }
+    }
+
+    HeadlessDB.init(ROOT);
+
+    Random random = new Random(seed);
+    List<HDT_Debate> debates = new ArrayList<>();
+    List<HDT_Position> positions = new ArrayList<>();
+    List<HDT_Argument> arguments = new ArrayList<>();
+
+    System.out.println(positionCount + " positions, " + argumentCount + " arguments, seed " + seed);
+
+    // Build the graph in the order a database is loaded: each record's parents are created before it.
+    // A tenth of the positions and arguments get a second parent.
+
+    resetCounts();
+
+    for (int ndx = 0; ndx < Math.max(1, positionCount / 100); ndx++)
+    {
+      HDT_Debate debate = createRecord(hdtDebate);
+
+      if (debates.isEmpty() == false)
+        addParent(rtParentDebateOfDebate, debate, pick(random, debates));
+
+      debates.add(debate);
+    }
+
+    for (int ndx = 0; ndx < positionCount; ndx++)
+    {
+      HDT_Position position = createRecord(hdtPosition);
+
+      if (positions.isEmpty() || (random.nextInt(10) == 0))
+        addParent(rtParentDebateOfPos, position, pick(random, debates));
+      else
+        addParent(rtParentPosOfPos, position, pick(random, positions));
+
+      if ((positions.isEmpty() == false) && (random.nextInt(10) == 0))
+        addParent(rtParentPosOfPos, position, pick(random, positions));
+
+      positions.add(position);
+    }
+
+    for (int ndx = 0; ndx < argumentCount; ndx++)
+    {
+      HDT_Argument argument = createRecord(hdtArgument);
+
+      db.getObjectList(rtPositionOfArgument, argument, false).add(pick(random, positions));
+
+      if (arguments.isEmpty() == false)
+      {
+        addParent(rtCounterOfArgument, argument, pick(random, arguments));
+
+        if (random.nextInt(10) == 0)
+          addParent(rtCounterOfArgument, argument, pick(random, arguments));
+      }
+
+      arguments.add(argument);
+    }
+
+    report("Build");
+
+    // Move positions under other positions, as when dragging them in the tree. Some of the targets are
+    // below the position being moved, so those moves are rejected.
+
+    resetCounts();
+
+    for (int ndx = 0; ndx < moveCount; ndx++)
+    {
+      HDT_Position position = pick(random, positions), target = pick(random, positions);
+      HyperObjList<HDT_Record, HDT_Record> parents = db.getObjectList(rtParentPosOfPos, position, false);
+
+      if (parents.isEmpty() || parents.contains(target)) continue;
+
+      HDT_Record oldParent = parents.get(0);
+
+      if (addParent(rtParentPosOfPos, position, target))
+        parents.remove(oldParent);
+    }
+
+    report("Moves");
+
+    // Try to make each position a child of one of its own descendants
+
+    resetCounts();
+
+    for (int ndx = 0; ndx < cycleCount; ndx++)
+    {
+      HDT_Position position = pick(random, positions);
+      List<HDT_Record> descendants = new ArrayList<>(db.getHierarchy(rtParentPosOfPos).getDescendants(position));
+
+      if (descendants.isEmpty() == false)
+        addParent(rtParentPosOfPos, position, pick(random, descendants));
+    }
+
+    check(added == 0, "no descendant became a parent");
+    report("Cycles");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Adds the relation, timing the check, and also times the old check for the same relation
+   * @return True if the relation was added
+   */
+  private static boolean addParent(RelationType relType, HDT_Record child, HDT_Record parent)
+  {
+    RelationHierarchy hierarchy = db.getHierarchy(relType);
+
+    // The old check walked up from the new parent after every change invalidated the ancestor sets
+
+    long start = System.nanoTime();
+    hierarchy.invalidate();
+    boolean walkRejects = (child == parent) || hierarchy.isAncestor(child, parent);
+    walkNanos += System.nanoTime() - start;
+
+    start = System.nanoTime();
+    boolean orderAccepts = hierarchy.orderForNewRelation(parent, child);
+    orderNanos += System.nanoTime() - start;
+
+    if (orderAccepts == walkRejects)
+      throw new AssertionError("Failed: the checks disagree about making " + parent.getType() + ' ' + parent.getID() + " a parent of " +
+                               child.getType() + ' ' + child.getID());
+
+    if (orderAccepts == false)
+    {
+      rejected++;
+      return false;
+    }
+
+    db.getObjectList(relType, child, false).add(parent);
+    added++;
+    return true;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Creates a record with the next unused ID. Giving the ID avoids createNewBlankRecord's search from 1 for
+   * a free ID, which would make building the graph take quadratic time.
+   */
+  private static <T extends HDT_RecordBase> T createRecord(RecordType type) throws Exception
+  {
+    return db.createNewRecordFromState(new RecordState(type, nextIDs.computeIfAbsent(type, t -> new AtomicInteger(db.getNextID(t))).getAndIncrement()), true);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static <T> T pick(Random random, List<T> list)
+  {
+    return list.get(random.nextInt(list.size()));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void resetCounts()
+  {
+    orderNanos = 0L;
+    walkNanos = 0L;
+    added = 0;
+    rejected = 0;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void report(String name)
+  {
+    int checks = added + rejected;
+
+    System.out.println(String.format("%-7s %7d added, %7d rejected: order check %8.1f ms (%6.2f us each), ancestor walk %8.1f ms (%8.2f us each)",
+                                     name + ':', added, rejected, orderNanos / 1e6, orderNanos / 1e3 / checks, walkNanos / 1e6, walkNanos / 1e3 / checks));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void check(boolean condition, String description)
+  {
+    if (condition == false)
+      throw new AssertionError("Failed: " + description);
+
+    System.out.println("Passed: " + description);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
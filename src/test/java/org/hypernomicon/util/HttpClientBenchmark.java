@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.util;
+
+import java.io.IOException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+
+import org.hypernomicon.bib.data.MockLookupServer;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Measures the time taken by one request at a time to a local HTTPS server (see {@link MockLookupServer}), made
+ * through {@link AsyncHttpClient}, and made the way AsyncHttpClient used to make them: with a new thread, TLS
+ * context and client, and so a new connection, for every request.
+ * <p>
+ * Then checks that {@link AsyncHttpClient#stop} still cuts short a request that is waiting for a slow server.
+ * <p>
+ * Arguments are {@code name=value} settings: {@code requests}, {@code latencyMS} (added by the server to every
+ * response) and {@code https} ({@code false} for plain HTTP).
+ */
+public final class HttpClientBenchmark
+{
+
+//---------------------------------------------------------------------------
+
+  private static final long SLOW_LATENCY_MS = 5000L;
+
+  private static int requestCount = 300;
+  private static long latencyMS = 0L;
+  private static boolean https = true;
+
+  private HttpClientBenchmark() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    for (String arg : args)
+    {
+      String name = arg.substring(0, arg.indexOf('=')), value = arg.substring(arg.indexOf('=') + 1);
+
+      switch (name)
+      {
+        case "requests"  : requestCount = Integer.parseInt(value);     break;
+        case "latencyMS" : latencyMS    = Long.parseLong(value);       break;
+        case "https"     : https        = Boolean.parseBoolean(value); break;
+        default          : throw new IllegalArgumentException("Unknown setting: " + name);
+      }
+    }
+
+    MockLookupServer server = MockLookupServer.startForLookups("latencyMS=" + latencyMS, "https=" + https),
+                     slowServer = MockLookupServer.startForLookups("latencyMS=" + SLOW_LATENCY_MS, "https=" + https);
+
+    try
+    {
+      String url = server.baseUrl() + "crossref/works/" + MockLookupServer.DOI_PREFIX + '1';
+
+      System.out.println(String.format("%d requests, one at a time, to %s; %d ms latency", requestCount, url, latencyMS));
+
+      AsyncHttpClient asyncClient = new AsyncHttpClient();
+
+      for (int pass = 1; pass <= 2; pass++) // The first pass warms up
+      {
+        List<Long> oldTimes = new ArrayList<>(), newTimes = new ArrayList<>();
+
+        for (int ndx = 0; ndx < requestCount; ndx++)
+        {
+          oldTimes.add(requestWithNewClient(url));
+          newTimes.add(requestWithAsyncClient(asyncClient, url));
+        }
+
+        if (pass == 2)
+        {
+          report("New client each time", oldTimes);
+          report("AsyncHttpClient", newTimes);
+        }
+      }
+
+      checkStop(slowServer.baseUrl() + "crossref/works/" + MockLookupServer.DOI_PREFIX + '1');
+    }
+    finally
+    {
+      server.stop();
+      slowServer.stop();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Makes a request the way AsyncHttpClient did before it had a shared client
+   * @return The time taken in nanoseconds
+   */
+  private static long requestWithNewClient(String url) throws InterruptedException
+  {
+    AtomicReference<Exception> error = new AtomicReference<>();
+    long start = System.nanoTime();
+
+    Thread thread = new Thread(() ->
+    {
+      try (CloseableHttpClient client = HttpClientBuilder.create().setSSLContext(trustAllContext()).setSSLHostnameVerifier((hostname, session) -> true).build())
+      {
+        client.execute(new HttpGet(url), okHandler);
+      }
+      catch (IOException | RuntimeException e)
+      {
+        error.set(e);
+      }
+    }, "HttpRequest");
+
+    thread.setDaemon(true);
+    thread.start();
+    thread.join();
+
+    long nanos = System.nanoTime() - start;
+
+    if (error.get() != null)
+      throw new AssertionError("Failed: request with a new client: " + error.get(), error.get());
+
+    return nanos;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * @return The time taken in nanoseconds
+   */
+  private static long requestWithAsyncClient(AsyncHttpClient asyncClient, String url) throws InterruptedException
+  {
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicReference<Exception> error = new AtomicReference<>();
+    long start = System.nanoTime();
+
+    asyncClient.doRequest(new HttpGet(url), response ->
+    {
+      try { return okHandler.handleResponse(response); }
+      finally { done.countDown(); }
+
+    }, e -> { error.set(e); done.countDown(); });
+
+    done.await();
+
+    long nanos = System.nanoTime() - start;
+
+    if (error.get() != null)
+      throw new AssertionError("Failed: request with AsyncHttpClient: " + error.get(), error.get());
+
+    return nanos;
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static final ResponseHandler<Boolean> okHandler = response ->
+  {
+    EntityUtils.consume(response.getEntity());
+
+    if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK)
+      throw new IOException("Status " + response.getStatusLine().getStatusCode());
+
+    return true;
+  };
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void checkStop(String slowUrl) throws InterruptedException
+  {
+    AsyncHttpClient asyncClient = new AsyncHttpClient();
+    CountDownLatch responded = new CountDownLatch(1);
+
+    asyncClient.doRequest(new HttpGet(slowUrl), response -> { responded.countDown(); return true; }, null);
+
+    Thread.sleep(500L); // Let the request reach the server
+
+    long start = System.nanoTime();
+    asyncClient.stop();
+    long stopMS = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    System.out.println(String.format("stop() returned after %d ms; the server takes %d ms to respond", stopMS, SLOW_LATENCY_MS));
+
+    check((stopMS < SLOW_LATENCY_MS / 2) && asyncClient.wasCancelledByUser() && (responded.getCount() == 1), "stop() cancels a request in progress");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static SSLContext trustAllContext()
+  {
+    try
+    {
+      SSLContext sc = SSLContext.getInstance("TLS");
+
+      TrustManager trustMgr = new X509TrustManager()
+      {
+        @Override public void checkClientTrusted(X509Certificate[] chain, String authType) { return; }
+        @Override public void checkServerTrusted(X509Certificate[] chain, String authType) { return; }
+        @Override public X509Certificate[] getAcceptedIssuers()                            { return null; }
+      };
+
+      sc.init(null, new TrustManager[] { trustMgr }, new SecureRandom());
+      return sc;
+    }
+    catch (NoSuchAlgorithmException | KeyManagementException e)
+    {
+      throw new AssertionError("Error while creating SSLContext", e);
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void report(String name, List<Long> nanos)
+  {
+    Collections.sort(nanos);
+
+    double meanMS = nanos.stream().mapToLong(Long::longValue).average().orElse(0.0) / 1e6;
+
+    System.out.println(String.format("%-22s min %7.2f ms, median %7.2f ms, mean %7.2f ms, 95th percentile %7.2f ms", name + ':',
+                                     nanos.get(0) / 1e6, nanos.get(nanos.size() / 2) / 1e6, meanMS, nanos.get(nanos.size() * 95 / 100) / 1e6));
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void check(boolean condition, String description)
+  {
+    if (condition == false)
+      throw new AssertionError("Failed: " + description);
+
+    System.out.println("Passed: " + description);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
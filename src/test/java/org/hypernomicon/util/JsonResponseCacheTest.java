@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+
+import org.hypernomicon.bib.data.MockLookupServer;
+import org.hypernomicon.model.HeadlessDB;
+import org.hypernomicon.model.HeadlessFXThread;
+import org.hypernomicon.util.filePath.FilePath;
+import org.hypernomicon.util.json.JsonObj;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Checks {@link JsonHttpClient#getObjAsyncCached} and {@link JsonResponseCache} against local servers (see
+ * {@link MockLookupServer}): repeated lookups, including ones that were not found, are answered without
+ * a request; a {@code max-age} in a Cache-Control header is honoured; and the cache stays within its size
+ * limit. The time taken to look up a set of DOIs is measured for the first time and the second time.
+ * <p>
+ * Arguments are {@code name=value} settings: {@code lookups} and {@code latencyMS} (added by the server to
+ * every response).
+ */
+public final class JsonResponseCacheTest
+{
+
+//---------------------------------------------------------------------------
+
+  private static int lookupCount = 200;
+  private static long latencyMS = 100L;
+
+  private JsonResponseCacheTest() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws Exception
+  {
+    for (String arg : args)
+    {
+      String name = arg.substring(0, arg.indexOf('=')), value = arg.substring(arg.indexOf('=') + 1);
+
+      switch (name)
+      {
+        case "lookups"   : lookupCount = Integer.parseInt(value); break;
+        case "latencyMS" : latencyMS   = Long.parseLong(value);   break;
+        default          : throw new IllegalArgumentException("Unknown setting: " + name);
+      }
+    }
+
+    HeadlessDB.init(new FilePath("/nonexistent/JsonResponseCacheTest"));
+    HeadlessFXThread.start();
+
+    MockLookupServer server = MockLookupServer.startForLookups("latencyMS=" + latencyMS),        // No Cache-Control header
+                     noCacheServer = MockLookupServer.startForLookups("maxAgeSec=0"),
+                     shortServer = MockLookupServer.startForLookups("maxAgeSec=1");
+
+    try
+    {
+      String baseUrl = server.baseUrl() + "crossref/works/";
+
+      // Found
+
+      String url = baseUrl + MockLookupServer.DOI_PREFIX + "found";
+
+      check(lookUp(url) instanceof JsonObj, "a work is found");
+      int requests = server.totalRequests();
+      check(lookUp(url) instanceof JsonObj, "the same work is found again");
+      check(server.totalRequests() == requests, "the repeat lookup made no request");
+
+      // Not found
+
+      url = baseUrl + "10.9999/notfound";
+
+      check(isNotFound(lookUp(url)), "a missing work is not found");
+      requests = server.totalRequests();
+      check(isNotFound(lookUp(url)), "the same missing work is not found again");
+      check(server.totalRequests() == requests, "the repeat lookup of a missing work made no request");
+
+      // max-age=0
+
+      url = noCacheServer.baseUrl() + "crossref/works/" + MockLookupServer.DOI_PREFIX + "uncached";
+
+      lookUp(url);
+      lookUp(url);
+      check(noCacheServer.totalRequests() == 2, "a response with max-age=0 is not reused");
+
+      // max-age=1
+
+      url = shortServer.baseUrl() + "crossref/works/" + MockLookupServer.DOI_PREFIX + "short";
+
+      lookUp(url);
+      lookUp(url);
+      check(shortServer.totalRequests() == 1, "a response with max-age=1 is reused right away");
+
+      Thread.sleep(1500L);
+
+      lookUp(url);
+      check(shortServer.totalRequests() == 2, "a response with max-age=1 is not reused after it expires");
+
+      // Bulk lookups
+
+      for (int pass = 1; pass <= 2; pass++)
+      {
+        requests = server.totalRequests();
+        long start = System.nanoTime();
+
+        for (int ndx = 1; ndx <= lookupCount; ndx++)
+          if ((lookUp(baseUrl + MockLookupServer.DOI_PREFIX + "bulk." + ndx) instanceof JsonObj) == false)
+            throw new AssertionError("Failed: bulk lookup " + ndx + " was not found");
+
+        double sec = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("Lookup pass %d: %d lookups in %.3f sec (%.2f ms each), %d requests",
+                                         pass, lookupCount, sec, sec * 1e3 / lookupCount, server.totalRequests() - requests));
+      }
+
+      check(server.totalRequests() == requests, "the second pass of lookups made no requests");
+
+      checkSizeLimit();
+    }
+    finally
+    {
+      server.stop();
+      noCacheServer.stop();
+      shortServer.stop();
+    }
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Looks up the URL and waits for the result
+   * @return The JSON object, or the exception passed to the failure handler
+   */
+  private static Object lookUp(String url) throws InterruptedException
+  {
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicReference<Object> result = new AtomicReference<>();
+
+    Util.runInFXThread(() -> JsonHttpClient.getObjAsyncCached(url, new AsyncHttpClient(), jsonObj ->
+    {
+      result.set(jsonObj);
+      done.countDown();
+
+    }, e ->
+    {
+      result.set(e);
+      done.countDown();
+    }));
+
+    done.await();
+    return result.get();
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static boolean isNotFound(Object result)
+  {
+    return (result instanceof HttpResponseException) && (((HttpResponseException) result).getStatusCode() == HttpStatus.SC_NOT_FOUND);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Fills a separate cache with more than its limit of 16M characters, in 3M-character responses
+   */
+  private static void checkSizeLimit()
+  {
+    JsonResponseCache cache = new JsonResponseCache();
+    String body = "x".repeat(3 * 1024 * 1024);
+
+    for (int ndx = 1; ndx <= 6; ndx++)
+      cache.put("http://localhost/large/" + ndx, HttpStatus.SC_OK, body, new Header[0]);
+
+    check((cache.get("http://localhost/large/1") == null) && (cache.get("http://localhost/large/6") != null), "the oldest response is dropped when the cache is full");
+
+    cache.put("http://localhost/huge", HttpStatus.SC_OK, "x".repeat(5 * 1024 * 1024), new Header[0]);
+    check(cache.get("http://localhost/huge") == null, "a response over a quarter of the limit is not kept");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void check(boolean condition, String description)
+  {
+    if (condition == false)
+      throw new AssertionError("Failed: " + description);
+
+    System.out.println("Passed: " + description);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}
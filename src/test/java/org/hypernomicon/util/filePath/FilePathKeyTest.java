@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015-2023 Jason Winning
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.hypernomicon.util.filePath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+
+//---------------------------------------------------------------------------
+
+/**
+ * Checks when the identity key of a {@link FilePath} is computed again. Runs without the rest of the
+ * application; symbolic links are used so that a path's key differs from the path itself.
+ * <p>
+ * The cache is invalidated here by calling {@link InnerFilePath#invalidateKeys} directly, which is what
+ * FilePath's move, rename, and delete methods do after changing the file system.
+ */
+public final class FilePathKeyTest
+{
+
+//---------------------------------------------------------------------------
+
+  private FilePathKeyTest() { throw new UnsupportedOperationException(); }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  public static void main(String[] args) throws IOException
+  {
+    Path tempDir = Files.createTempDirectory("FilePathKeyTest").toRealPath();
+
+    try
+    {
+      keyOfNewFileIsRecomputed(tempDir);
+      changedLinkIsNoticedAfterInvalidation(tempDir);
+      folderInvalidationCoversContents(tempDir);
+    }
+    catch (UnsupportedOperationException e)
+    {
+      System.out.println("Skipped: symbolic links are not supported here");
+      return;
+    }
+    finally
+    {
+      FileUtils.deleteDirectory(tempDir.toFile());
+    }
+
+    System.out.println("All FilePath key checks passed");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * A path hashed before its file existed gets the file's real path as its key once the file is created.
+   */
+  private static void keyOfNewFileIsRecomputed(Path tempDir) throws IOException
+  {
+    Path realDir = Files.createDirectory(tempDir.resolve("real1"));
+    FilePath viaLink = new FilePath(tempDir.resolve("link1").resolve("file.txt"));
+
+    viaLink.hashCode();
+
+    Files.createFile(realDir.resolve("file.txt"));
+    Files.createSymbolicLink(tempDir.resolve("link1"), realDir);
+
+    FilePath direct = new FilePath(realDir.resolve("file.txt"));
+
+    check(viaLink.equals(direct), "path hashed before its file existed should match the file's real path");
+    check(viaLink.hashCode() == direct.hashCode(), "hash codes should match once the file exists");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Replacing a link with a regular file outside of FilePath is only seen by new FilePath objects once
+   * the cached key has been invalidated.
+   */
+  private static void changedLinkIsNoticedAfterInvalidation(Path tempDir) throws IOException
+  {
+    Path target = Files.createFile(tempDir.resolve("target2.txt")),
+         link   = Files.createSymbolicLink(tempDir.resolve("link2.txt"), target);
+
+    FilePath targetFilePath = new FilePath(target);
+
+    check(new FilePath(link).equals(targetFilePath), "link should have its target's key");
+
+    Files.delete(link);
+    Files.createFile(link);
+
+    check(new FilePath(link).equals(targetFilePath), "key should still come from the cache before invalidation");
+
+    InnerFilePath.invalidateKeys(link, false);
+
+    check(new FilePath(link).equals(targetFilePath) == false, "key should be recomputed after invalidation");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  /**
+   * Invalidating a folder also invalidates the keys of the files under it.
+   */
+  private static void folderInvalidationCoversContents(Path tempDir) throws IOException
+  {
+    Path realDir = Files.createDirectory(tempDir.resolve("real3")),
+         linkDir = Files.createSymbolicLink(tempDir.resolve("link3"), realDir);
+
+    Files.createFile(realDir.resolve("file.txt"));
+
+    FilePath inRealDir = new FilePath(realDir.resolve("file.txt"));
+
+    check(new FilePath(linkDir.resolve("file.txt")).equals(inRealDir), "file under a linked folder should have the real folder's key");
+
+    Files.delete(linkDir);
+    Files.createDirectory(linkDir);
+    Files.createFile(linkDir.resolve("file.txt"));
+
+    InnerFilePath.invalidateKeys(linkDir, true);
+
+    check(new FilePath(linkDir.resolve("file.txt")).equals(inRealDir) == false, "file under an invalidated folder should get a new key");
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+  private static void check(boolean condition, String description)
+  {
+    if (condition == false)
+      throw new AssertionError("Failed: " + description);
+
+    System.out.println("Passed: " + description);
+  }
+
+//---------------------------------------------------------------------------
+//---------------------------------------------------------------------------
+
+}